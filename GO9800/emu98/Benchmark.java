@@ -0,0 +1,531 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: benchmarks of CPU, ALU, register, and I/O hot paths and of complete machines
+ */
+
+package emu98;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Vector;
+
+import io.HP9800Mainframe;
+
+/*
+ * Benchmark harness for the emulation engine.
+ * Each benchmark runs warmup iterations followed by measurement iterations of fixed duration. Results are
+ * the mean and standard deviation of the measured rates together with the allocation rate of the measured thread.
+ *
+ * Micro-benchmarks call CPU.exec(), ALU.exec(), Register.shift(), and IOunit.exec() directly in the benchmark
+ * thread on a machine whose emulator thread is not started. One operation is one call.
+ * Macro-benchmarks start a machine like GO9800Batch, type a program or calculation by key script and measure
+ * the emulator thread. One operation is one emulated macro-instruction.
+ */
+public class Benchmark
+{
+  // machine, benchmark name, key script for setup, key script repeated during measurement
+  static final String[][] WORKLOADS = {
+    {"HP9830A", "HP9830A-loop",
+      "wait 1500\n\"5 x=0\"\n162\nwait 300\n\"10 for i=1 to 9999\"\n162\nwait 300\n\"20 x=x+i\"\n162\nwait 300\n"
+      + "\"30 next i\"\n162\nwait 300\n\"40 goto 10\"\n162\nwait 300\n\"run\"\n013\nwait 300\n", ""},
+    {"HP9830A", "HP9830A-mac",
+      "wait 1500\n\"10 x=sqr(2)*sin(1)/exp(3)-log(7)^2\"\n162\nwait 300\n\"20 goto 10\"\n162\nwait 300\n\"run\"\n013\nwait 300\n", ""},
+    {"HP9820A", "HP9820A-calc", "wait 1500\n", "\"1/3*7+2\"\n135\n\"2/7*3-1\"\n135\n"},
+    {"HP9810A", "HP9810A-calc", "wait 1500\n", "2 76 17 12\n3 76 17 12\n"}
+  };
+
+  static final String[] MICRO_BENCHMARKS = {"cpu", "alu", "shift", "io"};
+
+  int warmup = 3, iterations = 5; // number of iterations
+  long iterationTime = 1000; // duration of one iteration in ms
+  boolean serial = false, macro = false, turbo = false; // engine options for machines
+
+  ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  PrintStream results = System.out;
+  long sink; // consumes results of micro-benchmarks
+
+  /*
+   * Workload measured by the harness.
+   * run() executes the workload until endTime, the counters deliver the totals since setup().
+   */
+  abstract class Workload
+  {
+    String name;
+    Thread thread; // thread whose allocations are measured
+
+    Workload(String name)
+    {
+      this.name = name;
+      thread = Thread.currentThread();
+    }
+
+    abstract boolean setup();
+    abstract void run(long endTime);
+    abstract long operations();
+    abstract long cycles();
+
+    void tearDown()
+    {
+    }
+  }
+
+  // create headless machine with engine options, returns null in case of error
+  HP9800Mainframe createMachine(String machine)
+  {
+    HP9800Mainframe mainframe = GO9800.createMachine(machine, machine);
+    if(mainframe == null)
+      return(null);
+
+    mainframe.cpu.setSerialMode(serial);
+    mainframe.realSpeed = false;
+    mainframe.emu.setMacroMode(macro, false);
+    mainframe.emu.setTurboMode(turbo);
+    return(mainframe);
+  }
+
+  // CPU.exec() on a machine in its keyboard loop, one operation is one micro-instruction
+  class CPUWorkload extends Workload
+  {
+    HP9800Mainframe mainframe;
+    CPU cpu;
+
+    CPUWorkload()
+    {
+      super("CPU.exec");
+    }
+
+    boolean setup()
+    {
+      if((mainframe = createMachine("HP9830A")) == null)
+        return(false);
+
+      // the display interface waits 13ms after each refresh unless real speed is selected,
+      // pacing to real speed is done by Emulator.run() only, which isn't used here
+      mainframe.realSpeed = true;
+      cpu = mainframe.cpu;
+      mainframe.ioUnit.reset = false;
+      cpu.POP();
+      return(true);
+    }
+
+    void run(long endTime)
+    {
+      IOunit ioUnit = mainframe.ioUnit;
+
+      do {
+        for(int i = 0; i < 100000; i++) {
+          cpu.exec();
+
+          // macro-instruction boundary as in Emulator.run()
+          if(cpu.PC == MacroCPU.NEXT_INSTRUCTION) {
+            ioUnit.instructionCounter();
+            ioUnit.scheduler.advance(cpu.cycles);
+            cpu.cycles = 0;
+          }
+        }
+      } while(System.nanoTime() < endTime);
+    }
+
+    long operations()
+    {
+      return(cpu.instructions);
+    }
+
+    long cycles()
+    {
+      return(mainframe.ioUnit.scheduler.getTime());
+    }
+  }
+
+  // ALU.exec() of all ALU codes in binary and BCD mode, one operation is one bit
+  class ALUWorkload extends CPUWorkload
+  {
+    long operations;
+
+    ALUWorkload()
+    {
+      name = "ALU.exec";
+    }
+
+    void run(long endTime)
+    {
+      CPU.ALU alu = cpu.alu;
+      int a = 0, b = 0;
+
+      cpu.Rbus = cpu.Aregister;
+      cpu.Sbus = cpu.Bregister;
+
+      do {
+        for(int i = 0; i < 100000; i++) {
+          // new operands and ALU operation for each 16 bit word
+          if((i & 15) == 0) {
+            cpu.Aregister.value = a += 012345;
+            cpu.Bregister.value = b += 054321;
+            alu.init(cpu.BC, 0, i >> 4 & 7, i >> 7 & 1);
+          }
+
+          sink += alu.exec();
+          cpu.Aregister.value >>= 1;
+          cpu.Bregister.value >>= 1;
+        }
+        operations += 100000;
+      } while(System.nanoTime() < endTime);
+    }
+
+    long operations()
+    {
+      return(operations);
+    }
+
+    long cycles()
+    {
+      return(0);
+    }
+  }
+
+  // Register.shift() of a 16 bit register rotated through its own input, one operation is one bit
+  class ShiftWorkload extends Workload
+  {
+    Register register = new Register("A", 16, 0123456);
+    long operations;
+
+    ShiftWorkload()
+    {
+      super("Register.shift");
+    }
+
+    boolean setup()
+    {
+      register.shiftEnable(true);
+      return(true);
+    }
+
+    void run(long endTime)
+    {
+      do {
+        for(int i = 0; i < 100000; i++) {
+          register.loadInput();
+          register.shift();
+        }
+        sink += register.value;
+        operations += 100000;
+      } while(System.nanoTime() < endTime);
+    }
+
+    long operations()
+    {
+      return(operations);
+    }
+
+    long cycles()
+    {
+      return(0);
+    }
+  }
+
+  // IOunit.exec() with no I/O, SFC 0 (STOP key), and SFS 1 (CEO flag), one operation is one call
+  class IOWorkload extends CPUWorkload
+  {
+    static final int NO_IO = 0, SFC_0 = 0x5c0, SFS_1 = 0x541;
+    long operations;
+
+    IOWorkload()
+    {
+      name = "IOunit.exec";
+    }
+
+    void run(long endTime)
+    {
+      IOunit ioUnit = mainframe.ioUnit;
+      Register q = cpu.Qregister;
+
+      do {
+        for(int i = 0; i < 100000; i += 3) {
+          q.value = NO_IO;
+          ioUnit.exec();
+          q.value = SFC_0;
+          ioUnit.exec();
+          q.value = SFS_1;
+          ioUnit.exec();
+          sink += cpu.BC;
+        }
+        operations += 100002;
+      } while(System.nanoTime() < endTime);
+    }
+
+    long operations()
+    {
+      return(operations);
+    }
+
+    long cycles()
+    {
+      return(0);
+    }
+  }
+
+  // complete machine running in its emulator thread with a key script
+  class MachineWorkload extends Workload
+  {
+    String machine, setupScript, repeatScript;
+    GO9800Batch batch = new GO9800Batch();
+    Thread keyThread;
+    Emulator emu;
+    CPU cpu;
+
+    MachineWorkload(String[] workload)
+    {
+      super(workload[1]);
+      machine = workload[0];
+      setupScript = workload[2];
+      repeatScript = workload[3];
+    }
+
+    boolean setup()
+    {
+      if((batch.mainframe = createMachine(machine)) == null)
+        return(false);
+
+      emu = batch.mainframe.emu;
+      cpu = batch.mainframe.cpu;
+      thread = emu.emuThread;
+      batch.endTime = Long.MAX_VALUE;
+      emu.start();
+
+      try {
+        if(!batch.runScript(new BufferedReader(new StringReader(setupScript)), name))
+          return(false);
+      } catch(IOException e) {
+        System.err.println(e.toString());
+        return(false);
+      }
+
+      if(repeatScript.length() == 0)
+        return(true);
+
+      // type calculations again and again while the machine is measured
+      keyThread = new Thread(name) {
+        public void run()
+        {
+          try {
+            while(emu.running && batch.runScript(new BufferedReader(new StringReader(repeatScript)), name));
+          } catch(IOException e) {
+            System.err.println(e.toString());
+          }
+        }
+      };
+      keyThread.setDaemon(true);
+      keyThread.start();
+      return(true);
+    }
+
+    void run(long endTime)
+    {
+      long ms;
+
+      while((ms = (endTime - System.nanoTime()) / 1000000) > 0) {
+        try {
+          Thread.sleep(ms);
+        } catch(InterruptedException e) {
+        }
+      }
+    }
+
+    long operations()
+    {
+      return(emu.macroInstructions);
+    }
+
+    long cycles()
+    {
+      return(batch.mainframe.ioUnit.scheduler.getTime());
+    }
+
+    void tearDown()
+    {
+      emu.stop();
+      try {
+        emu.emuThread.join(1000);
+        if(keyThread != null)
+          keyThread.join(1000);
+      } catch(InterruptedException e) {
+      }
+    }
+  }
+
+  // allocated bytes of thread, -1 if not supported by the JVM
+  long allocatedBytes(Thread thread)
+  {
+    if(threadBean instanceof com.sun.management.ThreadMXBean)
+      return(((com.sun.management.ThreadMXBean)threadBean).getThreadAllocatedBytes(thread.getId()));
+
+    return(-1);
+  }
+
+  // mean and standard deviation of values
+  static String statistics(double[] values, String format)
+  {
+    double mean = 0, variance = 0;
+
+    for(double value : values)
+      mean += value;
+    mean /= values.length;
+
+    for(double value : values)
+      variance += (value - mean) * (value - mean);
+    if(values.length > 1)
+      variance /= values.length - 1;
+
+    return(String.format(format, mean) + " +- " + String.format(format, Math.sqrt(variance)));
+  }
+
+  void measure(Workload workload)
+  {
+    double[] operations = new double[iterations], cycles = new double[iterations], allocation = new double[iterations];
+    long ops, cyc, bytes, time, endTime, totalOps = 0, totalBytes = 0;
+
+    if(!workload.setup()) {
+      System.err.println(workload.name + ": setup failed");
+      workload.tearDown();
+      return;
+    }
+
+    for(int i = -warmup; i < iterations; i++) {
+      ops = workload.operations();
+      cyc = workload.cycles();
+      bytes = allocatedBytes(workload.thread);
+      time = System.nanoTime();
+      endTime = time + iterationTime * 1000000;
+
+      workload.run(endTime);
+
+      time = System.nanoTime() - time;
+      ops = workload.operations() - ops;
+      cyc = workload.cycles() - cyc;
+      bytes = allocatedBytes(workload.thread) - bytes;
+
+      if(i >= 0) {
+        operations[i] = ops * 1e9 / time;
+        cycles[i] = cyc * 1e9 / time;
+        allocation[i] = bytes * 1e9 / time;
+        totalOps += ops;
+        totalBytes += bytes;
+      }
+    }
+
+    workload.tearDown();
+
+    results.println(String.format("%-16s", workload.name)
+      + statistics(operations, "%12.0f") + " ops/s "
+      + statistics(cycles, "%12.0f") + " cycles/s "
+      + statistics(allocation, "%10.0f") + " B/s "
+      + String.format("%8.3f", totalOps == 0 ? 0. : (double)totalBytes / totalOps) + " B/op");
+  }
+
+  Workload createWorkload(String name)
+  {
+    if(name.equals("cpu"))
+      return(new CPUWorkload());
+    if(name.equals("alu"))
+      return(new ALUWorkload());
+    if(name.equals("shift"))
+      return(new ShiftWorkload());
+    if(name.equals("io"))
+      return(new IOWorkload());
+
+    for(String[] workload : WORKLOADS) {
+      if(workload[1].equals(name))
+        return(new MachineWorkload(workload));
+    }
+
+    return(null);
+  }
+
+  public static void usage()
+  {
+    System.out.println("Usage: Benchmark [-s] [-m] [-f] [-w Warmup-Iterations] [-i Iterations] [-t Milliseconds] [Benchmark ...]");
+    System.out.print("Benchmarks:");
+    for(String name : MICRO_BENCHMARKS)
+      System.out.print(" " + name);
+    for(String[] workload : WORKLOADS)
+      System.out.print(" " + workload[1]);
+    System.out.println();
+    System.out.println("Options -s, -m, and -f select serial mode, macro mode, and turbo mode like in GO9800Batch.");
+  }
+
+  public static void main(String[] args)
+  {
+    Benchmark benchmark = new Benchmark();
+    Vector<Workload> workloads = new Vector<Workload>();
+    Workload workload;
+
+    System.setProperty("java.awt.headless", "true");
+
+    try {
+      for(int i = 0; i < args.length; i++) {
+        if(args[i].equals("-s"))
+          benchmark.serial = true;
+        else if(args[i].equals("-m"))
+          benchmark.macro = true;
+        else if(args[i].equals("-f"))
+          benchmark.turbo = true;
+        else if(args[i].equals("-w"))
+          benchmark.warmup = Integer.parseInt(args[++i]);
+        else if(args[i].equals("-i"))
+          benchmark.iterations = Integer.parseInt(args[++i]);
+        else if(args[i].equals("-t"))
+          benchmark.iterationTime = Long.parseLong(args[++i]);
+        else if(args[i].startsWith("-") || (workload = benchmark.createWorkload(args[i])) == null)
+          throw new IllegalArgumentException(args[i]);
+        else
+          workloads.add(workload);
+      }
+    } catch(RuntimeException e) {
+      workloads = null;
+    }
+
+    if(workloads == null || benchmark.iterations < 1 || benchmark.warmup < 0) {
+      usage();
+      System.exit(1);
+    }
+
+    // default: all benchmarks
+    if(workloads.isEmpty()) {
+      for(String name : MICRO_BENCHMARKS)
+        workloads.add(benchmark.createWorkload(name));
+      for(String[] machineWorkload : WORKLOADS)
+        workloads.add(benchmark.createWorkload(machineWorkload[1]));
+    }
+
+    // messages of machines and devices would mix with the results
+    System.setOut(new PrintStream(new OutputStream() {
+      public void write(int b)
+      {
+      }
+    }));
+
+    for(Workload w : workloads)
+      benchmark.measure(w);
+
+    System.exit(0);
+  }
+}
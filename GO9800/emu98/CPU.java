@@ -26,12 +26,19 @@
  * 25.10.2016 Rel. 2.10: ALU operations transfered to new class ALU
  * 06.11.2016	Rel. 2.10: Further performance optimizations in ALU 
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: Added word-parallel execution of shift loop, bit-serial loop kept as reference mode
+ * 17.10.2026 Rel. 2.60: Micro operations are executed by code in switch statements instead of virtual exec() methods
+ * 17.10.2026 Rel. 2.60: ROM dumps loaded through ROMimage cache
+ * 17.10.2026 Rel. 2.60: Optional counters per micro-address with writeMicroCounters()
+ * 17.10.2026 Rel. 2.60: Trace recorder called before each micro-instruction
+ * 17.10.2026 Rel. 2.60: ALU is initialized only by the shift loop, aluStep() uses the parameters of the micro-instruction
+ * 17.10.2026 Rel. 2.60: Removed ALU.exec(ac), IOunit prepares ALU with init()
  */
 
 package emu98;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
 
 import io.HP9800Mainframe;
@@ -50,12 +57,14 @@ public class CPU
   Vector<StringBuffer> printBuffer;
   public long instructions, cycles; // sum of all executed micro instructions and clock cycles 
   boolean decode = false;
+  boolean serialMode = false; // execute shift loop bit by bit (reference mode)
+  boolean wordBRC; // branch condition evaluated by shiftWord()
   
   // Connection to Mainframe
   HP9800Mainframe mainframe;
 
   // Connection to main memory
-  Memory memory[];
+  Memory memory;
 
   // ALU
   ALU alu;
@@ -82,6 +91,13 @@ public class CPU
   int BC, DC; // binary and decimal carry
   int primaryModifier, secondaryModifier;
 
+  // codes of micro operations
+  static final int OP_NONE = 0;
+  static final int OP_UTR = 1, OP_PTR = 2, OP_TRE = 3, OP_WTM = 4, OP_TQ6 = 5, OP_QTR = 6, OP_RDM = 7, OP_ZTR = 8; // R-bus
+  static final int OP_TQR = 9, OP_IOS = 10, OP_ETR = 11, OP_XTR = 12; // R-bus derived and I/O
+  static final int OP_ZTS = 13, OP_MTS = 14, OP_TTS = 15, OP_UTS = 16, OP_ITS = 17; // S-bus
+  static final int OP_TTQ = 18, OP_QAB = 19, OP_TBE = 20, OP_CAB = 21, OP_TTP = 22, OP_TTX = 23, OP_TTO = 24; // X-code
+
   // micro operations
 
   // R-bus operations
@@ -117,6 +133,21 @@ public class CPU
   // micro code storage, each instruction has 28 bits
   int[] microCode_ROM;
 
+  // bit masks of registers in register[]
+  static final int REG_A = 0b1, REG_B = 0b10, REG_E = 0b100, REG_M = 0b1000, REG_T = 0b10000, REG_Q = 0b100000, REG_P = 0b1000000;
+  static final int ALL_REGISTERS = 0b1111111;
+
+  // temporary register values for word-parallel shifting
+  private int[] shiftedValues;
+
+  // trace recorder of micro-instructions, null if not recording
+  TraceRecorder tracer;
+
+  // optional counters per micro-address, null if counting is off
+  long[][] microCounters;
+  static final int MC_EXECUTED = 0, MC_SHIFTS = 1, MC_OPTIMIZED = 2, MC_WORD = 3, MC_SERIAL = 4, MC_IQN = 5, MC_IO = 6;
+  static final String[] MC_NAMES = {"Executed", "Shifts", "Optimized", "Word", "Serial", "IQN-inh.", "I/O-inh."};
+
 
   public CPU(HP9800Mainframe hp9800Mainframe)
   {
@@ -145,6 +176,7 @@ public class CPU
     Pregister = new Register("P", 16, 0177777);
 
     register = new Register[] {Aregister, Bregister, Eregister, Mregister, Tregister, Qregister, Pregister};
+    shiftedValues = new int[register.length];
 
     one = new Register("1", 1, 1);
     zero = new Register("0", 1, 0);
@@ -153,6 +185,8 @@ public class CPU
 
     microProgram = new MicroInstruction[256];
     microCode_ROM = new int[256];
+    ROMimage.prefetch("media/HP9800/ALUcode_ROM.dmp", 2);
+    ROMimage.prefetch("media/HP9800/BCDcode_ROM.dmp", 2);
     loadROMdump("Microcode", microCode_ROM);
 
     line = new StringBuffer("HP9800 Microcode Decoding:\n");
@@ -229,6 +263,14 @@ public class CPU
       // is shift optimization possible?
       instr.shiftOptimize = instr.TTT != 1 && instr.TTM != 1 && instr.XTR != 1;
       instr.shiftOptimize &= instr.SC.shiftOptimize && instr.XC.shiftOptimize && instr.RC.shiftOptimize && instr.AC.shiftOptimize;
+      instr.wordShift = !instr.shiftOptimize && instr.BCD == 0;
+
+      // operation codes for execution without virtual calls
+      instr.utr = instr.RC == UTR? 1 : 0;
+      instr.rc = instr.RC.code;
+      instr.sc = instr.SC.code;
+      instr.xc = instr.XC.code;
+      instr.registers = shiftedRegisters(instr);
 
       // print decoded instruction
       line = instr.decoded = new StringBuffer("");
@@ -298,13 +340,84 @@ public class CPU
     decode = on;
   }
 
+  // select bit-serial reference execution or word-parallel execution of the shift loop
+  public void setSerialMode(boolean on)
+  {
+    serialMode = on;
+  }
+
+  // switch counting per micro-address on (counters are cleared) or off
+  public void setMicroCounters(boolean on)
+  {
+    microCounters = on ? new long[MC_NAMES.length][256] : null;
+  }
+
+  /*
+   * Write decoded micro-program with counters of each micro-address:
+   * executions, shift cycles (0 if inhibited), executions of the optimized single ALU step,
+   * of the word-parallel and of the bit-serial shift loop, and executions with shift inhibited
+   * by IQN (qualifier not met) and by I/O operation.
+   * The listing is followed by the micro-instructions with the most shift cycles.
+   */
+  public void writeMicroCounters(PrintStream out, int top)
+  {
+    long[] total = new long[MC_NAMES.length];
+    StringBuffer header = new StringBuffer();
+
+    if(microCounters == null)
+      return;
+
+    for(int i = 0; i < MC_NAMES.length; i++)
+      header.append(String.format("%12s", MC_NAMES[i]));
+    header.append("  ");
+    header.append(printBuffer.get(1)); // header of decoded micro-program
+
+    out.println("HP9800 Microcode Counters:");
+    out.print(header);
+
+    for(int pc = 0; pc < 256; pc++) {
+      for(int i = 0; i < MC_NAMES.length; i++) {
+        out.print(String.format("%12d", microCounters[i][pc]));
+        total[i] += microCounters[i][pc];
+      }
+      out.print("  ");
+      out.print(microProgram[pc].decoded);
+    }
+
+    for(int i = 0; i < MC_NAMES.length; i++)
+      out.print(String.format("%12d", total[i]));
+    out.println("  Total");
+
+    // micro-addresses by shift cycles
+    Integer[] hot = new Integer[256];
+    for(int pc = 0; pc < 256; pc++)
+      hot[pc] = pc;
+
+    Arrays.sort(hot, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b)
+      {
+        return(Long.compare(microCounters[MC_SHIFTS][b], microCounters[MC_SHIFTS][a]));
+      }
+    });
+
+    out.println();
+    out.println("Hot spots by shift cycles:");
+    out.print(header);
+    for(int j = 0; j < Math.min(top, 256) && microCounters[MC_EXECUTED][hot[j]] > 0; j++) {
+      for(int i = 0; i < MC_NAMES.length; i++)
+        out.print(String.format("%12d", microCounters[i][hot[j]]));
+      out.print("  ");
+      out.print(microProgram[hot[j]].decoded);
+    }
+  }
+
   // Dump contents of FP register in hex form
   public String showRegister(int address)
   {
     StringBuffer out = new StringBuffer("\t");
 
     for(int i = 0; i <= 3; i++) {
-      out.append(intToHexString(memory[address+i].getValue(), 4) + " ");
+      out.append(intToHexString(memory.getValue(address+i), 4) + " ");
     }
 
     return(out.toString());
@@ -312,52 +425,35 @@ public class CPU
 
   void loadROMdump(String ROMname, int[] ROM)
   {
-    String line;
-    int address;
-    DataInputStream dumpFile = null;
+    int[] dump = null;
 
     System.out.print("HP9800 " + ROMname + " ROM ");
 
-    try{
-      dumpFile = new DataInputStream(getClass().getResourceAsStream("/media/HP9800/" + ROMname + "_ROM.dmp"));
-    } catch (NullPointerException e) {
-      System.out.println("dump not found!");
-      System.exit(1);
-    }
-
-    // Read ROM file line by line
+    // get binary values from ROM image
     try {
-      for(address = 0; address < ROM.length; address++) {
-        line = dumpFile.readLine();
-        if(line == null) {
-          System.err.println("dump file is too short.");
-          System.exit(1);
-        }
-
-        try {
-          // read octal value
-          int code = Integer.parseInt(line, 2);
-
-          //store in ROM
-          ROM[address] = code;
-        } catch (NumberFormatException e) {
-          // format error
-          System.err.println(e.toString());
-          System.exit(1);
-        }
-      }
-
-      dumpFile.close();
-      System.out.println("loaded.");
-
-    } catch (NullPointerException e) {
-      System.out.println("dump not found!");
+      dump = ROMimage.load("media/HP9800/" + ROMname + "_ROM.dmp", 2);
+    } catch (NumberFormatException e) {
+      // format error
+      System.err.println(e.toString());
       System.exit(1);
     } catch (IOException e) {
       // read error
       System.err.println(e.toString());
       System.exit(1);
     }
+
+    if(dump == null) {
+      System.out.println("dump not found!");
+      System.exit(1);
+    }
+
+    if(dump.length < ROM.length) {
+      System.err.println("dump file is too short.");
+      System.exit(1);
+    }
+
+    System.arraycopy(dump, 0, ROM, 0, ROM.length);
+    System.out.println("loaded.");
   }
 
   public String intToBinaryString(int value, int digits)
@@ -381,13 +477,15 @@ public class CPU
   public void exec()
   {
     MicroInstruction instr;
-    int clock, i;
-    boolean brc = false;
+    int clock;
+    boolean brc;
     StringBuffer line = null; 
-    Register reg;
 
     instr = microProgram[PC];
 
+    if(tracer != null)
+      tracer.recordMicro();
+
     if(decode) {
       line = new StringBuffer(" ");
 
@@ -447,8 +545,8 @@ public class CPU
       Rbus.shiftEnable(true);
     } 
 
-    instr.SC.exec(); // execute S-bus operation
-    instr.RC.exec(); // execute R-bus operation at last as preparation for IOS
+    sBusOperation(instr.sc); // execute S-bus operation
+    rBusOperation(instr.rc); // execute R-bus operation at last as preparation for IOS
 
     // set data flow destination
     if(instr.TTM == 1) {
@@ -461,7 +559,7 @@ public class CPU
       Tregister.shiftEnable(true);
     }
 
-    instr.XC.exec(); // execute X operation
+    xOperation(instr.xc); // execute X operation
 
     // if Rbus or Sbus have no defined source they are 0
     if(Rbus == null)
@@ -476,16 +574,101 @@ public class CPU
 
     // inhibit shifting if I/O operation (don't inhibit in SRA)
     if(instr.RC == IOS)
-      if((Qregister.getValue() & 0b0000_0100_0000_0000) != 0)
+      if((Qregister.getValue() & 0b0000_0100_0000_0000) != 0) {
         clock = -1;
+        if(microCounters != null)
+          microCounters[MC_IO][PC]++;
+      }
 
     // inhibit shifting if qualifier not met
     if(instr.IQN == 1)
-      if(!qualifierTest(primaryModifier))
+      if(!qualifierTest(primaryModifier)) {
         clock = -1;
+        if(microCounters != null)
+          microCounters[MC_IQN][PC]++;
+      }
+
+    // execute shift cycles word-parallel or bit by bit (reference mode)
+    // the ALU is prepared only by the shift loops, aluStep() takes its parameters from the micro-instruction
+    if(microCounters != null)
+      brc = countedShift(instr, clock);
+    else if(!serialMode && instr.BCD == 0 && (clock < 0 || instr.shiftOptimize))
+      brc = aluStep(instr, clock);
+    else if(!serialMode && clock >= 0 && instr.wordShift && shiftWord(instr, clock + 1))
+      brc = wordBRC;
+    else
+      brc = shiftSerial(instr, clock);
+
+    // finish BCD operations after shift loop, when ROMCLK changes 1->0 
+    if(instr.BCD == 1) {
+      // transfer BCD result to A only if UTR false
+      if(alu.utr == 0)
+        Aregister.setValue((Aregister.getValue() & 0xfff0) | alu.z);
+      DC = alu.dc; // set decimal carry (SDC is implemented in BCD ROM with UTR=1
+    }
+    
+    if(brc)
+      secondaryModifier &= 0b1110; // mask lowest bit in secondary modifier
+    PC ^= (primaryModifier << 4) | secondaryModifier; // get next address by XORing current address with PM and SM
+
+    // cleanup shift sources to register rotation
+    cleanSources(instr.registers);
+  }
+
+  // shift loop like in exec() with counting of the executed path, returns branch condition
+  private boolean countedShift(MicroInstruction instr, int clock)
+  {
+    microCounters[MC_EXECUTED][PC]++;
+    microCounters[MC_SHIFTS][PC] += clock + 1;
+
+    if(!serialMode && instr.BCD == 0 && (clock < 0 || instr.shiftOptimize)) {
+      if(clock >= 0)
+        microCounters[MC_OPTIMIZED][PC]++;
+      return(aluStep(instr, clock));
+    }
+
+    if(!serialMode && clock >= 0 && instr.wordShift && shiftWord(instr, clock + 1)) {
+      microCounters[MC_WORD][PC]++;
+      return(wordBRC);
+    }
+
+    microCounters[MC_SERIAL][PC]++;
+    return(shiftSerial(instr, clock));
+  }
+
+  // registers which may be shifted by a micro-instruction
+  private int shiftedRegisters(MicroInstruction instr)
+  {
+    int mask = 0;
+
+    if(instr.rc == OP_IOS)
+      return(ALL_REGISTERS); // IOunit may use any register
+
+    if(instr.XTR == 1 || instr.xc == OP_TTX)
+      mask |= REG_A | REG_B;
+    if(instr.TTM == 1 || instr.sc == OP_MTS)
+      mask |= REG_M;
+    if(instr.TTT == 1 || instr.sc == OP_TTS || instr.rc == OP_TRE)
+      mask |= REG_T;
+    if(instr.rc == OP_TRE || instr.rc == OP_ETR || instr.xc == OP_TBE)
+      mask |= REG_E;
+    if(instr.rc == OP_TQ6 || instr.rc == OP_QTR || instr.xc == OP_TTQ)
+      mask |= REG_Q;
+    if(instr.rc == OP_PTR || instr.xc == OP_TTP)
+      mask |= REG_P;
+
+    return(mask);
+  }
+
+  // bit-serial execution of shift loop, returns branch condition
+  private boolean shiftSerial(MicroInstruction instr, int clock)
+  {
+    boolean brc = false;
+    Register reg;
+    int i;
 
     // prepare ALU parameters
-    alu.init(BC, instr.RC == UTR? 1 : 0, instr.ALUcode, instr.BCD);
+    alu.init(BC, instr.utr, instr.ALUcode, instr.BCD);
 
     // shift loop
     do {
@@ -524,20 +707,171 @@ public class CPU
       
     } while(--clock >= 0);
 
-    // finish BCD operations after shift loop, when ROMCLK changes 1->0 
-    if(instr.BCD == 1) {
-      // transfer BCD result to A only if UTR false
-      if(alu.utr == 0)
-        Aregister.setValue((Aregister.getValue() & 0xfff0) | alu.z);
-      DC = alu.dc; // set decimal carry (SDC is implemented in BCD ROM with UTR=1
+    return(brc);
+  }
+
+  // single binary ALU operation without shifting (optimized or inhibited shift loop), returns branch condition
+  private boolean aluStep(MicroInstruction instr, int clock)
+  {
+    boolean brc = false;
+    int y;
+
+    y = alu.ALUdecoded[instr.ALUcode << 5 | (Rbus.value & 1) << 3 | (Sbus.value & 1) << 2 | Tregister.value & 0b10 | BC];
+    Tbus.value = y >> 3;
+
+    // carry relevant operation
+    if((instr.ALUcode & 0b100) != 0)
+      alu.bc = y >> 2 & 1;
+    else
+      alu.bc = BC;
+
+    if(instr.BRC == 1)
+      brc = !qualifierTest(primaryModifier);
+
+    if(instr.rc == OP_TQ6) {  // TQ6 has to be executed even if shift is inhibited
+      Qregister.loadInput();
+      Qregister.shift();
     }
-    
-    if(brc)
-      secondaryModifier &= 0b1110; // mask lowest bit in secondary modifier
-    PC ^= (primaryModifier << 4) | secondaryModifier; // get next address by XORing current address with PM and SM
 
-    // cleanup shift sources to register rotation
-    cleanSources();
+    if(clock >= 0)
+      BC = alu.bc;
+
+    return(brc);
+  }
+
+  // bit stream which a register shifts out to its bus during n clock cycles
+  private long outputStream(Register reg, int tStream)
+  {
+    Register src;
+
+    if(!reg.shiftEnabled)
+      return(-(reg.value & 1)); // constant output (also registers one and zero)
+
+    if(reg.width >= 16)
+      return(reg.value); // max. 16 clock cycles, input bits are never shifted out
+
+    // register is shorter than number of clock cycles (E-register): append input stream
+    src = reg.src;
+    if(src == Tbus)
+      return(reg.value | (long)tStream << reg.width);
+    if(src == reg)
+      return(reg.value * 0x1111_1111L); // rotation of 4 bit register
+    return(reg.value | outputStream(src, tStream) << reg.width);
+  }
+
+  // input bits loaded into a register during n clock cycles
+  private long inputStream(Register reg, int tStream)
+  {
+    return(reg.src == Tbus ? tStream : outputStream(reg.src, tStream));
+  }
+
+  // value of register after n shift cycles
+  private int shiftedValue(Register reg, int tStream, int n)
+  {
+    if(!reg.shiftEnabled)
+      return(reg.value);
+
+    if(reg == Qregister && Qregister.q6mode) {
+      // only bit 6 is loaded with input
+      if(n == 0)
+        return(reg.value);
+      return(reg.value & 0b1111_1111_1011_1111 | (int)(inputStream(reg, tStream) >> (n - 1) & 1) << 6);
+    }
+
+    return((int)((reg.value | inputStream(reg, tStream) << reg.width) >>> n) & reg.mask);
+  }
+
+  /*
+   * Execute all n shift cycles of a binary ALU operation word-parallel.
+   * Rbus and Sbus are evaluated as bit streams and combined to the T-bus stream in one step.
+   * Returns false if the T-bus is fed back to the R-bus within n cycles (TBE with more than 4 cycles),
+   * the shift loop has to be executed bit by bit in this case.
+   */
+  private boolean shiftWord(MicroInstruction instr, int n)
+  {
+    long r, s, m;
+    int t, bc, bcPrev;
+    int i, q, p, mask;
+    Register reg;
+
+    if(Rbus == Eregister && Eregister.src == Tbus && n > Eregister.width)
+      return(false);
+
+    m = (1L << n) - 1;
+    r = outputStream(Rbus, 0) & m;
+    s = outputStream(Sbus, 0) & m;
+    bc = bcPrev = BC;
+
+    // ALU operations as defined by ALU ROM, BCD = 0
+    switch(instr.ALUcode) {
+    case 0: // XOR
+      t = (int)(r ^ s);
+      break;
+
+    case 1: // AND
+      t = (int)(r & s);
+      break;
+
+    case 2: // IOR
+      t = (int)(r | s);
+      break;
+
+    case 3: // ZTT
+      t = 0;
+      break;
+
+    case 4: // ZTT.CBC
+      t = 0;
+      bc = 0;
+      if(n > 1) bcPrev = 0;
+      break;
+
+    case 5: // IOR.CBC
+      t = (int)(r | s);
+      bc = 0;
+      if(n > 1) bcPrev = 0;
+      break;
+
+    case 6: // IOR.SBC
+      t = (int)(r | s);
+      bc = 1;
+      if(n > 1) bcPrev = 1;
+      break;
+
+    default: // ADD
+      t = (int)(r + s + BC);
+      bc = t >> n & 1;
+      bcPrev = (int)(((r & m >> 1) + (s & m >> 1) + BC) >> (n - 1)) & 1;
+      t &= m;
+    }
+
+    // branch condition is checked before the last shift
+    wordBRC = false;
+    if(instr.BRC == 1) {
+      q = shiftedValue(Qregister, t, n - 1);
+      p = shiftedValue(Pregister, t, n - 1);
+      wordBRC = !qualifierTest(primaryModifier, q, p, bcPrev);
+    }
+
+    // compute all shifted values first, as they depend on the unshifted source registers
+    for(mask = instr.registers; mask != 0; mask &= mask - 1) {
+      i = Integer.numberOfTrailingZeros(mask);
+      if((reg = register[i]).shiftEnabled)
+        shiftedValues[i] = shiftedValue(reg, t, n);
+    }
+
+    for(mask = instr.registers; mask != 0; mask &= mask - 1) {
+      i = Integer.numberOfTrailingZeros(mask);
+      if((reg = register[i]).shiftEnabled)
+        reg.value = shiftedValues[i];
+    }
+
+    // ALU state after last cycle
+    Tbus.value = t >> (n - 1) & 1;
+    alu.bc = bc;
+    BC = bc;
+
+    return(true);
   }
 
   public class ALU
@@ -701,12 +1035,6 @@ public class CPU
       z = 0;
     }
     
-    public int exec(int ac)  // used by IOunit
-    {
-    	this.ac = ac << 5;
-    	return(exec());
-    }
-    
     public int exec()
     {
       // execute ALU operation
@@ -755,10 +1083,17 @@ public class CPU
   }
 
   void cleanSources()
+  {
+    cleanSources(ALL_REGISTERS);
+  }
+
+  // cleanup of registers given by bit mask of register[]
+  void cleanSources(int mask)
   {
     // set alls shift sources to register rotation and disable shifting
-    for(int i = 0; i < register.length; i++) {
-      register[i].setSource(register[i]);
+    for(int i = 0; mask != 0; i++, mask >>= 1) {
+      if((mask & 1) != 0)
+        register[i].setSource(register[i]);
     }
 
     Qregister.setQ6mode(false);
@@ -769,15 +1104,19 @@ public class CPU
 
   boolean qualifierTest(int PM)
   {
-    int q = Qregister.getValue();
+    return(qualifierTest(PM, Qregister.getValue(), Pregister.getValue(), BC));
+  }
 
+  // test qualifier for given values of Q-register, P-register, and binary carry
+  boolean qualifierTest(int PM, int q, int p, int BC)
+  {
     if(PM <= 6) {
       return((q & (1 << PM)) != 0);  // test bit PM of Q-register
     }
 
     switch(PM) {
     case 7: return(BC != 0);  // test binary carry
-    case 8: return(Pregister.getOutput() != 0);  // test bit 0 of P-register
+    case 8: return((p & 1) != 0);  // test bit 0 of P-register
     case 9: return((q & 0b1000_0000_0000_0000) != 0);  // test bit 15 of Q-register
     case 10: return((q & 0b0111_0000_0000_0000) != 0b0111_0000_0000_0000);  // test memory reference operation, Q-register bits 14,13,12 <> 111
     case 11: return((q & 0b0000_0100_0000_0000) != 0);  // test bit 10 of Q-register
@@ -815,10 +1154,14 @@ public class CPU
   class MicroInstruction
   {
     int microCode, ALUcode, BCD;
+    int utr; // 1 if R-code is UTR (parameter of BCD ROM)
     int PM, SM, CYCLE;
     int BRC, IQN, XTR, TTM, TTT;
     StringBuffer decoded;
     boolean shiftOptimize;
+    boolean wordShift; // shift loop may be executed word-parallel
+    int registers; // bit mask of registers in register[] which may be shifted or get another source
+    int rc, sc, xc; // operation codes of RC, SC, and XC
 
     MicroOperation RC, SC, XC, AC;
 
@@ -832,12 +1175,169 @@ public class CPU
   {
     String name;
     boolean shiftOptimize;
+    int code = OP_NONE;
 
     public MicroOperation()
     {}
 
     public void exec()
-    {}
+    {
+      if(code <= OP_XTR)
+        rBusOperation(code);
+      else if(code <= OP_ITS)
+        sBusOperation(code);
+      else
+        xOperation(code);
+    }
+  }
+
+  /*
+   * Micro operations by code. Each switch is small enough to be inlined in exec()
+   */
+
+  void rBusOperation(int code)
+  {
+    switch(code) {
+    case OP_UTR: // 1 to R-bus
+      Rbus = one;
+      break;
+
+    case OP_PTR: // P-register to R-bus
+      Rbus = Pregister;
+      Pregister.shiftEnable(true);
+      break;
+
+    case OP_TRE: // T-register to E-register, E-register to R-bus
+      Eregister.setSource(Tregister);
+      Rbus = Eregister;
+      Tregister.shiftEnable(true);
+      Eregister.shiftEnable(true);
+      break;
+
+    case OP_WTM: // T-register to memory[M], 0 to R-bus
+      memory.setValue(Mregister.getValue() & 0077777, Tregister.getValue()); // indirect bit must be discarded in memory access
+      if(Rbus == null) Rbus = zero;
+      break;
+
+    case OP_TQ6: // T-bus to Q-register bit 6, 0 to R-bus
+      Qregister.setSource(Tbus);
+      Qregister.setQ6mode(true);
+      if(Rbus == null) Rbus = zero;
+      Qregister.shiftEnable(true);
+      break;
+
+    case OP_QTR: // Q-register to R-bus
+      Rbus = Qregister;
+      Qregister.shiftEnable(true);
+      break;
+
+    case OP_RDM: // memory[M] to T-register, 0 to R-bus
+      Tregister.setValue(memory.getValue(Mregister.getValue() & 0077777)); // indirect bit must be discarded
+      if(Rbus == null) Rbus = zero;
+      break;
+
+    case OP_ZTR: // 0 to R-bus, if not set by XTR
+      if(Rbus == null) Rbus = zero;
+      break;
+
+    case OP_TQR: // primary address modifier from Q-register
+      primaryModifier = (Qregister.getValue() >> 11) & 0b01111;
+      primaryModifier &= ((primaryModifier >> 3) | 0b1110);
+      break;
+
+    case OP_IOS: // start I/O operation
+      ioUnit.exec();
+      break;
+
+    case OP_ETR: // 0 to E-register, E-register to R-bus
+      Eregister.setSource(zero);
+      Rbus = Eregister;
+      Eregister.shiftEnable(true);
+      break;
+
+    case OP_XTR: // A/B-register to R-bus
+      Rbus = ABselector ? Bregister : Aregister;
+      Rbus.shiftEnable(true);
+      break;
+    }
+  }
+
+  void sBusOperation(int code)
+  {
+    switch(code) {
+    case OP_ZTS: // 0 to S-bus
+      Sbus = zero;
+      break;
+
+    case OP_MTS: // M-register to S-bus
+      Sbus = Mregister;
+      Mregister.shiftEnable(true);
+      break;
+
+    case OP_TTS: // T-register to S-bus
+      Sbus = Tregister;
+      Tregister.shiftEnable(true);
+      break;
+
+    case OP_UTS: // 1 to S-bus
+      Sbus = one;
+      break;
+
+    case OP_ITS: // IO-register to S-bus
+      Sbus = Iregister;
+      Iregister.shiftEnable(true);
+      Iregister.setSource(zero);  // contents of IO-register is not preserved
+      break;
+    }
+  }
+
+  void xOperation(int code)
+  {
+    switch(code) {
+    case OP_TTQ: // T-bus to Q-register
+      Qregister.setSource(Tbus);
+      Qregister.shiftEnable(true);
+      break;
+
+    case OP_QAB: // Q-register bit 11 to A/B-selector
+      ABselector = (Qregister.getValue() & 0b0000_1000_0000_0000) != 0;
+      DC = 0; // clear decimal carry
+      break;
+
+    case OP_TBE: // T-bus to E-register, E-register to R-bus
+      Eregister.setSource(Tbus);
+      // shift E to R-bus only if this is not already filled by another source, different from zero.
+      // In hardware all sources for R-bus are or-ed
+      if(Rbus == null || Rbus == zero)
+        Rbus = Eregister;
+
+      Eregister.shiftEnable(true);
+      break;
+
+    case OP_CAB: // complement A/B-selector
+      ABselector = !ABselector;
+      break;
+
+    case OP_TTP: // T-bus to P-register
+      Pregister.setSource(Tbus);
+      Pregister.shiftEnable(true);
+      break;
+
+    case OP_TTX: // T-bus to A/B-register
+      if(!ABselector) {
+        Aregister.setSource(Tbus);
+        Aregister.shiftEnable(true);
+      }	else {
+        Bregister.setSource(Tbus);
+        Bregister.shiftEnable(true);
+      }
+      break;
+
+    case OP_TTO: // T-bus to IO-register
+      Iregister.setSource(Tbus);
+      Iregister.shiftEnable(true);
+      break;
+    }
   }
 
   /*
@@ -853,11 +1353,7 @@ public class CPU
     {
       name = "UTR";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      Rbus = one;
+      code = OP_UTR;
     }
   }
 
@@ -870,12 +1366,7 @@ public class CPU
     {
       name = "PTR";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Rbus = Pregister;
-      Pregister.shiftEnable(true);
+      code = OP_PTR;
     }
   }
 
@@ -889,14 +1380,7 @@ public class CPU
     {
       name = "TRE";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Eregister.setSource(Tregister);
-      Rbus = Eregister;
-      Tregister.shiftEnable(true);
-      Eregister.shiftEnable(true);
+      code = OP_TRE;
     }
   }
 
@@ -910,12 +1394,7 @@ public class CPU
     {
       name = "WTM";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      memory[Mregister.getValue() & 0077777].setValue(Tregister.getValue()); // indirect bit must be discarded in memory access
-      if(Rbus == null) Rbus = zero;
+      code = OP_WTM;
     }
   }
 
@@ -929,14 +1408,7 @@ public class CPU
     {
       name = "TQ6";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Qregister.setSource(Tbus);
-      Qregister.setQ6mode(true); // shift T-bus into Q-register bit 6
-      if(Rbus == null) Rbus = zero;
-      Qregister.shiftEnable(true);
+      code = OP_TQ6;
     }
   }
 
@@ -950,12 +1422,7 @@ public class CPU
     {
       name = "QTR";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Rbus = Qregister;
-      Qregister.shiftEnable(true);
+      code = OP_QTR;
     }
   }
 
@@ -969,12 +1436,7 @@ public class CPU
     {
       name = "RDM";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      Tregister.setValue(memory[Mregister.getValue() & 0077777].getValue()); // indirect bit must be discarded
-      if(Rbus == null) Rbus = zero;
+      code = OP_RDM;
     }
   }
 
@@ -989,11 +1451,7 @@ public class CPU
     {
       name = "ZTR";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      if(Rbus == null) Rbus = zero;
+      code = OP_ZTR;
     }
   }
 
@@ -1010,11 +1468,7 @@ public class CPU
     {
       name = "ZTS";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      Sbus = zero;
+      code = OP_ZTS;
     }
   }
 
@@ -1028,12 +1482,7 @@ public class CPU
     {
       name = "MTS";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Sbus = Mregister;
-      Mregister.shiftEnable(true);
+      code = OP_MTS;
     }
   }
 
@@ -1047,12 +1496,7 @@ public class CPU
     {
       name = "TTS";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Sbus = Tregister;
-      Tregister.shiftEnable(true);
+      code = OP_TTS;
     }
   }
 
@@ -1065,11 +1509,7 @@ public class CPU
     {
       name = "UTS";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      Sbus = one;
+      code = OP_UTS;
     }
   }
 
@@ -1083,13 +1523,7 @@ public class CPU
     {
       name = "ITS";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Sbus = Iregister;
-      Iregister.shiftEnable(true);
-      Iregister.setSource(zero);  // contents of IO-register is not preserved
+      code = OP_ITS;
     }
   }
 
@@ -1102,12 +1536,7 @@ public class CPU
     {
       name = "TTO";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Iregister.setSource(Tbus);
-      Iregister.shiftEnable(true);
+      code = OP_TTO;
     }
   }
 
@@ -1120,12 +1549,7 @@ public class CPU
     {
       name = "XTR";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Rbus = ABselector ? Bregister : Aregister;
-      Rbus.shiftEnable(true);
+      code = OP_XTR;
     }
   }
 
@@ -1143,12 +1567,7 @@ public class CPU
     {
       name = "TTQ";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Qregister.setSource(Tbus);
-      Qregister.shiftEnable(true);
+      code = OP_TTQ;
     }
   }
 
@@ -1161,12 +1580,7 @@ public class CPU
     {
       name = "QAB";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      ABselector = (Qregister.getValue() & 0b0000_1000_0000_0000) != 0; // load Q11 to AB-selector
-      DC = 0; // clear decimal carry
+      code = OP_QAB;
     }
   }
 
@@ -1179,10 +1593,8 @@ public class CPU
     {
       name = "BCD";
       shiftOptimize = true;
+      code = OP_NONE;
     }
-
-    public void exec()
-    {}
   }
 
   class TBE extends MicroOperation
@@ -1195,17 +1607,7 @@ public class CPU
     {
       name = "TBE";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Eregister.setSource(Tbus);
-      // shift E to R-bus only if this is not already filled by another source, different from zero.
-      // In hardware all sources for R-bus are or-ed
-      if(Rbus == null || Rbus == zero)
-        Rbus = Eregister;
-
-      Eregister.shiftEnable(true);
+      code = OP_TBE;
     }
   }
 
@@ -1218,11 +1620,7 @@ public class CPU
     {
       name = "CAB";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      ABselector = !ABselector;
+      code = OP_CAB;
     }
   }
 
@@ -1235,12 +1633,7 @@ public class CPU
     {
       name = "TTP";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Pregister.setSource(Tbus);
-      Pregister.shiftEnable(true);
+      code = OP_TTP;
     }
   }
 
@@ -1253,17 +1646,7 @@ public class CPU
     {
       name = "TTX";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      if(!ABselector) {
-        Aregister.setSource(Tbus);
-        Aregister.shiftEnable(true);
-      }	else {
-        Bregister.setSource(Tbus);
-        Bregister.shiftEnable(true);
-      }
+      code = OP_TTX;
     }
   }
 
@@ -1276,10 +1659,8 @@ public class CPU
     {
       name = "NOP";
       shiftOptimize = true;
+      code = OP_NONE;
     }
-
-    public void exec()
-    {}
   }
 
   class TQR extends MicroOperation
@@ -1291,12 +1672,7 @@ public class CPU
     {
       name = "TQR";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      primaryModifier = (Qregister.getValue() >> 11) & 0b01111;
-      primaryModifier &= ((primaryModifier >> 3) | 0b1110); 
+      code = OP_TQR;
     }
   }
 
@@ -1310,11 +1686,7 @@ public class CPU
     {
       name = "IOS";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
-      ioUnit.exec();
+      code = OP_IOS;
     }
   }
 
@@ -1328,13 +1700,7 @@ public class CPU
     {
       name = "ETR";
       shiftOptimize = false;
-    }
-
-    public void exec()
-    {
-      Eregister.setSource(zero);
-      Rbus = Eregister;
-      Eregister.shiftEnable(true);
+      code = OP_ETR;
     }
   }
 
@@ -1351,10 +1717,7 @@ public class CPU
     {
       name = "XOR";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
+      code = OP_NONE;
     }
   }
 
@@ -1367,10 +1730,7 @@ public class CPU
     {
       name = "IOR";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
+      code = OP_NONE;
     }
   }
 
@@ -1383,10 +1743,7 @@ public class CPU
     {
       name = "AND";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
+      code = OP_NONE;
     }
   }
 
@@ -1399,10 +1756,7 @@ public class CPU
     {
       name = "ZTT";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
+      code = OP_NONE;
     }
   }
 
@@ -1415,10 +1769,7 @@ public class CPU
     {
       name = "ZTT.CBC";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
+      code = OP_NONE;
     }
   }
 
@@ -1431,10 +1782,7 @@ public class CPU
     {
       name = "IOR.CBC";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
+      code = OP_NONE;
     }
   }
 
@@ -1447,10 +1795,7 @@ public class CPU
     {
       name = "IOR.SBC";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
+      code = OP_NONE;
     }
   }
 
@@ -1463,10 +1808,7 @@ public class CPU
     {
       name = "ADD";
       shiftOptimize = true;
-    }
-
-    public void exec()
-    {
+      code = OP_NONE;
     }
   }
 }
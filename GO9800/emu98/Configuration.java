@@ -19,6 +19,9 @@
 
 /*
  * 28.10.2017 Rel. 2.10: Code transfered from class Emulator 
+ * 17.10.2026 Rel. 2.60: Changed breakpoints, watchpoints, and MAW to packed memory array
+ * 17.10.2026 Rel. 2.60: No device windows in headless mode
+ * 17.10.2026 Rel. 2.60: ROM dumps prefetched before configuration
  */
 
 package emu98;
@@ -279,7 +282,7 @@ public class Configuration
     }
     
     // create JFrame for device if necessary
-    if(ioDevice.needsWindow())
+    if(ioDevice.needsWindow() && !mainframe.headless)
     	ioDevice.setDeviceWindow(new DeviceWindow(ioDevice));
 
     if(ioInterface != null) {
@@ -307,6 +310,9 @@ public class Configuration
     model = machineName;
     version = "";
 
+    // load all ROM blocks in parallel, they are taken in order by MemoryBlock.initialize()
+    prefetchROMs(machineName);
+
     // Read config file line by line
     try {
       cfgFile = openConfigFile(machineName + ".cfg", true);
@@ -359,20 +365,17 @@ public class Configuration
 
             // is it a breakpoint definition?
             if(blockType.startsWith("Break")) {
-              if(mainframe.memory[address] != null)
-              	mainframe.memory[address].breakPoint = true;
+              mainframe.memory.setBreakPoint(address);
               continue; // read next line
             }
 
             // is it a watchpoint definition?
             if(blockType.startsWith("Watch")) {
-              if(mainframe.memory[address] != null) {
-              	mainframe.memory[address].watchPoint = true;
-                if(tokenline.hasMoreTokens()) {
-                	mainframe.memory[address].watchValue = Integer.parseInt(tokenline.nextToken(), 8);
-                	mainframe.memory[address].watchCondition = tokenline.nextToken().charAt(0);
-                }
-              }
+              if(tokenline.hasMoreTokens()) {
+                int watchValue = Integer.parseInt(tokenline.nextToken(), 8);
+                mainframe.memory.setWatchPoint(address, watchValue, tokenline.nextToken().charAt(0));
+              } else
+                mainframe.memory.setWatchPoint(address, 0, ' ');
               continue; // read next line
             }
 
@@ -417,6 +420,45 @@ public class Configuration
   	return(true);
   }
 
+  // start loading of all ROM dumps named in config file
+  @SuppressWarnings("deprecation")
+  private void prefetchROMs(String machineName)
+  {
+    DataInputStream cfgFile = null;
+    String line, blockType;
+    String romModel = machineName;
+
+    try {
+      cfgFile = openConfigFile(machineName + ".cfg", false);
+      if(cfgFile == null)
+        return;
+
+      while ((line = cfgFile.readLine()) != null && line.length() != 0) {
+        StringTokenizer tokenline = new StringTokenizer(line, " \t");
+
+        // ignore comment lines
+        if(line.charAt(0) == ';' || tokenline.countTokens() < 2)
+          continue;
+
+        blockType = tokenline.nextToken();
+
+        if(blockType.equals("Model"))
+          romModel = tokenline.nextToken();
+
+        // ROM <address> <length> <name> [<slot>]
+        if(blockType.equals("ROM") && tokenline.countTokens() >= 3) {
+          tokenline.nextToken();
+          tokenline.nextToken();
+          ROMimage.prefetch("media/" + romModel + "/" + tokenline.nextToken() + "_ROM.dmp", 8);
+        }
+      }
+
+      cfgFile.close();
+    } catch (IOException e) {
+      // ROMs are loaded by MemoryBlock.initialize()
+    }
+  }
+
 	// HP9821A only: generate Maximum Address of RWM (hardwired in original HP9821A)
   public void setMAW()
   {
@@ -425,12 +467,13 @@ public class Configuration
     // check every block of 04000 words
     for(MAW = 032000; MAW > 022000; MAW -= 004000)
     {
-      if(mainframe.memory[MAW-1].isRW)
+      if(mainframe.memory.isRW(MAW-1))
         break;
     }
 
     // set MAW
-    mainframe.memory[01377] = new Memory(false, 01377, MAW);
+    mainframe.memory.setRW(01377, false);
+    mainframe.memory.load(01377, MAW);
   }
 
   public void setROM(String slot, String romName)
@@ -27,6 +27,8 @@
  * 28.10.2007 Rel. 1.20 Added infinite WAIT and breakpoint() method
  * 05.08.2016 Rel. 2.00 Added micro-code select box
  * 03.11.2017 Rel. 2.10 Changed background color
+ * 17.10.2026 Rel. 2.60 Console dialog is created only if not running headless, otherwise output goes to System.out
+ * 17.10.2026 Rel. 2.60 Trace mode is set in memory of this mainframe instead of static Memory.trace
  */
 
 package emu98;
@@ -36,6 +38,7 @@ import io.ImageController;
 import io.ImageMedia;
 import javax.swing.JPanel;
 import java.awt.Frame;
+import java.awt.GraphicsEnvironment;
 import javax.swing.JDialog;
 import javax.swing.JLabel;
 import javax.swing.JTextArea;
@@ -56,10 +59,9 @@ import java.awt.Color;
 import java.awt.event.KeyEvent;
 import java.awt.Insets;
 
-public class Console extends JDialog implements ActionListener
+public class Console implements ActionListener
 {
-
-  private static final long serialVersionUID = 1L;
+  private JDialog dialog = null;
   private JPanel jContentPane = null;
   private JLabel columnLabels = null;
   private JTextArea consoleOutput = null;
@@ -82,6 +84,7 @@ public class Console extends JDialog implements ActionListener
 
   private static final int MAX_LINES = 4096;
   private Emulator emu;
+  private HP9800Mainframe mainframe;
   private ImageController imageController;
   private boolean debugMode = false;
 
@@ -90,8 +93,12 @@ public class Console extends JDialog implements ActionListener
    */
   public Console(Frame owner, HP9800Mainframe mainframe)
   {
-    super(owner);
-    initialize();
+    // no dialog window in headless mode
+    if(!GraphicsEnvironment.isHeadless()) {
+      dialog = new JDialog(owner);
+      initialize();
+    }
+    this.mainframe = mainframe;
     emu = mainframe.emu;
     imageController = mainframe.imageController;
   }
@@ -103,10 +110,27 @@ public class Console extends JDialog implements ActionListener
    */
   private void initialize()
   {
-    this.setResizable(true);
-    this.setBounds(new Rectangle(0, 0, 550, 350));
-    this.setContentPane(getJContentPane());
-    this.setTitle("HP9800 Console");
+    dialog.setResizable(true);
+    dialog.setBounds(new Rectangle(0, 0, 550, 350));
+    dialog.setContentPane(getJContentPane());
+    dialog.setTitle("HP9800 Console");
+  }
+
+  public void setVisible(boolean visible)
+  {
+    if(dialog != null)
+      dialog.setVisible(visible);
+  }
+
+  public boolean isVisible()
+  {
+    return(dialog != null && dialog.isVisible());
+  }
+
+  public void dispose()
+  {
+    if(dialog != null)
+      dialog.dispose();
   }
 
   /**
@@ -475,6 +499,11 @@ public class Console extends JDialog implements ActionListener
 
   public void append(String line)
   {
+    if(dialog == null) {
+      System.out.print(line);
+      return;
+    }
+
     int lines = consoleOutput.getLineCount();
     int num = 0;
 
@@ -496,6 +525,9 @@ public class Console extends JDialog implements ActionListener
 
   public void clear()
   {
+    if(dialog == null)
+      return;
+
     int lines = consoleOutput.getLineCount();
     int num = 0;
 
@@ -511,11 +543,15 @@ public class Console extends JDialog implements ActionListener
 
   public void breakpoint()
   {
+    // there is no user to continue in headless mode
+    if(dialog == null)
+      return;
+
     disassembleCheckBox.setEnabled(false);
     disassembleCheckBox.setSelected(false);
     traceButton.setEnabled(false);
     runButton.setEnabled(true);
-    Memory.trace = true;
+    mainframe.memory.trace = true;
     setVisible(true);
   }
 
@@ -550,7 +586,7 @@ public class Console extends JDialog implements ActionListener
       disassembleCheckBox.setSelected(false);
       traceButton.setEnabled(false);
       runButton.setEnabled(true);
-      Memory.trace = true;
+      mainframe.memory.trace = true;
       emu.emuThread.interrupt();
     }
 
@@ -558,7 +594,7 @@ public class Console extends JDialog implements ActionListener
       disassembleCheckBox.setEnabled(true);
       traceButton.setEnabled(true);
       runButton.setEnabled(false);
-      Memory.trace = false;
+      mainframe.memory.trace = false;
       emu.emuThread.interrupt();
     }
 
@@ -0,0 +1,180 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: device timers executed by the emulator thread at emulated clock cycles
+ * 17.10.2026 Rel. 2.60 Added scheduleMicros() and scheduleCycles() for timers finer than 1ms
+ * 17.10.2026 Rel. 2.60 Added setTime() for machine snapshots
+ * 17.10.2026 Rel. 2.60 Added cyclesUntilNext()
+ * 17.10.2026 Rel. 2.60 Added remainingCycles() for machine snapshots
+ */
+
+package emu98;
+
+import io.IOinterface;
+
+/*
+ * Scheduler for the timers of IOinterfaces in emulated time.
+ * Instead of sleeping in their own threads, IOinterfaces register their timer here and their method
+ * timerExpired() is called by the emulator thread as soon as the emulated time (sum of CPU clock cycles)
+ * reaches the expiration time. So device timing is deterministic relative to the CPU.
+ * After expiration a timer is restarted with the actual timerValue of the IOinterface (like the sleep loop of a device thread).
+ */
+public class DeviceScheduler
+{
+  public static final long CYCLES_PER_MS = 8000; // 1 cycle = 125ns
+
+  private long time; // emulated time in clock cycles
+  private volatile long nextTime = Long.MAX_VALUE; // earliest expiration time
+  private IOinterface[] devices = new IOinterface[0];
+  private long[] expirationTimes = new long[0];
+
+  // (re)start timer of device to expire after ms milliseconds of emulated time
+  public void schedule(IOinterface device, int ms)
+  {
+    scheduleCycles(device, ms * CYCLES_PER_MS);
+  }
+
+  // (re)start timer of device to expire after us microseconds of emulated time
+  public void scheduleMicros(IOinterface device, long us)
+  {
+    scheduleCycles(device, us * CYCLES_PER_MS / 1000);
+  }
+
+  // (re)start timer of device to expire after given number of clock cycles
+  public synchronized void scheduleCycles(IOinterface device, long cycles)
+  {
+    int i;
+
+    for(i = 0; i < devices.length && devices[i] != device; i++);
+
+    if(i == devices.length) {
+      IOinterface[] newDevices = new IOinterface[i + 1];
+      long[] newTimes = new long[i + 1];
+      System.arraycopy(devices, 0, newDevices, 0, i);
+      System.arraycopy(expirationTimes, 0, newTimes, 0, i);
+      newDevices[i] = device;
+      devices = newDevices;
+      expirationTimes = newTimes;
+    }
+
+    // expire not before next instruction
+    expirationTimes[i] = time + Math.max(1, cycles);
+    if(expirationTimes[i] < nextTime)
+      nextTime = expirationTimes[i];
+  }
+
+  public synchronized void cancel(IOinterface device)
+  {
+    for(int i = 0; i < devices.length; i++) {
+      if(devices[i] == device)
+        expirationTimes[i] = Long.MAX_VALUE;
+    }
+  }
+
+  // advance emulated time by number of clock cycles, called by emulator thread after each macro-instruction
+  // or after each batch of macro-instructions in turbo mode
+  public void advance(long cycles)
+  {
+    time += cycles;
+    if(time >= nextTime)
+      expire();
+  }
+
+  public long getTime()
+  {
+    return(time);
+  }
+
+  // set emulated time (restored snapshot), running timers keep their remaining time
+  public synchronized void setTime(long newTime)
+  {
+    for(int i = 0; i < devices.length; i++) {
+      if(expirationTimes[i] != Long.MAX_VALUE)
+        expirationTimes[i] += newTime - time;
+    }
+
+    if(nextTime != Long.MAX_VALUE)
+      nextTime += newTime - time;
+    time = newTime;
+  }
+
+  // clock cycles until the next timer expires
+  public long cyclesUntilNext()
+  {
+    long next = nextTime;
+
+    return(next == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, next - time));
+  }
+
+  // emulated time in microseconds
+  public long getMicros()
+  {
+    return(time * 1000 / CYCLES_PER_MS);
+  }
+
+  // call all expired timers once
+  private void expire()
+  {
+    IOinterface[] expired;
+    int n = 0;
+
+    synchronized(this) {
+      expired = new IOinterface[devices.length];
+      nextTime = Long.MAX_VALUE;
+
+      for(int i = 0; i < devices.length; i++) {
+        if(expirationTimes[i] <= time) {
+          expired[n++] = devices[i];
+          expirationTimes[i] = Long.MAX_VALUE;
+        } else if(expirationTimes[i] < nextTime) {
+          nextTime = expirationTimes[i];
+        }
+      }
+    }
+
+    // device methods are called without lock, they may restart their own timer
+    for(int i = 0; i < n; i++) {
+      expired[i].timerExpired();
+      if(!isScheduled(expired[i]))
+        schedule(expired[i], expired[i].getTimerValue());
+    }
+  }
+
+  // clock cycles until timer of device expires, -1 if timer is not running
+  public synchronized long remainingCycles(IOinterface device)
+  {
+    for(int i = 0; i < devices.length; i++) {
+      if(devices[i] == device && expirationTimes[i] != Long.MAX_VALUE)
+        return(Math.max(0, expirationTimes[i] - time));
+    }
+
+    return(-1);
+  }
+
+  private synchronized boolean isScheduled(IOinterface device)
+  {
+    for(int i = 0; i < devices.length; i++) {
+      if(devices[i] == device)
+        return(expirationTimes[i] != Long.MAX_VALUE);
+    }
+
+    return(false);
+  }
+}
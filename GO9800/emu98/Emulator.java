@@ -68,17 +68,36 @@
  * 15.10.2016 Rel. 2.03 Bugfix: Values of A, B, and P register in disassembly output now 6 octal digits wide 
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
  * 28.10.2017 Rel. 2.10: Moved Configuration to class Configuration and initialization of CPU and memory to class HP9800Mainframe
+ * 17.10.2026 Rel. 2.60: Changed memory access to packed memory array
+ * 17.10.2026 Rel. 2.60: Added direct execution of macro-instructions by class MacroCPU, decode() uses MacroCPU.group()
+ * 17.10.2026 Rel. 2.60: Added start(ExecutorService) for running the emulator loop in a thread pool, trace flag now in Memory object
+ * 17.10.2026 Rel. 2.60: Real speed is controlled by class Throttle (sleeping per time quantum instead of busy waiting)
+ * 17.10.2026 Rel. 2.60: Added turbo mode: batches of instructions without synchronization and yield between I/O operations
+ * 17.10.2026 Rel. 2.60: IOunit is locked only if reset is requested
+ * 17.10.2026 Rel. 2.60: Emulated time is advanced in DeviceScheduler after each macro-instruction or turbo batch
+ * 17.10.2026 Rel. 2.60: Count executed macro-instructions for benchmarks
+ * 17.10.2026 Rel. 2.60: Profiler called before each macro-instruction
+ * 17.10.2026 Rel. 2.60: Trace recorder called before each macro-instruction, disassembly moved to mnemonic()
+ * 17.10.2026 Rel. 2.60: Added runBetweenInstructions() for tasks of other threads (machine snapshots)
+ * 17.10.2026 Rel. 2.60: Turbo batch also ends on pending reset, service request, or device timer
  */
 
 package emu98;
 
 import java.io.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import io.HP9800Mainframe;
 
 public class Emulator implements Runnable 
 {
   private HP9800Mainframe mainframe; // connection to HP9800 mainframe
   private CPU cpu;
+  private Memory memory;
+  private DeviceScheduler scheduler;
+  private MacroCPU macroCPU;
+  private Profiler profiler; // macro-instruction profiler, null if not profiling
+  private TraceRecorder tracer; // binary trace recorder, null if not recording
   
   Thread emuThread;
   public Console console;
@@ -91,11 +110,20 @@ public class Emulator implements Runnable
   boolean dumpMicroCode;
   boolean FPop;
   boolean running;
+  private boolean looping; // true while instruction loop is executed
+  private volatile Runnable pendingTask; // task of another thread to be executed between two macro-instructions
+  public long macroInstructions; // number of executed macro-instructions
+  boolean macroMode; // execute macro-instructions directly where possible
+  boolean turboMode; // execute batches of instructions between I/O operations
+  int batchSize = MIN_BATCH; // actual number of instructions per batch in turbo mode
   public boolean keyLogMode = false;
+  public Throttle throttle = new Throttle(); // real speed control
   private String instr;
 
   static final int AR1 = 0001744;
   static final int AR2 = 0001754;
+  static final int MIN_BATCH = 16;   // limits of adaptive batch size in turbo mode
+  static final int MAX_BATCH = 4096;
 
   public Emulator(String machine)
   {
@@ -113,6 +141,34 @@ public class Emulator implements Runnable
     // connect mainframe
     mainframe = hp9800Mainframe;
     cpu = mainframe.cpu;
+    memory = mainframe.memory;
+    scheduler = mainframe.ioUnit.scheduler;
+    macroCPU = new MacroCPU(cpu);
+  }
+
+  // select direct execution of macro-instructions and verification against micro-code
+  public void setMacroMode(boolean macroMode, boolean verify)
+  {
+    this.macroMode = macroMode;
+    macroCPU.setVerifyMode(verify);
+  }
+
+  // select turbo mode for unattended runs
+  public void setTurboMode(boolean turboMode)
+  {
+    this.turboMode = turboMode;
+  }
+
+  // profile each macro-instruction, null switches profiling off (turbo mode is suspended while profiling)
+  public void setProfiler(Profiler profiler)
+  {
+    this.profiler = profiler;
+  }
+
+  // record each macro-instruction, null switches recording off (turbo mode is suspended while recording)
+  public void setTraceRecorder(TraceRecorder tracer)
+  {
+    this.tracer = tracer;
   }
 
   public void start()
@@ -121,6 +177,13 @@ public class Emulator implements Runnable
     emuThread.start();
   }
 
+  // run emulator loop as task of an executor (thread pool or virtual threads) instead of own thread
+  public Future<?> start(ExecutorService executor)
+  {
+    running = true;
+    return(executor.submit(this));
+  }
+
   public void stop()
   {
   	if(emuThread != null)	{
@@ -128,9 +191,46 @@ public class Emulator implements Runnable
   		//emuThread.stop(); // avoid unsafe Thread.stop()
   		//emuThread = null;
   		System.out.println("HP9800 CPU stopped.");
+  		if(mainframe != null && mainframe.realSpeed)
+  		  System.out.println(throttle.getStatistics());
   	}
   }
 
+  // execute task by emulator thread between two macro-instructions and wait until it is finished,
+  // the task is executed directly if the instruction loop is not running (e.g. before start())
+  public synchronized void runBetweenInstructions(Runnable task)
+  {
+    if(!looping || Thread.currentThread() == emuThread) {
+      task.run();
+      return;
+    }
+
+    pendingTask = task;
+    while(pendingTask == task && looping) {
+      try {
+        wait();
+      } catch(InterruptedException e) {
+        break;
+      }
+    }
+
+    // instruction loop stopped or waiting interrupted before task was executed
+    if(pendingTask == task) {
+      pendingTask = null;
+      if(!looping)
+        task.run();
+    }
+  }
+
+  private synchronized void runPendingTask()
+  {
+    if(pendingTask != null) {
+      pendingTask.run();
+      pendingTask = null;
+      notifyAll();
+    }
+  }
+
   public void setDisassemblerMode(boolean disasmMode)
   {
     disassemble = dumpRegisters = dumpFPregisters = disasmMode;
@@ -179,7 +279,7 @@ public class Emulator implements Runnable
     if(indirect) {
       // nested indirect addressing if bit15 = 1
       do {
-        memory_address = mainframe.memory[memory_address & 0077777].getValue();
+        memory_address = mainframe.memory.getValue(memory_address & 0077777);
       } while((memory_address & 0100000) != 0);
     }
 
@@ -358,7 +458,6 @@ public class Emulator implements Runnable
     int regValue, memory_address;
     boolean indirect;
     String opRegister;
-    Memory m = null;
 
     regValue = register.getValue();
     memory_address = regValue;
@@ -370,11 +469,10 @@ public class Emulator implements Runnable
     {
       // nested indirect addressing if address-bit15 = 1
       while((memory_address & 0100000) != 0) {
-        memory_address = mainframe.memory[memory_address & 0077777].getValue();
+        memory_address = mainframe.memory.getValue(memory_address & 0077777);
       }
 
-      m = mainframe.memory[memory_address];
-      regValue = m.getValue();     // this is also correct for STx, although existing memory value will not be used
+      regValue = mainframe.memory.getValue(memory_address);     // this is also correct for STx, although existing memory value will not be used
 
       indStr = ",I [" + intToOctalString(memory_address, 6) + "]";
     }
@@ -602,13 +700,42 @@ public class Emulator implements Runnable
     StringBuffer out = new StringBuffer("\t");
 
     for(int i = 0; i <= 3; i++) {
-      out.append(intToHexString(mainframe.memory[address+i].getValue(), 4) + " ");
+      out.append(intToHexString(mainframe.memory.getValue(address+i), 4) + " ");
     }
 
     return(out.toString());
   }
 
 
+  // disassemble opcode at address, register must be set to the A- or B-register addressed by the opcode
+  String mnemonic(int opcode, int address)
+  {
+    instr = "UNDEFINED"; // default string: undefined instruction
+
+    switch(MacroCPU.group(opcode)) {
+    case MacroCPU.MEMORY_REFERENCE:
+      return(memoryReferenceGroup(opcode, address));
+
+    case MacroCPU.INPUT_OUTPUT:
+      return(inputOutputGroup(opcode, address));
+
+    case MacroCPU.MAC:
+      return(macGroup(opcode));
+
+    case MacroCPU.REGISTER_REFERENCE:
+      return(registerReferenceGroup(opcode, address));
+
+    case MacroCPU.SHIFT_ROTATE:
+      return(shiftRotateGroup(opcode));
+
+    case MacroCPU.COMP_EXECUTE_DMA:
+      return(compExecuteDmaGroup(opcode, address));
+
+    default:
+      return(alterSkipGroup(opcode, address));
+    }
+  }
+
   public void decode(int opcode, int address)
   {
     String fpReg = null;
@@ -657,29 +784,15 @@ public class Emulator implements Runnable
       line.append("\t");
     }
 
-    if((opcode & 0070000) != 0070000)
-      instr = memoryReferenceGroup(opcode, address);
-    else if((opcode & 0100000) != 0) {
-      if((opcode & 0002000) != 0) {
-        instr = inputOutputGroup(opcode, address);
-      } else {
-        FPop = true;
-        // dump FP register contents BEFORE execution 
-        if(dumpFPregisters)
-          fpReg = showRegister(AR1) + showRegister(AR2);
-        instr = macGroup(opcode);
-      }
-    } else {
-      if((opcode & 0000007) == 0000007)
-        instr = registerReferenceGroup(opcode, address);
-      else if((opcode & 0000010) == 0)
-        instr = shiftRotateGroup(opcode);
-      else if((opcode & 0000007) == 0000006)
-        instr = compExecuteDmaGroup(opcode, address);
-      else
-        instr = alterSkipGroup(opcode, address);
+    if(MacroCPU.group(opcode) == MacroCPU.MAC) {
+      FPop = true;
+      // dump FP register contents BEFORE execution 
+      if(dumpFPregisters)
+        fpReg = showRegister(AR1) + showRegister(AR2);
     }
 
+    instr = mnemonic(opcode, address);
+
     if(disassemble && line != null) {
       line.append(intToOctalString(address, 6)); 
       line.append("\t");
@@ -699,10 +812,44 @@ public class Emulator implements Runnable
     }
   }
   
+  /*
+   * Execute up to n macro-instructions without synchronization, yield, and instruction counters.
+   * The batch ends after an I/O operation or a service request acknowledge, if a reset or a service request
+   * is pending, when the next device timer is due, and before a breakpoint.
+   * Returns the number of executed instructions.
+   */
+  private int execBatch(int n)
+  {
+    IOunit ioUnit = mainframe.ioUnit;
+    int ioOperations = ioUnit.ioOperations;
+    long cycles = scheduler.cyclesUntilNext(); // device timers must not expire late
+    int i = 0;
+
+    while(i < n && running) {
+      if(!(macroMode && cpu.PC == MacroCPU.NEXT_INSTRUCTION && macroCPU.exec())) {
+        cpu.exec();
+
+        if(cpu.PC != 0x6e)
+          continue;
+      }
+
+      i++;
+
+      if(ioUnit.ioOperations != ioOperations || ioUnit.reset || ioUnit.serviceRequested() || cpu.cycles >= cycles
+         || memory.isBreakPoint(cpu.Pregister.getValue() & 077777))
+        break;
+    }
+
+    return(i);
+  }
+
   public void run()
   {
-    int address;
-    long runTime;  // instruction run time in nanoseconds
+    int address, batch, executed;
+    boolean pacing = false; // true if throttle is running
+
+    // thread to be interrupted by console (own thread or thread of executor)
+    emuThread = Thread.currentThread();
 
     // wait for all peripheral devices to be initialized asynchronously
     try {
@@ -715,27 +862,50 @@ public class Emulator implements Runnable
     
     // initialize instruction timing
     cpu.cycles = 0;
-    runTime = System.nanoTime();
+
+    // a task executed directly by runBetweenInstructions() has to be finished first
+    synchronized(this) {
+      looping = true;
+    }
 
     while(running) {
       // reset machine
-      synchronized(mainframe.ioUnit) {
-        if(mainframe.ioUnit.reset) {
+      if(mainframe.ioUnit.reset) {
+        synchronized(mainframe.ioUnit) {
         	mainframe.ioUnit.reset = false;
           cpu.setDecode(true);
           cpu.POP(); // Power On Preset
         }
       }
 
-      // execute micro instruction
-      cpu.exec();
+      if(turboMode && cpu.PC == 0x6e && !(disassemble || memory.trace) && profiler == null && tracer == null) {
+        // execute batch of instructions, but not beyond next display blanking or key release
+        batch = Math.min(batchSize, mainframe.ioUnit.instructionsUntilEvent());
+        executed = execBatch(batch);
+
+        // adapt batch size: smaller while I/O is frequent, larger while computing
+        if(executed < batch)
+          batchSize = Math.max(MIN_BATCH, batchSize >> 1);
+        else
+          batchSize = Math.min(MAX_BATCH, batchSize << 1);
 
-      // micro-address counter at position 0616 (next instruction)? 
-      if(cpu.PC != 0x6e)
-        continue; // no, execute next micro-instruction
+        if(cpu.PC != 0x6e)
+          continue; // stopped within micro-program
+      } else {
+        executed = 1;
+
+        // execute macro-instruction directly, if not possible execute micro instruction
+        if(!(macroMode && cpu.PC == MacroCPU.NEXT_INSTRUCTION && !(disassemble || memory.trace) && macroCPU.exec())) {
+          cpu.exec();
+
+          // micro-address counter at position 0616 (next instruction)? 
+          if(cpu.PC != 0x6e)
+            continue; // no, execute next micro-instruction
+        }
+      }
 
       // dump FP registers from previous FP operation
-      if(Memory.trace && FPop) {
+      if(memory.trace && FPop) {
         console.append("\t\t\t\t\t\t\t\t");
         console.append(showRegister(AR1));
         console.append(showRegister(AR2));
@@ -745,7 +915,13 @@ public class Emulator implements Runnable
       // check for ASM-level breakpoints
       address = cpu.Pregister.getValue() & 077777;
 
-      if(mainframe.memory[address].breakPoint) {
+      if(profiler != null)
+        profiler.count(address);
+
+      if(tracer != null)
+        tracer.record(address, memory.peek(address));
+
+      if(mainframe.memory.isBreakPoint(address)) {
         console.append("> Breakpoint\n");
         console.breakpoint();
       }
@@ -753,14 +929,14 @@ public class Emulator implements Runnable
       // disassemble opcode
       if(disassemble) {
         dumpFPregisters = dumpRegisters = !dumpMicroCode;
-        decode(mainframe.memory[address].fetchOpcode(), address);
+        decode(mainframe.memory.fetchOpcode(address), address);
       }
 
-      if(Memory.trace) {
+      if(memory.trace) {
         disassemble = true;
         dumpFPregisters = dumpRegisters = !dumpMicroCode;
 
-        decode(mainframe.memory[address].fetchOpcode(), address);
+        decode(mainframe.memory.fetchOpcode(address), address);
 
         dumpFPregisters = dumpRegisters = disassemble = false;
 
@@ -785,19 +961,37 @@ public class Emulator implements Runnable
       }
 
       // decrement instruction counter for display blanking and key release
-      mainframe.ioUnit.instructionCounter();
+      if(executed == 1)
+        mainframe.ioUnit.instructionCounter();
+      else
+        mainframe.ioUnit.instructionCounter(executed);
+
+      macroInstructions += executed;
 
-      cpu.setDecode((disassemble || Memory.trace) && dumpMicroCode);
+      cpu.setDecode((disassemble || memory.trace) && dumpMicroCode);
+
+      // execute expired device timers
+      scheduler.advance(cpu.cycles);
       
       if(mainframe.realSpeed) {
-      	// delay for (positive) difference between original hardware time (1 cycle time = 125ns) and actual run time
-      	while(cpu.cycles * 125 - (System.nanoTime() - runTime) > 0)
-      		Thread.yield();
+        // delay if ahead of original hardware time (1 cycle time = 125ns)
+        if(!pacing)
+          throttle.reset();
+        throttle.pace(cpu.cycles);
       }
+      pacing = mainframe.realSpeed;
       
       // reset instruction timing
       cpu.cycles = 0;
-      runTime = System.nanoTime();
+
+      // execute task of another thread (e.g. machine snapshot)
+      if(pendingTask != null)
+        runPendingTask();
+    }
+
+    synchronized(this) {
+      looping = false;
+      notifyAll();
     }
   }
 }
\ No newline at end of file
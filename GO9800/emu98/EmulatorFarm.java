@@ -0,0 +1,163 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: multiple independent calculators in one JVM
+ * 17.10.2026 Rel. 2.60 One thread per machine by default, warning if a machine has to wait for a pool thread
+ */
+
+package emu98;
+
+import java.util.Vector;
+import java.util.concurrent.*;
+
+import io.HP9800Mainframe;
+
+/*
+ * Emulator farm for batch runs of many machines in one JVM.
+ * Each machine has its own mainframe, memory, CPU and IO unit; only the timing calibration of the
+ * IO unit is shared. The emulator loops are executed by one platform thread per started machine,
+ * by a fixed thread pool or by virtual threads (if available in the Java runtime).
+ * An emulator loop keeps its thread until the machine is stopped. With a fixed pool further machines
+ * wait in the queue of the pool until a thread becomes free, start() warns about such machines.
+ */
+public class EmulatorFarm
+{
+  private ExecutorService executor;
+  private Vector<HP9800Mainframe> mainframes;
+  private Vector<Future<?>> tasks;
+  private int poolSize = 0; // number of threads of fixed pool, 0 = unlimited
+
+  // threads = maximum number of concurrently running machines, 0 = one thread per machine, -1 = virtual threads
+  public EmulatorFarm(int threads)
+  {
+    mainframes = new Vector<HP9800Mainframe>();
+    tasks = new Vector<Future<?>>();
+
+    if(threads < 0) {
+      try {
+        // Executors.newVirtualThreadPerTaskExecutor() exists from Java 21 on
+        executor = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        return;
+      } catch(Exception e) {
+        System.out.println("Virtual threads not available, using one thread per machine.");
+        threads = 0;
+      }
+    }
+
+    if(threads == 0) {
+      // threads are created as machines are started
+      executor = Executors.newCachedThreadPool();
+      return;
+    }
+
+    poolSize = threads;
+    executor = Executors.newFixedThreadPool(threads);
+  }
+
+  // create machine with configuration configName (without .cfg), returns null in case of error
+  public HP9800Mainframe add(String machine, String configName)
+  {
+    HP9800Mainframe mainframe;
+
+    // configuration files are loaded one after the other
+    synchronized(this) {
+      mainframe = GO9800.createMachine(machine, configName);
+    }
+
+    if(mainframe != null)
+      mainframes.add(mainframe);
+
+    return(mainframe);
+  }
+
+  public Vector<HP9800Mainframe> getMainframes()
+  {
+    return(mainframes);
+  }
+
+  // start emulator loop of mainframe
+  public void start(HP9800Mainframe mainframe)
+  {
+    if(poolSize != 0 && running() >= poolSize)
+      System.err.println("EmulatorFarm: all " + poolSize + " threads busy, " + mainframe.config.model + " waits until a machine is stopped.");
+
+    tasks.add(mainframe.emu.start(executor));
+  }
+
+  // number of started emulator loops which have not ended
+  public int running()
+  {
+    int n = 0;
+
+    for(Future<?> task : tasks) {
+      if(!task.isDone())
+        n++;
+    }
+
+    return(n);
+  }
+
+  // start all machines
+  public void start()
+  {
+    for(HP9800Mainframe mainframe : mainframes)
+      start(mainframe);
+  }
+
+  public void stop(HP9800Mainframe mainframe)
+  {
+    mainframe.emu.stop();
+  }
+
+  // stop all machines
+  public void stop()
+  {
+    for(HP9800Mainframe mainframe : mainframes)
+      stop(mainframe);
+  }
+
+  // wait until all started emulator loops have ended, returns false on timeout
+  public boolean awaitStop(long timeoutMillis)
+  {
+    long end = System.currentTimeMillis() + timeoutMillis;
+
+    for(Future<?> task : tasks) {
+      try {
+        task.get(Math.max(0, end - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch(TimeoutException e) {
+        return(false);
+      } catch(InterruptedException e) {
+        return(false);
+      } catch(ExecutionException e) {
+        e.getCause().printStackTrace();
+      }
+    }
+
+    return(true);
+  }
+
+  // stop all machines and release pool threads
+  public void shutdown()
+  {
+    stop();
+    awaitStop(1000);
+    executor.shutdownNow();
+  }
+}
@@ -40,6 +40,11 @@
  * 28.10.2017 Rel. 2.10 Added new linking between Mainframe and other components
  * 10.12.2017 Rel. 2.10 Changed window layout mananger, added menus
  * 17.12.2017 Rel. 2.10 Added HP9800Window
+ * 17.10.2026 Rel. 2.60 Added bit-serial reference mode of CPU (command line option -s)
+ * 17.10.2026 Rel. 2.60 Added direct macro-instruction execution (option -m) and its verification mode (option -v)
+ * 17.10.2026 Rel. 2.60 Moved creation of mainframe to GO9800.createMainframe() for use by GO9800Batch
+ * 17.10.2026 Rel. 2.60 Added createMachine() for use by GO9800Batch and EmulatorFarm
+ * 17.10.2026 Rel. 2.60 Added turbo mode (option -f)
  */
 
 package emu98;
@@ -69,6 +74,9 @@ class GO9800Window extends JDialog implements ActionListener, Runnable
   private Configuration config;
   public String machine = "";
   public boolean debug = false;
+  public boolean serial = false;
+  public boolean macro = false, verify = false;
+  public boolean turbo = false;
   boolean update = false;
   JScrollPane scrollPane;
 	JTextArea textArea = new JTextArea(20, 80); // TextArea for stdout
@@ -194,34 +202,11 @@ class GO9800Window extends JDialog implements ActionListener, Runnable
 	
 	public void run()
 	{
-		// Reflection API for loading of calculator classes:
-	  Class<?>[] formpara;  // formal parameter class
-	  Object[] actpara;     // actual parameter object
-	  Class<?> calc;        // calculator class
-	  Constructor<?> cons;  // constructor method
-
     Emulator emu = new Emulator(machine);
 
-    // create object for mainframe class dynamically using Reflection API
-    formpara = new Class[]{Emulator.class};
-    actpara = new Object[]{emu};
-    
-    try {
-      // find Class for calculator mainframe by name
-      calc = Class.forName("io." + machine + "." + machine + "Mainframe");
-      
-      // find constructor for formal parameters
-      cons = calc.getConstructor(formpara);
-      
-      // create new object instance of calculator mainframe
-      mainframe = (HP9800Mainframe)cons.newInstance(actpara);
-      
-    } catch(Exception e) {
-      e.printStackTrace();
-      System.err.println(machine + " not implemented.");
-      //System.exit(1);
+    mainframe = GO9800.createMainframe(machine, emu);
+    if(mainframe == null)
       return;
-    }
     
     emu.setMainframe(mainframe);
 		config = new Configuration(machine, mainframe);
@@ -235,6 +220,9 @@ class GO9800Window extends JDialog implements ActionListener, Runnable
     	return;
 
     mainframe.console.setDebugMode(debug);
+    mainframe.cpu.setSerialMode(serial);
+    emu.setMacroMode(macro || verify, verify);
+    emu.setTurboMode(turbo);
     if(debug)
       mainframe.cpu.outputDecoderToConsole(); // transfer decoded micro code to console 
     
@@ -261,14 +249,61 @@ class GO9800Window extends JDialog implements ActionListener, Runnable
 
 public class GO9800
 {
+  // create object for calculator mainframe class dynamically using Reflection API
+  static HP9800Mainframe createMainframe(String machine, Emulator emu)
+  {
+	  Class<?>[] formpara;  // formal parameter class
+	  Object[] actpara;     // actual parameter object
+	  Class<?> calc;        // calculator class
+	  Constructor<?> cons;  // constructor method
+
+    formpara = new Class[]{Emulator.class};
+    actpara = new Object[]{emu};
+    
+    try {
+      // find Class for calculator mainframe by name
+      calc = Class.forName("io." + machine + "." + machine + "Mainframe");
+      
+      // find constructor for formal parameters
+      cons = calc.getConstructor(formpara);
+      
+      // create new object instance of calculator mainframe
+      return((HP9800Mainframe)cons.newInstance(actpara));
+      
+    } catch(Exception e) {
+      e.printStackTrace();
+      System.err.println(machine + " not implemented.");
+      return(null);
+    }
+  }
+
+  // create emulator and mainframe and load configuration, returns null in case of error
+  static HP9800Mainframe createMachine(String machine, String configName)
+  {
+    Emulator emu = new Emulator(machine);
+    HP9800Mainframe mainframe = createMainframe(machine, emu);
+    if(mainframe == null)
+      return(null);
+
+    emu.setMainframe(mainframe);
+    Configuration config = new Configuration(machine, mainframe);
+    mainframe.setConfiguration(config);
+
+    // load configuration files, memory blocks, interfaces, and devices
+    if(!config.loadConfig(configName))
+      return(null);
+
+    return(mainframe);
+  }
+
   public static void usage()
   {
-    System.out.println("Usage: GO9800.jar [-d] [Machine-Configuration]");
+    System.out.println("Usage: GO9800.jar [-d] [-s] [-m] [-v] [-f] [Machine-Configuration]");
   }
   
   public static void main(String[] args)
   {
-    if(args.length < 0 || args.length > 3){
+    if(args.length < 0 || args.length > 6){
       usage();
       System.exit(1);
     }
@@ -282,6 +317,23 @@ public class GO9800
       	switch(args[i].charAt(1)) {
       		case 'd':
       			go9800.debug = true;
+      			break;
+
+      		case 's':
+      			go9800.serial = true;
+      			break;
+
+      		case 'm':
+      			go9800.macro = true;
+      			break;
+
+      		case 'v':
+      			go9800.verify = true;
+      			break;
+
+      		case 'f':
+      			go9800.turbo = true;
+      			break;
       	}
       } else { 
         go9800.machine = args[i];
@@ -0,0 +1,425 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: headless batch run of a calculator with key script and output files
+ * 17.10.2026 Rel. 2.60 Added option -r for real speed
+ * 17.10.2026 Rel. 2.60 Added option -f for turbo mode
+ * 17.10.2026 Rel. 2.60 Added write-back of disc cartridges at end of run
+ * 17.10.2026 Rel. 2.60 Show disc access statistics at end of run
+ * 17.10.2026 Rel. 2.60 Write back tapes at end of run
+ * 17.10.2026 Rel. 2.60 Key scripts can be read from any reader
+ * 17.10.2026 Rel. 2.60 Added option -p for profiling
+ * 17.10.2026 Rel. 2.60 Added option -micro for micro-code counters
+ * 17.10.2026 Rel. 2.60 Added option -trace
+ * 17.10.2026 Rel. 2.60 Added options -save and -restore for machine snapshots
+ */
+
+package emu98;
+
+import java.io.*;
+import java.util.Enumeration;
+
+import io.*;
+
+public class GO9800Batch
+{
+  HP9800Mainframe mainframe;
+  String outName;
+  long endTime;
+  PrintStream displayLog = null;
+  String displayText = "";
+  int keyDelay = 100; // delay between two keys in ms
+  static final int TRACE_RECORDS = 65536; // size of trace buffer
+
+  public static void usage()
+  {
+    System.out.println("Usage: GO9800Batch [-s] [-m] [-r] [-f] [-p] [-micro] [-c Config-File] [-k Key-Script] [-t Seconds] [-o Output-Name]");
+    System.out.println("                   [-tape Tape-File] [-disc Unit:Disc-File] [-trace all|Address]");
+    System.out.println("                   [-restore Snapshot-File] [-save Snapshot-File] Machine");
+    System.out.println("Key-Script lines:");
+    System.out.println("  ; comment");
+    System.out.println("  \"text\"      type text like on the host keyboard");
+    System.out.println("  015 017     type calculator key codes (octal)");
+    System.out.println("  wait ms     pause for ms milliseconds");
+    System.out.println("  until text  wait until the display contains text");
+    System.out.println("Option -p writes a profile of macro-instructions to Output-Name-profile.txt");
+    System.out.println("and collapsed stacks for flame graphs to Output-Name-profile.collapsed.");
+    System.out.println("Option -micro writes counters per micro-address to Output-Name-microcode.txt.");
+    System.out.println("Option -trace writes all instructions or the last instructions before and after");
+    System.out.println("execution of the (octal) Address to Output-Name-trace.txt.");
+    System.out.println("Option -restore continues the machine state of a snapshot instead of power-on, -tape and -disc");
+    System.out.println("are loaded afterwards. Option -save writes a snapshot of the machine state at end of run.");
+  }
+
+  // poll display and append each change to the display log
+  void pollDisplay()
+  {
+    String text = mainframe.getDisplayText();
+    if(!text.equals(displayText)) {
+      displayText = text;
+      if(displayLog != null) {
+        displayLog.print(text);
+        displayLog.flush();
+      }
+    }
+  }
+
+  // wait for ms milliseconds or until time limit is reached
+  boolean pause(long ms)
+  {
+    long end = Math.min(System.currentTimeMillis() + ms, endTime);
+
+    while(mainframe.emu.running && System.currentTimeMillis() < end) {
+      try {
+        Thread.sleep(Math.max(1, Math.min(20, end - System.currentTimeMillis())));
+      } catch (InterruptedException e) {}
+      pollDisplay();
+    }
+
+    return(mainframe.emu.running && System.currentTimeMillis() < endTime);
+  }
+
+  void pressKey(int keyCode)
+  {
+    if(keyCode == mainframe.STOP_KEYCODE)
+      mainframe.ioUnit.STP = true;
+
+    mainframe.ioUnit.bus.keyboard.setKeyCode(keyCode);
+    mainframe.ioUnit.bus.keyboard.requestInterrupt();
+    pause(keyDelay);
+  }
+
+  // map character to calculator key code like HP9800Window does for unconfigured keys
+  static int keyCode(char c)
+  {
+    if(Character.isLowerCase(c))
+      return(Character.toUpperCase(c));
+    if(Character.isUpperCase(c))
+      return(c + 0200);
+
+    return(c);
+  }
+
+  boolean runScript(String fileName) throws IOException
+  {
+    return(runScript(new BufferedReader(new FileReader(fileName)), fileName));
+  }
+
+  // run key script from reader, fileName is used for error messages only
+  boolean runScript(BufferedReader script, String fileName) throws IOException
+  {
+    String line;
+    int lineNo = 0;
+
+    try {
+      while((line = script.readLine()) != null) {
+        lineNo++;
+        line = line.trim();
+        if(line.length() == 0 || line.startsWith(";"))
+          continue;
+
+        if(line.startsWith("\"")) {
+          int end = line.lastIndexOf('"');
+          if(end == 0) end = line.length();
+          for(int i = 1; i < end; i++) {
+            char c = line.charAt(i);
+            if(c < ' ' || c > 'z') {
+              System.err.println(fileName + "(" + lineNo + "): Illegal character " + c);
+              continue;
+            }
+            pressKey(keyCode(c));
+          }
+        } else if(line.startsWith("wait")) {
+          pause(Long.parseLong(line.substring(4).trim()));
+        } else if(line.startsWith("until")) {
+          String text = line.substring(5).trim();
+          while(!displayText.contains(text)) {
+            if(!pause(20)) {
+              System.err.println(fileName + "(" + lineNo + "): Timeout waiting for " + text);
+              return(false);
+            }
+          }
+        } else {
+          for(String code : line.split("\\s+"))
+            pressKey(Integer.parseInt(code, 8));
+        }
+
+        if(!mainframe.emu.running || System.currentTimeMillis() >= endTime)
+          break;
+      }
+    } catch(NumberFormatException e) {
+      System.err.println(fileName + "(" + lineNo + "): Illegal number " + e.getMessage());
+      return(false);
+    } finally {
+      script.close();
+    }
+
+    return(true);
+  }
+
+  boolean openMedia(String tapeFile, String discFile)
+  {
+    if(tapeFile != null) {
+      HP9865A tape = mainframe.tapeDevice;
+      for(Enumeration<IOdevice> devices = mainframe.ioDevices.elements(); tape == null && devices.hasMoreElements(); ) {
+        IOdevice device = devices.nextElement();
+        if(device instanceof HP9865A)
+          tape = (HP9865A)device;
+      }
+
+      if(tape == null) {
+        System.err.println("No tape drive configured.");
+        return(false);
+      }
+
+      if(!tape.openTapeFile(tapeFile))
+        return(false);
+    }
+
+    if(discFile != null) {
+      HP11305A disc = null;
+      for(Enumeration<IOdevice> devices = mainframe.ioDevices.elements(); devices.hasMoreElements(); ) {
+        IOdevice device = devices.nextElement();
+        if(device instanceof HP11305A)
+          disc = (HP11305A)device;
+      }
+
+      int i = discFile.indexOf(':');
+      if(disc == null || i < 1) {
+        System.err.println(disc == null ? "No disc controller configured." : "Disc unit missing: " + discFile);
+        return(false);
+      }
+
+      if(!disc.openDiskFile(Integer.parseInt(discFile.substring(0, i)), discFile.substring(i + 1)))
+        return(false);
+    }
+
+    return(true);
+  }
+
+  // write back tapes and disc cartridges and show disc access statistics
+  void flushMedia()
+  {
+    for(Enumeration<IOdevice> devices = mainframe.ioDevices.elements(); devices.hasMoreElements(); ) {
+      IOdevice device = devices.nextElement();
+      if(device instanceof HP9865A)
+        ((HP9865A)device).flush();
+
+      if(device instanceof HP11305A) {
+        ((HP11305A)device).flush();
+        System.out.print(((HP11305A)device).getStatistics());
+      }
+    }
+  }
+
+  // write printer outputs of mainframe and all devices
+  void writeOutputs() throws IOException
+  {
+    PrintStream out = new PrintStream(outName + "-printer.txt");
+    boolean written = mainframe.writeOutput(out);
+    out.close();
+    if(!written)
+      new File(outName + "-printer.txt").delete();
+
+    for(Enumeration<IOdevice> devices = mainframe.ioDevices.elements(); devices.hasMoreElements(); ) {
+      IOdevice device = devices.nextElement();
+      String fileName = outName + "-" + device.hpName.replaceAll("[^A-Za-z0-9]+", "_") + ".txt";
+      out = new PrintStream(fileName);
+      written = device.writeOutput(out);
+      out.close();
+      if(!written)
+        new File(fileName).delete();
+    }
+  }
+
+  public static void main(String[] args)
+  {
+    String machine = null, configName = null, scriptFile = null, tapeFile = null, discFile = null, trace = null;
+    String restoreFile = null, saveFile = null;
+    boolean serial = false, macro = false, realSpeed = false, turbo = false, profile = false, micro = false;
+    int seconds = 60;
+    GO9800Batch batch = new GO9800Batch();
+
+    System.setProperty("java.awt.headless", "true");
+
+    try {
+      for(int i = 0; i < args.length; i++) {
+        if(args[i].equals("-s"))
+          serial = true;
+        else if(args[i].equals("-m"))
+          macro = true;
+        else if(args[i].equals("-r"))
+          realSpeed = true;
+        else if(args[i].equals("-f"))
+          turbo = true;
+        else if(args[i].equals("-p"))
+          profile = true;
+        else if(args[i].equals("-micro"))
+          micro = true;
+        else if(args[i].equals("-c"))
+          configName = args[++i];
+        else if(args[i].equals("-k"))
+          scriptFile = args[++i];
+        else if(args[i].equals("-t"))
+          seconds = Integer.parseInt(args[++i]);
+        else if(args[i].equals("-o"))
+          batch.outName = args[++i];
+        else if(args[i].equals("-tape"))
+          tapeFile = args[++i];
+        else if(args[i].equals("-disc"))
+          discFile = args[++i];
+        else if(args[i].equals("-trace"))
+          trace = args[++i];
+        else if(args[i].equals("-restore"))
+          restoreFile = args[++i];
+        else if(args[i].equals("-save"))
+          saveFile = args[++i];
+        else if(args[i].startsWith("-") || machine != null)
+          throw new IllegalArgumentException(args[i]);
+        else
+          machine = args[i];
+      }
+    } catch(RuntimeException e) {
+      machine = null;
+    }
+
+    if(machine == null) {
+      usage();
+      System.exit(1);
+    }
+
+    if(configName == null)
+      configName = machine;
+    else if(configName.endsWith(".cfg"))
+      configName = configName.substring(0, configName.length() - 4);
+
+    if(batch.outName == null)
+      batch.outName = machine;
+
+    HP9800Mainframe mainframe = GO9800.createMachine(machine, configName);
+    if(mainframe == null)
+      System.exit(1);
+
+    batch.mainframe = mainframe;
+    Emulator emu = mainframe.emu;
+    mainframe.cpu.setSerialMode(serial);
+    mainframe.realSpeed = realSpeed;
+    emu.setMacroMode(macro, false);
+    emu.setTurboMode(turbo);
+
+    mainframe.cpu.setMicroCounters(micro);
+
+    TraceRecorder tracer = null;
+    PrintStream traceOut = null;
+    if(trace != null) {
+      tracer = new TraceRecorder(mainframe, TRACE_RECORDS);
+      if(!trace.equals("all")) {
+        try {
+          tracer.setTrigger(Integer.parseInt(trace, 8), 0, 0, TRACE_RECORDS / 4);
+        } catch(NumberFormatException e) {
+          usage();
+          System.exit(1);
+        }
+      }
+    }
+
+    Profiler profiler = null;
+    if(profile) {
+      profiler = new Profiler(mainframe);
+      emu.setProfiler(profiler);
+    }
+
+    if(restoreFile != null) {
+      long time = System.nanoTime();
+      if(!new Snapshot(mainframe).restore(restoreFile))
+        System.exit(1);
+      System.out.println("Snapshot " + restoreFile + " restored in " + (System.nanoTime() - time) / 1000000 + "ms.");
+    }
+
+    if(!batch.openMedia(tapeFile, discFile))
+      System.exit(1);
+
+    int exitCode = 0;
+
+    try {
+      batch.displayLog = new PrintStream(batch.outName + "-display.txt");
+      batch.endTime = System.currentTimeMillis() + seconds * 1000L;
+
+      if(tracer != null) {
+        traceOut = new PrintStream(new BufferedOutputStream(new FileOutputStream(batch.outName + "-trace.txt")));
+        tracer.start(traceOut);
+      }
+
+      emu.start();
+
+      if(scriptFile != null && !batch.runScript(scriptFile))
+        exitCode = 1;
+
+      // let calculator run until time limit
+      while(batch.pause(1000));
+
+      if(saveFile != null) {
+        if(new Snapshot(mainframe).save(saveFile))
+          System.out.println("Snapshot " + saveFile + " written.");
+        else
+          exitCode = 1;
+      }
+
+      emu.stop();
+      batch.flushMedia();
+      batch.pollDisplay();
+      batch.displayLog.close();
+      batch.writeOutputs();
+
+      // counters must not change while they are written
+      if(profile || micro || tracer != null) {
+        try {
+          emu.emuThread.join(1000);
+        } catch(InterruptedException e) {
+        }
+      }
+
+      if(tracer != null) {
+        tracer.stop();
+        traceOut.close();
+      }
+
+      if(micro) {
+        PrintStream out = new PrintStream(batch.outName + "-microcode.txt");
+        mainframe.cpu.writeMicroCounters(out, 32);
+        out.close();
+      }
+
+      if(profiler != null) {
+        PrintStream out = new PrintStream(batch.outName + "-profile.txt");
+        profiler.writeReport(out, 50);
+        out.close();
+        out = new PrintStream(batch.outName + "-profile.collapsed");
+        profiler.writeCollapsed(out);
+        out.close();
+      }
+    } catch(IOException e) {
+      System.err.println(e.toString());
+      exitCode = 1;
+    }
+
+    System.exit(exitCode);
+  }
+}
@@ -24,11 +24,19 @@
  * 24.10.2017 Rel. 2.10: Added method closeAllDevices() for forced closing of IOdevices
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
  * 25.05.2021 Rel. 2.30: fixed issue with input from not existing select codes
+ * 17.10.2026 Rel. 2.60: Timing calibration is done only once and shared by all IO units in the JVM
+ * 17.10.2026 Rel. 2.60: Added ioOperations, instructionCounter(n), and instructionsUntilEvent() for turbo mode
+ * 17.10.2026 Rel. 2.60: Removed locking from instruction loop: volatile flags, lock-free serviceRequested() and Counter,
+ *                       Bus uses IOunit monitor instead of its own
+ * 17.10.2026 Rel. 2.60: Added DeviceScheduler for device timers in emulated time
+ * 17.10.2026 Rel. 2.60: Interfaces are selected from table by select code instead of searching ioInterfaces, getSelectCode() without lock
+ * 17.10.2026 Rel. 2.60: Added Counter.set() for machine snapshots
+ * 17.10.2026 Rel. 2.60: ALU is prepared for binary IOR before I/O shift
 */
 
 package emu98;
 
-import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.DisplayInterface;
 import io.HP9800MagneticCardReaderInterface;
@@ -51,28 +59,34 @@ public class IOunit
 
   public static final int devStatusReady = 0x0100; // device status ready: S0=1
 
-  public int SSI; // Service Strobe Input (15 device party line)
-  public boolean SSF; // Single Service FF (Service Request acknowledged)
+  /*
+   * Flags which are changed by device threads and read by the CPU in each instruction are volatile.
+   * Device threads change them only while holding the IOunit monitor, the CPU reads them without lock.
+   * The IOunit monitor is needed by the CPU only during I/O operations.
+   */
+  public volatile int SSI; // Service Strobe Input (15 device party line)
+  public volatile boolean SSF; // Single Service FF (Service Request acknowledged)
   public boolean QRD; // Qualifier ROM-disable (if I/O active)
 
-  public boolean STP; // SC=00 Stop Switch
-  public boolean SIH; // SC=01 Service Inhibit
-  public boolean CEO; // SC=01 Device Ready
+  public volatile boolean STP; // SC=00 Stop Switch
+  public volatile boolean SIH; // SC=01 Service Inhibit
+  public volatile boolean CEO; // SC=01 Device Ready
   public boolean MCR; // SC=02 Magnetic Card Reader Output (pulse)
   public boolean MLS; // SC=02 Magnetic Card Reader Control (pulse)
-  public boolean MFL; // SC=02 Magnetic Card Reader Input Flag
+  public volatile boolean MFL; // SC=02 Magnetic Card Reader Input Flag
   public boolean PEN; // SC=04 Printer Enable
   public boolean DEN; // SC=08 Display Enable
   public boolean KLS; // SC=16 Keyboard LEDs (pulse)
 
   public boolean line10_20; // false for HP9810A, true for HP9820A+HP9830A
-  public boolean reset = true; // true for machine restart
+  public volatile boolean reset = true; // true for machine restart
 
   public boolean dispSRQ; // flag for SRQ occured during display refresh phase
   public Counter dispCounter; // instruction counter for display blank control
   public Counter keyCounter; // instruction counter for key release control
   public final int DISP_INSTR = 200; // number of instructions until display is blanked
   public final int KEYB_INSTR = 100; // number of instructions until keyboard is released
+  public int ioOperations; // number of I/O operations and service request acknowledges (for turbo mode)
 
   public int time_1ms = 1;
   public int time_3ms = 3;
@@ -83,7 +97,10 @@ public class IOunit
   public int time_32ms = 32;
   public int time_100ms = 100;
 
+  private static int[] calibration = null; // calibrated timing constants, shared by all machines
+
   public Console console; // for debug-output of devices
+  public DeviceScheduler scheduler = new DeviceScheduler(); // device timers in emulated time
 
   public IOunit(CPU cpu)
   {
@@ -104,36 +121,48 @@ public class IOunit
     dispCounter = new Counter(DISP_INSTR);
     keyCounter = new Counter(KEYB_INSTR);
 
-    System.out.print("Timing calibration");
-    time_1ms = checkTiming(1);
-    time_3ms = checkTiming(3);
-    time_5ms = checkTiming(5);
-    time_10ms = checkTiming(10);
-    time_20ms = checkTiming(20);
-    time_30ms = checkTiming(30);
-    time_32ms = checkTiming(32);
-    time_100ms = checkTiming(100);
-    System.out.print(" done.\n");
+    int[] times = calibrate();
+    time_1ms = times[0];
+    time_3ms = times[1];
+    time_5ms = times[2];
+    time_10ms = times[3];
+    time_20ms = times[4];
+    time_30ms = times[5];
+    time_32ms = times[6];
+    time_100ms = times[7];
 
     System.out.println("HP9800 I/O unit loaded.");
   }
 
+  // calibrate timing constants on first call, further IO units get the same values
+  private static synchronized int[] calibrate()
+  {
+    if(calibration == null) {
+      System.out.print("Timing calibration");
+      calibration = new int[] {
+        checkTiming(1), checkTiming(3), checkTiming(5), checkTiming(10),
+        checkTiming(20), checkTiming(30), checkTiming(32), checkTiming(100)
+      };
+      System.out.print(" done.\n");
+    }
+
+    return(calibration);
+  }
+
   // generate miscellaneous timing constants
-  private int checkTiming(int time)
+  private static int checkTiming(int time)
   {
     long t = 0;
     int num = 100 / time;
 
     System.out.print(" " + Integer.toString(time));
 
-    synchronized(this) {
-      for(int i = 1; i <= num; i++) {
-        t -= System.nanoTime();
-        try {
-          Thread.sleep(time);
-        } catch (InterruptedException e) { }
-        t += System.nanoTime();
-      }
+    for(int i = 1; i <= num; i++) {
+      t -= System.nanoTime();
+      try {
+        Thread.sleep(time);
+      } catch (InterruptedException e) { }
+      t += System.nanoTime();
     }
 
     time = (int)((1000000L * num * time * time) / t);
@@ -168,6 +197,7 @@ public class IOunit
       if(serviceRequested()) {
         // IOS*(Q10=0)*SRQ = Service Request Acknowledge (SRA)
         serviceRequestAcknowledge();
+        ioOperations++;
       }
       
       // IOS*(Q10=0) = no I/O operation
@@ -175,6 +205,7 @@ public class IOunit
     }
 
     QRD = true; // must not be set before SRA!
+    ioOperations++;
 
     // internal select code lines Q4-Q0
     sc = q & 0b0000_0000_0001_1111;
@@ -421,8 +452,12 @@ public class IOunit
   {
     int i;
 
+    // prepare ALU for binary IOR operation, defined in micro-instructions 0512+1207 (IO wait loop)
+    // the ALU may still hold BCD mode or carry operation of the last bit-serial micro-instruction
+    cpu.alu.init(cpu.BC, 0, 2, 0);
+
     for(i = 0; i < count; i++) {
-      cpu.alu.exec(2); // execute ALU IOR operation, defined in micro-instructions 0512+1207 (IO wait loop)
+      cpu.alu.exec(); // execute ALU IOR operation
       // load registers with input value from their shift sources
       Iregister.loadInput();
       cpu.Aregister.loadInput();
@@ -451,7 +486,33 @@ public class IOunit
       bus.keyboard.release();
   }
 
-  public synchronized int getSelectCode()
+  // count n instructions at once (turbo mode)
+  public void instructionCounter(int n)
+  {
+    if(dispCounter.count(n)) {
+      bus.display.blank();
+    }
+
+    if(keyCounter.count(n))
+      bus.keyboard.release();
+  }
+
+  // number of instructions until display blanking or key release
+  public int instructionsUntilEvent()
+  {
+    int n = Integer.MAX_VALUE;
+
+    if(dispCounter.running())
+      n = dispCounter.remaining();
+
+    if(keyCounter.running())
+      n = Math.min(n, keyCounter.remaining());
+
+    return(n);
+  }
+
+  // read without lock, the I register is only changed by the CPU thread and by synchronized input()
+  public int getSelectCode()
   {
     return((Iregister.getValue() & CO_mask) >> 12);
   }
@@ -506,8 +567,8 @@ public class IOunit
     Iregister.setValue((Iregister.getValue() & (CO_mask | DIO_mask)) | sio);
   }
 
-  // QNR
-  public synchronized boolean serviceRequested()
+  // QNR, called in each instruction, therefore without lock
+  public boolean serviceRequested()
   {
   	// accept Service Request only if not in service routine and (not inhibited or STOP key pressed)  
   	return(!SSF && ((!SIH && SSI != 0) | STP ));
@@ -546,7 +607,9 @@ public class IOunit
     public KeyboardInterface keyboard;
     public DisplayInterface display;
     public HP9800MagneticCardReaderInterface cardReader;
-    Enumeration<IOinterface> interfaceEnum = null;
+    private volatile IOinterface[][] devices = new IOinterface[16][0]; // interfaces by select code, in order of loading
+    private IOinterface[] selectedDevices = null; // interfaces with actual select code
+    private int nextIndex;
 
     public int din; // value of input bus lines from all devices
     public int dout; // value of output bus lines to all devices
@@ -557,46 +620,65 @@ public class IOunit
       //System.out.println("HP9800 I/O bus loaded.");
     }
 
+    // rebuild table of interfaces by select code, has to be called after each change of mainframe.ioInterfaces
+    public void updateDevices()
+    {
+      IOinterface[][] table = new IOinterface[16][];
+      int[] count = new int[16];
+      IOinterface[] interfaces;
+
+      synchronized(cpu.mainframe.ioInterfaces) {
+        interfaces = cpu.mainframe.ioInterfaces.toArray(new IOinterface[0]);
+      }
+
+      for(IOinterface device : interfaces) {
+        if(device.selectCode > 0 && device.selectCode < 16)
+          count[device.selectCode]++;
+      }
+
+      for(int i = 0; i < 16; i++) {
+        table[i] = new IOinterface[count[i]];
+        count[i] = 0;
+      }
+
+      for(IOinterface device : interfaces) {
+        if(device.selectCode > 0 && device.selectCode < 16)
+          table[device.selectCode][count[device.selectCode]++] = device;
+      }
+
+      devices = table;
+    }
+
     // get device with matching selectCode on bus
     public IOinterface selectDevice()
     {
-      IOinterface device;
       int selectCode = getSelectCode();
 
       if(selectCode != 0) {
-        for(interfaceEnum = cpu.mainframe.ioInterfaces.elements(); interfaceEnum.hasMoreElements(); ) {
-          device = (IOinterface)interfaceEnum.nextElement();
-          if(device.selectCode == selectCode) {
-            return(device);
-          }
-        }
+        selectedDevices = devices[selectCode];
+        nextIndex = 0;
+        return(nextDevice());
       }
 
-      interfaceEnum = null;
+      selectedDevices = null;
       return(null);  // no matching device found
     }
     
     // get next device with matching selectCode on bus
     public IOinterface nextDevice()
     {
-      IOinterface device;
-      int selectCode = getSelectCode();
+      if(selectedDevices != null) {
+        if(nextIndex < selectedDevices.length)
+          return(selectedDevices[nextIndex++]);
 
-      if(interfaceEnum != null) {
-        for( ; interfaceEnum.hasMoreElements(); ) {
-          device = (IOinterface)interfaceEnum.nextElement();
-          if(device.selectCode == selectCode) {
-            return(device);
-          }
-        }
-
-        interfaceEnum = null;
+        selectedDevices = null;
       }
+
       return(null);  // no matching device found
     }
 
-    // set CEO line and call device IO-method
-    public synchronized void setCEO()
+    // set CEO line and call device IO-method (device locks IOunit itself)
+    public void setCEO()
     {
       CEO = true;
 
@@ -608,18 +690,22 @@ public class IOunit
       }
     }
 
-    public synchronized void setData(int dio)
+    public void setData(int dio)
     {
       // set register data bits 
       dio &= DIO_mask;
-      din = (din & (CO_mask | SIO_mask)) | dio;
+      synchronized(IOunit.this) {
+        din = (din & (CO_mask | SIO_mask)) | dio;
+      }
     }
 
-    public synchronized void setStatus(int sio)
+    public void setStatus(int sio)
     {
       // set register status bits 
       sio &= SIO_mask;
-      din = (din & (CO_mask | DIO_mask)) | sio;
+      synchronized(IOunit.this) {
+        din = (din & (CO_mask | DIO_mask)) | sio;
+      }
     }
   }
 
@@ -628,32 +714,57 @@ public class IOunit
     Iregister.setValue((Iregister.getValue() & CO_mask) | (bus.din & SD_mask));
   }
 
+  // counter is decremented by the CPU and restarted by device threads without lock
   public class Counter
   {
-    private int value; // instruction counter for device control
+    private AtomicInteger value; // instruction counter for device control
     private int initialValue; // number of instructions until counter is 0 
 
     public Counter(int init)
     {
       initialValue = init;
-      value = 0;
+      value = new AtomicInteger(0);
+    }
+
+    public void restart()
+    {
+      value.set(initialValue);
     }
 
-    public synchronized void restart()
+    public boolean count()
     {
-      value = initialValue;
+      return(count(1));
     }
 
-    public synchronized boolean count()
+    public boolean count(int n)
     {
-      // decrement instruction counter
+      // decrement instruction counter by n
       // return true only if reaching zero
-      return(value > 0 && (--value == 0));
+      int v;
+
+      while((v = value.get()) > 0) {
+        // retry if restarted concurrently
+        if(value.compareAndSet(v, Math.max(v - n, 0)))
+          return(v <= n);
+      }
+
+      return(false);
+    }
+
+    public int remaining()
+    {
+      return(value.get());
+    }
+
+    // set remaining number of instructions (restored snapshot)
+    public void set(int remaining)
+    {
+      value.set(remaining);
     }
 
-    public synchronized boolean running()
+    public boolean running()
     {
-      return(value > 0);
+      return(value.get() > 0);
     }
   }
 }
@@ -0,0 +1,555 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2026 Achim Buerger
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60: class created
+ */
+
+package emu98;
+
+/*
+ * Direct execution of macro-instructions without micro-code emulation.
+ * Memory reference, register reference, shift/rotate, alter/skip, and complement instructions
+ * are executed in one step when the micro-program reaches the next-instruction address 0x6e.
+ * MAC (floating point and BCD), I/O, EXE, and DMA instructions as well as pending service requests
+ * are left to the micro-code emulation in class CPU.
+ * The execution isn't cycle accurate, cycles are estimated from the average micro-code timing.
+ */
+public class MacroCPU
+{
+  static final int systemStackPointer = 0001777;
+
+  // micro-program address of next macro-instruction
+  public static final int NEXT_INSTRUCTION = 0x6e;
+
+  // instruction groups as decoded by bits 15,14,13,12,10,3,2,1,0
+  public static final int MEMORY_REFERENCE = 0;
+  public static final int INPUT_OUTPUT = 1;
+  public static final int MAC = 2;
+  public static final int REGISTER_REFERENCE = 3;
+  public static final int SHIFT_ROTATE = 4;
+  public static final int COMP_EXECUTE_DMA = 5;
+  public static final int ALTER_SKIP = 6;
+
+  // estimated number of clock cycles per instruction group
+  static final int MEMORY_REFERENCE_CYCLES = 100;
+  static final int JSM_CYCLES = 190;
+  static final int REGISTER_REFERENCE_CYCLES = 100;
+  static final int SHIFT_ROTATE_CYCLES = 80;
+  static final int COMP_CYCLES = 80;
+  static final int ALTER_SKIP_CYCLES = 85;
+
+  // max. number of nested indirect addresses resolved directly
+  static final int MAX_INDIRECT = 16;
+
+  CPU cpu;
+  Memory memory;
+  boolean verify = false; // execute and compare each instruction with micro-code emulation
+  public long instructions, mismatches; // number of directly executed and mismatching instructions
+
+  // results of direct execution in verification mode
+  private int[] writeAddress = new int[16], writeValue = new int[16];
+
+  public MacroCPU(CPU cpu)
+  {
+    this.cpu = cpu;
+    memory = cpu.memory;
+    instructions = mismatches = 0;
+  }
+
+  // run each directly executed instruction also by micro-code emulation and compare the results
+  public void setVerifyMode(boolean on)
+  {
+    verify = on;
+  }
+
+  // decode instruction group of opcode
+  public static int group(int opcode)
+  {
+    if((opcode & 0070000) != 0070000)
+      return(MEMORY_REFERENCE);
+
+    if((opcode & 0100000) != 0)
+      return((opcode & 0002000) != 0 ? INPUT_OUTPUT : MAC);
+
+    if((opcode & 0000007) == 0000007)
+      return(REGISTER_REFERENCE);
+
+    if((opcode & 0000010) == 0)
+      return(SHIFT_ROTATE);
+
+    if((opcode & 0000007) == 0000006)
+      return(COMP_EXECUTE_DMA);
+
+    return(ALTER_SKIP);
+  }
+
+  /*
+   * Execute macro-instruction at P-register, the micro-program must be at address NEXT_INSTRUCTION.
+   * Returns false if the instruction has to be executed by the micro-code.
+   */
+  public boolean exec()
+  {
+    // service requests are handled by micro-code at the beginning of the next instruction
+    if(cpu.ioUnit.serviceRequested())
+      return(false);
+
+    if(verify)
+      return(execVerify());
+
+    if(!execute())
+      return(false);
+
+    instructions++;
+    return(true);
+  }
+
+  // resolve nested indirect addresses, returns -1 if the address chain is too long
+  private int indirect(int address)
+  {
+    for(int i = 0; i < MAX_INDIRECT; i++) {
+      if((address & 0100000) == 0)
+        return(address);
+
+      address = memory.getValue(address & 0077777);
+    }
+
+    return(-1);
+  }
+
+  // set P-register and prefetch opcode of next instruction as done by micro-code
+  private void next(int address, boolean ABselector, int cycles)
+  {
+    cpu.Pregister.setValue(address);
+    cpu.Mregister.setValue(address);
+    cpu.Tregister.setValue(memory.getValue(address & 0077777));
+    cpu.ABselector = ABselector;
+    cpu.BC = cpu.DC = 0;
+    cpu.cycles += cycles;
+  }
+
+  private boolean execute()
+  {
+    // opcode has already been fetched to T-register by micro-code
+    int opcode = cpu.Tregister.getValue();
+
+    switch(group(opcode)) {
+    case MEMORY_REFERENCE:
+      return(memoryReference(opcode));
+
+    case REGISTER_REFERENCE:
+      return(registerReference(opcode));
+
+    case SHIFT_ROTATE:
+      return(shiftRotate(opcode));
+
+    case COMP_EXECUTE_DMA:
+      return(complement(opcode));
+
+    case ALTER_SKIP:
+      return(alterSkip(opcode));
+    }
+
+    return(false);
+  }
+
+  private boolean memoryReference(int opcode)
+  {
+    int p = cpu.Pregister.getValue();
+    int address = opcode & 0001777;
+    int value, sp;
+    Register register = (opcode & 0004000) == 0 ? cpu.Aregister : cpu.Bregister;
+
+    // current or base page
+    if((opcode & 0002000) != 0)
+      address |= p & 0076000;
+
+    if((opcode & 0100000) != 0) {
+      address = indirect(memory.getValue(address));
+      if(address < 0)
+        return(false);
+    }
+
+    switch(opcode & 0074000) {
+    case 0000000: // ADA, ADB
+    case 0004000:
+      add(register, memory.getValue(address));
+      break;
+
+    case 0010000: // CPA, CPB
+    case 0014000:
+      if(register.getValue() != memory.getValue(address))
+        p++; // skip if not equal
+      break;
+
+    case 0020000: // LDA, LDB
+    case 0024000:
+      register.setValue(memory.getValue(address));
+      break;
+
+    case 0030000: // STA, STB
+    case 0034000:
+      memory.setValue(address, register.getValue());
+      break;
+
+    case 0040000: // IOR
+      cpu.Aregister.setValue(cpu.Aregister.getValue() | memory.getValue(address));
+      break;
+
+    case 0044000: // ISZ
+      value = (memory.getValue(address) + 1) & 0177777;
+      memory.setValue(address, value);
+      if(value == 0)
+        p++;
+      break;
+
+    case 0050000: // AND
+      cpu.Aregister.setValue(cpu.Aregister.getValue() & memory.getValue(address));
+      break;
+
+    case 0054000: // DSZ
+      value = (memory.getValue(address) - 1) & 0177777;
+      memory.setValue(address, value);
+      if(value == 0)
+        p++;
+      break;
+
+    case 0060000: // JSM: push return address to stack
+      sp = memory.getValue(systemStackPointer);
+      memory.setValue(sp & 0077777, p);
+      memory.setValue(systemStackPointer, sp + 1);
+      next(address, false, JSM_CYCLES);
+      return(true);
+
+    case 0064000: // JMP
+      next(address, true, MEMORY_REFERENCE_CYCLES);
+      return(true);
+    }
+
+    next(p + 1, (opcode & 0004000) != 0, MEMORY_REFERENCE_CYCLES);
+    return(true);
+  }
+
+  // binary add to register, carry sets E-register
+  private void add(Register register, int value)
+  {
+    value += register.getValue();
+    if(value > 0177777)
+      cpu.Eregister.setValue(1);
+
+    register.setValue(value);
+  }
+
+  private boolean registerReference(int opcode)
+  {
+    int p = cpu.Pregister.getValue();
+    int address, value = 0;
+    boolean indirect = (opcode & 0000400) != 0;
+    Register register = (opcode & 0004000) == 0 ? cpu.Aregister : cpu.Bregister; // addressed register
+    Register opRegister = (opcode & 0000020) == 0 ? cpu.Aregister : cpu.Bregister; // operating register
+
+    // bit 3 = 0 is decoded as shift-rotate instruction by micro-code
+    if((opcode & 0000010) == 0)
+      return(false);
+
+    address = register.getValue();
+
+    if(indirect) {
+      address = indirect(address);
+      if(address < 0)
+        return(false);
+
+      value = memory.getValue(address);
+    } else {
+      // only IOR and AND are handled in direct mode, write access and jumps to registers are not handled
+      if((opcode & 0000360) >= 0000140 && (opcode & 0000360) != 0000200 && (opcode & 0000360) != 0000240)
+        return(false);
+
+      value = address;
+    }
+
+    switch(opcode & 0000360) {
+    case 0000000: // ADA, ADB
+    case 0000020:
+      add(opRegister, value);
+      break;
+
+    case 0000040: // CPA, CPB
+    case 0000060:
+      if(opRegister.getValue() != value)
+        p++;
+      break;
+
+    case 0000100: // LDA, LDB
+    case 0000120:
+      opRegister.setValue(value);
+      break;
+
+    case 0000140: // STA, STB
+    case 0000160:
+      memory.setValue(address, opRegister.getValue());
+      break;
+
+    case 0000200: // IOR
+      cpu.Aregister.setValue(cpu.Aregister.getValue() | value);
+      break;
+
+    case 0000220: // ISZ
+      value = (value + 1) & 0177777;
+      memory.setValue(address, value);
+      if(value == 0)
+        p++;
+      break;
+
+    case 0000240: // AND
+      cpu.Aregister.setValue(cpu.Aregister.getValue() & value);
+      break;
+
+    case 0000260: // DSZ
+      value = (value - 1) & 0177777;
+      memory.setValue(address, value);
+      if(value == 0)
+        p++;
+      break;
+
+    case 0000300: // JSM
+      value = memory.getValue(systemStackPointer);
+      memory.setValue(value & 0077777, p);
+      memory.setValue(systemStackPointer, value + 1);
+      next(address, false, JSM_CYCLES);
+      return(true);
+
+    case 0000320: // JMP
+      next(address, true, REGISTER_REFERENCE_CYCLES);
+      return(true);
+
+    default:
+      return(false);
+    }
+
+    next(p + 1, (opcode & 0000020) != 0, REGISTER_REFERENCE_CYCLES);
+    return(true);
+  }
+
+  private boolean shiftRotate(int opcode)
+  {
+    int shift = ((opcode & 0000740) >> 5) + 1;
+    Register register = (opcode & 0004000) == 0 ? cpu.Aregister : cpu.Bregister;
+    int value = register.getValue();
+
+    switch(opcode & 0000007) {
+    case 0000000: // AAR, ABR
+      value = (short)value >> shift;
+      break;
+
+    case 0000002: // SAR, SBR
+      value >>= shift;
+      break;
+
+    case 0000004: // SAL, SBL
+      value <<= 17 - shift;
+      break;
+
+    case 0000006: // RAR, RBR
+      value = value >> shift | value << (16 - shift);
+      break;
+
+    default:
+      return(false);
+    }
+
+    register.setValue(value);
+    next(cpu.Pregister.getValue() + 1, (opcode & 0004000) != 0, SHIFT_ROTATE_CYCLES);
+    return(true);
+  }
+
+  private boolean complement(int opcode)
+  {
+    Register register = (opcode & 0004000) == 0 ? cpu.Aregister : cpu.Bregister;
+
+    switch(opcode & 0000070) {
+    case 0000050: // CMA, CMB
+      register.setValue(~register.getValue());
+      break;
+
+    case 0000070: // TCA, TCB
+      register.setValue(-register.getValue());
+      break;
+
+    default: // EXA, EXB, DMA
+      return(false);
+    }
+
+    next(cpu.Pregister.getValue() + 1, (opcode & 0004000) != 0, COMP_CYCLES);
+    return(true);
+  }
+
+  private boolean alterSkip(int opcode)
+  {
+    int p = cpu.Pregister.getValue();
+    int skip = (opcode & 0001740) >> 5;
+    boolean set = (opcode & 0002000) != 0;
+    boolean clear = (opcode & 0000020) != 0;
+    Register register = (opcode & 0004000) == 0 ? cpu.Aregister : cpu.Bregister;
+    int value = register.getValue();
+    boolean skipping;
+
+    if(skip >= 16)
+      skip -= 32;
+
+    switch(opcode & 0000007) {
+    case 0000000: // SZA, RZA, SIA, RIA
+      skipping = (value == 0) != set;
+      if(clear)
+        register.setValue(value + 1);
+      break;
+
+    case 0000001: // SLA, SLB
+      skipping = (value & 1) == 0;
+      if(set || clear)
+        register.setValue(set ? value | 1 : value & 0177776);
+      break;
+
+    case 0000002: // SAM, SBM
+      skipping = (value & 0100000) != 0;
+      if(set || clear)
+        register.setValue(set ? value | 0100000 : value & 0077777);
+      break;
+
+    case 0000003: // SAP, SBP
+      skipping = (value & 0100000) == 0;
+      if(set || clear)
+        register.setValue(set ? value | 0100000 : value & 0077777);
+      break;
+
+    case 0000004: // SES
+      skipping = (cpu.Eregister.getValue() & 1) != 0;
+      if(set || clear)
+        cpu.Eregister.setValue(set ? 017 : 0);
+      break;
+
+    case 0000005: // SEC
+      skipping = (cpu.Eregister.getValue() & 1) == 0;
+      if(set || clear)
+        cpu.Eregister.setValue(set ? 017 : 0);
+      break;
+
+    default:
+      return(false);
+    }
+
+    next(skipping ? p + skip : p + 1, (opcode & 0004000) != 0, ALTER_SKIP_CYCLES);
+    return(true);
+  }
+
+  /*
+   * Execute instruction directly, then restore the previous state and execute the same instruction by micro-code.
+   * Registers A, B, E, P and all written memory words are compared. The result of the micro-code is kept.
+   */
+  private boolean execVerify()
+  {
+    int a = cpu.Aregister.getValue(), b = cpu.Bregister.getValue(), e = cpu.Eregister.getValue();
+    int p = cpu.Pregister.getValue(), m = cpu.Mregister.getValue(), t = cpu.Tregister.getValue(), q = cpu.Qregister.getValue();
+    int bc = cpu.BC, dc = cpu.DC;
+    boolean ab = cpu.ABselector;
+    long cycles = cpu.cycles;
+    int macroA, macroB, macroE, macroP;
+    int i, j, k, n, address, value;
+    StringBuffer diff;
+
+    memory.startJournal();
+    if(!execute()) {
+      memory.stopJournal();
+      return(false);
+    }
+
+    macroA = cpu.Aregister.getValue();
+    macroB = cpu.Bregister.getValue();
+    macroE = cpu.Eregister.getValue();
+    macroP = cpu.Pregister.getValue();
+
+    // save memory results of direct execution
+    n = memory.getJournalSize();
+    if(n > writeAddress.length) {
+      writeAddress = new int[n];
+      writeValue = new int[n];
+    }
+
+    for(i = 0; i < n; i++) {
+      writeAddress[i] = address = memory.getJournalAddress(i);
+      writeValue[i] = memory.getValue(address);
+    }
+
+    // restore previous state
+    memory.rollback();
+    cpu.Aregister.setValue(a);
+    cpu.Bregister.setValue(b);
+    cpu.Eregister.setValue(e);
+    cpu.Pregister.setValue(p);
+    cpu.Mregister.setValue(m);
+    cpu.Tregister.setValue(t);
+    cpu.Qregister.setValue(q);
+    cpu.BC = bc;
+    cpu.DC = dc;
+    cpu.ABselector = ab;
+    cpu.cycles = cycles;
+
+    // execute instruction by micro-code
+    memory.startJournal();
+    do {
+      cpu.exec();
+    } while(cpu.PC != NEXT_INSTRUCTION);
+    memory.stopJournal();
+
+    diff = new StringBuffer();
+    compare(diff, "A", macroA, cpu.Aregister.getValue());
+    compare(diff, "B", macroB, cpu.Bregister.getValue());
+    compare(diff, "E", macroE, cpu.Eregister.getValue());
+    compare(diff, "P", macroP, cpu.Pregister.getValue());
+
+    // all words written by direct execution
+    for(i = 0; i < n; i++)
+      compare(diff, "M[" + Integer.toOctalString(writeAddress[i]) + "]", writeValue[i], memory.getValue(writeAddress[i]));
+
+    // words written only by micro-code must be unchanged
+    for(i = 0; i < memory.getJournalSize(); i++) {
+      address = memory.getJournalAddress(i);
+      for(j = 0; j < n && writeAddress[j] != address; j++);
+      for(k = 0; k < i && memory.getJournalAddress(k) != address; k++);
+      if(j == n && k == i) {
+        value = memory.getJournalValue(i); // value before first write
+        compare(diff, "M[" + Integer.toOctalString(address) + "]", value, memory.getValue(address));
+      }
+    }
+
+    if(diff.length() != 0) {
+      mismatches++;
+      System.err.println("Macro-instruction mismatch at P=" + Integer.toOctalString(p) + " opcode=" + Integer.toOctalString(t) + ":" + diff);
+    }
+
+    instructions++;
+    return(true);
+  }
+
+  private void compare(StringBuffer diff, String name, int macroValue, int microValue)
+  {
+    if(macroValue != microValue)
+      diff.append(" " + name + "=" + Integer.toOctalString(macroValue) + "/" + Integer.toOctalString(microValue));
+  }
+}
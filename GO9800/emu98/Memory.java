@@ -21,53 +21,87 @@
  * 06.04.2007 Rel. 1.00 Changed: isRW now public (for 9820 MAW handling)
  * 24.05.2007 Rel. 1.01 Added disasmOutput for handling of watchpoints
  * 02.08.2016 Rel. 2.00 Removed registerM, registerT (no longer necessary)
+ * 17.10.2026 Rel. 2.60 Changed to one object for complete memory: packed word array, write-protect bitmap,
+ *                      and sparse index of breakpoints and watchpoints
+ * 17.10.2026 Rel. 2.60 Added write journal for lockstep verification of macro-instruction execution
+ * 17.10.2026 Rel. 2.60 Changed emu and trace from static to object variables for multiple machines in one JVM
+ * 17.10.2026 Rel. 2.60 Added bulk transfer methods setValues() and getValues()
+ * 17.10.2026 Rel. 2.60 Added peek() for reads without watchpoint check
  */
 
 package emu98;
 
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Hashtable;
+
 public class Memory
 {
   static final int MASK = 0177777;
-  public static Emulator emu;
-  public static boolean trace = false;
-  public boolean isRW;
-  public boolean breakPoint;
-  public boolean watchPoint;
-  private int address;
-  int value;
-  int watchValue;
-  char watchCondition;
-  
-  public Memory(boolean rwMemory, int address, int initValue)
+  public static final int SIZE = 0100000; // 32k words
+  private Emulator emu; // for watchpoint outputs
+  public boolean trace = false;
+
+  private short[] words; // memory contents
+  private long[] rwMap; // bitmap of read/write memory, 1 bit per word
+  private Hashtable<Integer, WatchPoint> watchPoints; // watchpoints by address
+  private HashSet<Integer> breakPoints; // addresses of breakpoints
+  private boolean watching, breaking; // true if any watchpoint or breakpoint is set
+  private int[] journalAddress, journalValue; // addresses and previous values of written words
+  private int journalSize;
+  private boolean journaling; // true if write journal is recorded
+
+  class WatchPoint
+  {
+    int watchValue;
+    char watchCondition;
+
+    WatchPoint(int value, char condition)
+    {
+      watchValue = value;
+      watchCondition = condition;
+    }
+  }
+
+  public Memory(Emulator emu)
   {
-    isRW = rwMemory;
-    this.address = address;
-    value = initValue;
-    breakPoint = watchPoint = false;
-    watchCondition = ' ';
+    this.emu = emu;
+
+    // initialize complete memory to 'unused'
+    words = new short[SIZE];
+    rwMap = new long[SIZE / 64];
+    watchPoints = new Hashtable<Integer, WatchPoint>();
+    breakPoints = new HashSet<Integer>();
+    watching = breaking = false;
   }
 
-  void doWatchPoint()
+  void doWatchPoint(int address)
   {
-    if(watchPoint) {
-      switch(watchCondition) {
+    WatchPoint watchPoint = watchPoints.get(address);
+    int value;
+
+    if(watchPoint != null) {
+      value = words[address] & MASK;
+
+      switch(watchPoint.watchCondition) {
         case ' ':
           break;
           
         case '>':
-          if(value > watchValue)
+          if(value > watchPoint.watchValue)
             break;
           else
             return;
         
         case '<':
-          if(value < watchValue)
+          if(value < watchPoint.watchValue)
             break;
           else
             return;
         
         case '=':
-          if(value == watchValue)
+          if(value == watchPoint.watchValue)
             break;
           else
             return;
@@ -81,24 +115,159 @@ public class Memory
     }
   }
   
-  public int setValue(int value)
+  public int setValue(int address, int value)
   {
-    if(isRW)
-      this.value = value & MASK;
+    if((rwMap[address >> 6] & (1L << address)) != 0) {
+      if(journaling)
+        journal(address);
+      words[address] = (short)value;
+    }
     
-    doWatchPoint();
-    return(this.value);  // return masked value
+    if(watching)
+      doWatchPoint(address);
+
+    return(words[address] & MASK);  // return masked value
   }
   
-  public int getValue()
+  public int getValue(int address)
   {
-    doWatchPoint();
-    return(value);
+    if(watching)
+      doWatchPoint(address);
+
+    return(words[address] & MASK);
   }
   
-  public int fetchOpcode()
+  // read without watchpoint check (profiler and debugger)
+  public int peek(int address)
+  {
+    return(words[address] & MASK);
+  }
+
+  public int fetchOpcode(int address)
+  {
+    if(watching)
+      doWatchPoint(address);
+
+    return(words[address] & MASK);
+  }
+
+  // copy block of words from buffer into memory (used for bulk transfers of I/O devices)
+  public void setValues(int address, ShortBuffer buffer, int length)
+  {
+    if(journaling || watching || !isRW(address, length)) {
+      for(int i = 0; i < length; i++)
+        setValue(address + i, buffer.get());
+    } else
+      buffer.get(words, address, length);
+  }
+
+  // copy block of words from memory into buffer
+  public void getValues(int address, ShortBuffer buffer, int length)
+  {
+    if(watching) {
+      for(int i = 0; i < length; i++)
+        buffer.put((short)getValue(address + i));
+    } else
+      buffer.put(words, address, length);
+  }
+
+  // initialize memory word, regardless of write protection (used for loading of ROM contents)
+  public void load(int address, int value)
+  {
+    words[address] = (short)value;
+  }
+
+  public void setRW(int address, boolean rwMemory)
+  {
+    if(rwMemory)
+      rwMap[address >> 6] |= 1L << address;
+    else
+      rwMap[address >> 6] &= ~(1L << address);
+  }
+
+  public boolean isRW(int address)
+  {
+    return((rwMap[address >> 6] & (1L << address)) != 0);
+  }
+
+  // true if complete memory block is read/write
+  private boolean isRW(int address, int length)
   {
-    doWatchPoint();
-    return(value);
-  }  
+    for(int i = 0; i < length; i++)
+      if(!isRW(address + i))
+        return(false);
+
+    return(true);
+  }
+
+  public void setBreakPoint(int address)
+  {
+    breakPoints.add(address);
+    breaking = true;
+  }
+
+  public boolean isBreakPoint(int address)
+  {
+    return(breaking && breakPoints.contains(address));
+  }
+
+  public void setWatchPoint(int address, int value, char condition)
+  {
+    watchPoints.put(address, new WatchPoint(value, condition));
+    watching = true;
+  }
+
+  // start recording of address and previous value of all written words
+  public void startJournal()
+  {
+    if(journalAddress == null) {
+      journalAddress = new int[16];
+      journalValue = new int[16];
+    }
+
+    journalSize = 0;
+    journaling = true;
+  }
+
+  public void stopJournal()
+  {
+    journaling = false;
+  }
+
+  private void journal(int address)
+  {
+    if(journalSize == journalAddress.length) {
+      journalAddress = Arrays.copyOf(journalAddress, 2 * journalSize);
+      journalValue = Arrays.copyOf(journalValue, 2 * journalSize);
+    }
+
+    journalAddress[journalSize] = address;
+    journalValue[journalSize++] = words[address] & MASK;
+  }
+
+  // number of journal entries, an address may be recorded more than once
+  public int getJournalSize()
+  {
+    return(journalSize);
+  }
+
+  public int getJournalAddress(int i)
+  {
+    return(journalAddress[i]);
+  }
+
+  // value of the word before the write recorded in journal entry i
+  public int getJournalValue(int i)
+  {
+    return(journalValue[i]);
+  }
+
+  // restore all words written since start of journal
+  public void rollback()
+  {
+    while(journalSize > 0) {
+      journalSize--;
+      words[journalAddress[journalSize]] = (short)journalValue[journalSize];
+    }
+  }
 }
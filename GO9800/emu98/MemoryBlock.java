@@ -20,6 +20,8 @@
  * 12.07.2007 Rel. 1.20 Changed JAR-file access
  * 18.01.2009 Rel. 1.40 Added instructionsImage and getInstructions()
  * 15.03.2009 Rel. 1.40 Added Block configuration file
+ * 17.10.2026 Rel. 2.60 ROM dumps loaded through ROMimage cache
+ * 17.10.2026 Rel. 2.60 Added getEnd()
  */
 
 package emu98;
@@ -232,6 +234,11 @@ public class MemoryBlock
   {
     return blockStart;
   }
+
+  public int getEnd()
+  {
+    return blockEnd;
+  }
   
   public void unload()
   {
@@ -248,10 +255,10 @@ public class MemoryBlock
   }
   
   @SuppressWarnings("deprecation")
-  public int initialize(Memory memory[])
+  public int initialize(Memory memory)
   {
     DataInputStream cfgFile = null;
-    DataInputStream dumpFile = null;
+    int[] dump;
     String line, keyWord, keyValue;
     int address;
     
@@ -260,7 +267,8 @@ public class MemoryBlock
     if(isRW) {
       // Initialize R/W memory
       for(address = blockStart; address <= blockEnd; address++) {
-        memory[address] = new Memory(isRW, address, 0);
+        memory.setRW(address, isRW);
+        memory.load(address, 0);
       }
       
       System.out.println("initialized.");
@@ -374,47 +382,42 @@ public class MemoryBlock
       System.exit(1);
     }
     
-    try{
-      dumpFile = new DataInputStream(getClass().getResourceAsStream("/" + makeFileName("_ROM.dmp")));
-    } catch (NullPointerException e) {
-      System.out.println("ROM dump not found!");
-      return(1);
-    }
-
-    // Read ASM file line by line
+    // get octal values from binary ROM image, possibly prefetched by Configuration
     try {
-      for(address = blockStart; address <= blockEnd; address++) {
-        if(blockSize > 0 && address >= blockStart + blockSize)
-          break;
-        
-        line = dumpFile.readLine();
-        if(line == null) {
-          System.err.println("ROM dump file is too short.");
-          return(1);
-        }
-        
-        try {
-          // read octal value
-          int opcode = Integer.parseInt(line, 8);
-
-          //store in ROM
-          memory[address] = new Memory(isRW, address, opcode);
-        } catch (NumberFormatException e) {
-          // format error
-          System.err.println(e.toString());
-          System.exit(1);
-        }
-      }
-      
-      dumpFile.close();
-      System.out.println("loaded.");
-      
+      dump = ROMimage.load(makeFileName("_ROM.dmp"), 8);
+    } catch (NumberFormatException e) {
+      // format error
+      System.err.println(e.toString());
+      System.exit(1);
+      return(1);
     } catch (IOException e) {
       // read error
       System.err.println(e.toString());
       System.exit(1);
+      return(1);
     }
-    
+
+    if(dump == null) {
+      System.out.println("ROM dump not found!");
+      return(1);
+    }
+
+    for(address = blockStart; address <= blockEnd; address++) {
+      if(blockSize > 0 && address >= blockStart + blockSize)
+        break;
+
+      if(address - blockStart >= dump.length) {
+        System.err.println("ROM dump file is too short.");
+        return(1);
+      }
+
+      //store in ROM
+      memory.setRW(address, isRW);
+      memory.load(address, dump[address - blockStart]);
+    }
+
+    System.out.println("loaded.");
+
     return(0);
   }
 }
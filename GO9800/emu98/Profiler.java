@@ -0,0 +1,326 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: profiler of macro-instructions with call tree and flame graph output
+ */
+
+package emu98;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import io.HP9800Mainframe;
+
+/*
+ * Profiler of macro-instructions, called by the emulator loop before each macro-instruction.
+ * Instructions and clock cycles are counted per memory address, the cycles consumed since the previous call
+ * belong to the instruction at the previous address.
+ * Subroutine calls are detected by the system stack pointer: JSM and service request acknowledges push the
+ * return address, RET pops it. A shadow call tree follows these changes and counts instructions and cycles
+ * of each call path. The counters are exact, the cost per instruction is one memory read and a few increments.
+ * Results are written as text report with totals per memory block, hot addresses, and routines,
+ * and as collapsed stacks for flame graph tools (one line per call path: frame;frame;... cycles).
+ */
+public class Profiler
+{
+  static final int systemStackPointer = 0001777;
+  static final int MAX_DEPTH = 256; // limit of call tree depth (runaway stack)
+
+  HP9800Mainframe mainframe;
+  Memory memory;
+  CPU cpu;
+
+  long[] instructions, cycles; // per memory address
+  int lastAddress = -1; // address of previous instruction
+  int stackPointer; // previous value of system stack pointer
+  Node root, current; // call tree and actual call path
+  int depth;
+
+  // call path in call tree, identified by the entry addresses of all calling routines
+  class Node
+  {
+    int entry;
+    Node parent;
+    Hashtable<Integer, Node> children;
+    long calls, instructions, cycles; // self counters
+
+    Node(Node parent, int entry)
+    {
+      this.parent = parent;
+      this.entry = entry;
+    }
+
+    Node child(int entry)
+    {
+      Node node;
+
+      if(children == null)
+        children = new Hashtable<Integer, Node>();
+
+      node = children.get(entry);
+      if(node == null) {
+        node = new Node(this, entry);
+        children.put(entry, node);
+      }
+
+      return(node);
+    }
+  }
+
+  // counters of a routine summed over all call paths
+  class Routine
+  {
+    int entry;
+    long calls, selfInstructions, selfCycles, totalInstructions, totalCycles;
+  }
+
+  public Profiler(HP9800Mainframe mainframe)
+  {
+    this.mainframe = mainframe;
+    memory = mainframe.memory;
+    cpu = mainframe.cpu;
+    clear();
+  }
+
+  public void clear()
+  {
+    instructions = new long[Memory.SIZE];
+    cycles = new long[Memory.SIZE];
+    root = current = new Node(null, -1);
+    depth = 0;
+    lastAddress = -1;
+    stackPointer = memory.peek(systemStackPointer);
+  }
+
+  // count instruction at previous address and follow calls and returns, address is the next instruction
+  public void count(int address)
+  {
+    int sp = memory.peek(systemStackPointer);
+
+    if(lastAddress >= 0) {
+      instructions[lastAddress]++;
+      cycles[lastAddress] += cpu.cycles;
+      current.instructions++;
+      current.cycles += cpu.cycles;
+    }
+
+    if(sp != stackPointer) {
+      if(sp > stackPointer && sp - stackPointer < MAX_DEPTH) {
+        // call: enter routine at address once for each pushed return address
+        for(int i = stackPointer; i < sp && depth < MAX_DEPTH; i++) {
+          current = current.child(address);
+          current.calls++;
+          depth++;
+        }
+      } else if(sp < stackPointer) {
+        // return: leave routines for each popped address
+        for(int i = sp; i < stackPointer && current != root; i++) {
+          current = current.parent;
+          depth--;
+        }
+      } else {
+        // stack pointer was set by firmware (initialization), start new call path
+        current = root;
+        depth = 0;
+      }
+
+      stackPointer = sp;
+    }
+
+    lastAddress = address;
+  }
+
+  // memory block containing address, null if none
+  MemoryBlock getBlock(int address)
+  {
+    MemoryBlock block;
+
+    for(Enumeration<MemoryBlock> blocks = mainframe.config.memoryBlocks.elements(); blocks.hasMoreElements(); ) {
+      block = blocks.nextElement();
+      if(address >= block.getAddress() && address <= block.getEnd())
+        return(block);
+    }
+
+    return(null);
+  }
+
+  String blockName(int address)
+  {
+    MemoryBlock block = getBlock(address);
+    return(block == null || block.getName() == null ? "?" : block.getName());
+  }
+
+  String frameName(int address)
+  {
+    return(blockName(address) + ":" + String.format("%06o", address));
+  }
+
+  static String percent(long value, long total)
+  {
+    return(String.format("%6.2f%%", total == 0 ? 0. : 100. * value / total));
+  }
+
+  // sum counters of call tree below node per routine entry, returns instructions and cycles of node including subtree
+  long[] sumRoutines(Node node, Hashtable<Integer, Routine> routines, Vector<Integer> path)
+  {
+    long[] total = {node.instructions, node.cycles};
+    Routine routine = null;
+    boolean outermost = false;
+
+    if(node != root) {
+      routine = routines.get(node.entry);
+      if(routine == null) {
+        routine = new Routine();
+        routine.entry = node.entry;
+        routines.put(node.entry, routine);
+      }
+
+      routine.calls += node.calls;
+      routine.selfInstructions += node.instructions;
+      routine.selfCycles += node.cycles;
+
+      // add inclusive counters only for the outermost call of recursive routines
+      outermost = !path.contains(node.entry);
+      path.add(node.entry);
+    }
+
+    if(node.children != null) {
+      for(Node child : node.children.values()) {
+        long[] sum = sumRoutines(child, routines, path);
+        total[0] += sum[0];
+        total[1] += sum[1];
+      }
+    }
+
+    if(routine != null)
+      path.remove(path.size() - 1);
+
+    if(outermost) {
+      routine.totalInstructions += total[0];
+      routine.totalCycles += total[1];
+    }
+
+    return(total);
+  }
+
+  // text report with totals per memory block and the top addresses and routines
+  public void writeReport(PrintStream out, int top)
+  {
+    Hashtable<String, long[]> blocks = new Hashtable<String, long[]>();
+    Hashtable<Integer, Routine> routines = new Hashtable<Integer, Routine>();
+    Vector<Integer> addresses = new Vector<Integer>();
+    long totalInstructions = 0, totalCycles = 0;
+    long[] sum;
+
+    for(int address = 0; address < Memory.SIZE; address++) {
+      if(instructions[address] == 0)
+        continue;
+
+      addresses.add(address);
+      totalInstructions += instructions[address];
+      totalCycles += cycles[address];
+
+      String name = blockName(address);
+      sum = blocks.get(name);
+      if(sum == null) {
+        sum = new long[2];
+        blocks.put(name, sum);
+      }
+      sum[0] += instructions[address];
+      sum[1] += cycles[address];
+    }
+
+    out.println("Profile: " + totalInstructions + " instructions, " + totalCycles + " cycles");
+
+    // memory blocks by cycles
+    String[] names = blocks.keySet().toArray(new String[0]);
+    final Hashtable<String, long[]> blockSums = blocks;
+    Arrays.sort(names, new Comparator<String>() {
+      public int compare(String a, String b)
+      {
+        return(Long.compare(blockSums.get(b)[1], blockSums.get(a)[1]));
+      }
+    });
+
+    out.println();
+    out.println("Memory block                Instructions          Cycles");
+    for(String name : names) {
+      sum = blocks.get(name);
+      out.println(String.format("%-20s %12d %s %12d %s", name, sum[0], percent(sum[0], totalInstructions), sum[1], percent(sum[1], totalCycles)));
+    }
+
+    // addresses by cycles
+    Integer[] hot = addresses.toArray(new Integer[0]);
+    Arrays.sort(hot, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b)
+      {
+        return(Long.compare(cycles[b], cycles[a]));
+      }
+    });
+
+    out.println();
+    out.println("Address Block                Instructions          Cycles  Instruction");
+    for(int i = 0; i < Math.min(top, hot.length); i++) {
+      int address = hot[i];
+      out.println(String.format("%06o  %-20s %12d %s %12d %s  %06o", address, blockName(address),
+          instructions[address], percent(instructions[address], totalInstructions),
+          cycles[address], percent(cycles[address], totalCycles), memory.peek(address)));
+    }
+
+    // routines by inclusive cycles
+    sumRoutines(root, routines, new Vector<Integer>());
+    Routine[] hotRoutines = routines.values().toArray(new Routine[0]);
+    Arrays.sort(hotRoutines, new Comparator<Routine>() {
+      public int compare(Routine a, Routine b)
+      {
+        return(Long.compare(b.totalCycles, a.totalCycles));
+      }
+    });
+
+    out.println();
+    out.println("Entry   Block                       Calls      Self cycles     Total cycles");
+    for(int i = 0; i < Math.min(top, hotRoutines.length); i++) {
+      Routine routine = hotRoutines[i];
+      out.println(String.format("%06o  %-20s %12d %12d %s %12d %s", routine.entry, blockName(routine.entry), routine.calls,
+          routine.selfCycles, percent(routine.selfCycles, totalCycles), routine.totalCycles, percent(routine.totalCycles, totalCycles)));
+    }
+  }
+
+  // collapsed stacks of all call paths with the self cycles of each path
+  public void writeCollapsed(PrintStream out)
+  {
+    writeCollapsed(out, root, mainframe.config.model);
+  }
+
+  void writeCollapsed(PrintStream out, Node node, String path)
+  {
+    if(node.cycles > 0)
+      out.println(path + " " + node.cycles);
+
+    if(node.children != null) {
+      for(Node child : node.children.values())
+        writeCollapsed(out, child, path + ";" + frameName(child.entry));
+    }
+  }
+}
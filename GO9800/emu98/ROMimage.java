@@ -0,0 +1,275 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: binary ROM images with cache and parallel loading
+ */
+
+package emu98;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+
+/*
+ * Contents of ROM dump files (_ROM.dmp), one number per text line.
+ * A parsed dump is written to the cache directory as binary image:
+ *   int MAGIC, int VERSION, int radix, int number of words, int CRC32 of words, words as int values
+ * The name of the binary image contains a hash of location, size and date of the dump file,
+ * so a changed dump file is parsed again. Binary images are memory-mapped and checked by their CRC32.
+ * ROM images can be prefetched by a pool of loader threads, so that all ROMs of a configuration load in parallel.
+ * Loaded images are kept for the lifetime of the JVM and must not be modified.
+ */
+public class ROMimage
+{
+  static final int MAGIC = 0x47393852; // "G98R"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 20;
+
+  private static File cacheDir = new File(System.getProperty("go9800.cache", System.getProperty("java.io.tmpdir") + File.separator + "GO9800-cache"));
+  private static Hashtable<String, Future<int[]>> images = new Hashtable<String, Future<int[]>>();
+  private static ExecutorService loaderThreads;
+
+  // start loading of dump file in background
+  public static synchronized void prefetch(final String dumpFile, final int radix)
+  {
+    if(images.containsKey(dumpFile))
+      return;
+
+    if(loaderThreads == null) {
+      loaderThreads = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "ROMimage");
+        thread.setDaemon(true);
+        return(thread);
+      });
+    }
+
+    images.put(dumpFile, loaderThreads.submit(loader(dumpFile, radix)));
+  }
+
+  // get contents of dump file, waits for prefetch to finish, returns null if dump file does not exist
+  public static int[] load(String dumpFile, int radix) throws IOException
+  {
+    FutureTask<int[]> task = null;
+    Future<int[]> image;
+
+    synchronized(ROMimage.class) {
+      image = images.get(dumpFile);
+      if(image == null) {
+        // not prefetched: load in this thread
+        image = task = new FutureTask<int[]>(loader(dumpFile, radix));
+        images.put(dumpFile, task);
+      }
+    }
+
+    if(task != null)
+      task.run();
+
+    try {
+      return(image.get());
+    } catch (InterruptedException e) {
+      throw new IOException(e.toString());
+    } catch (ExecutionException e) {
+      images.remove(dumpFile); // try again with next load
+
+      Throwable cause = e.getCause();
+      if(cause instanceof IOException)
+        throw (IOException)cause;
+      if(cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      throw new IOException(cause.toString());
+    }
+  }
+
+  private static Callable<int[]> loader(final String dumpFile, final int radix)
+  {
+    return(() -> read(dumpFile, radix));
+  }
+
+  private static int[] read(String dumpFile, int radix) throws IOException
+  {
+    URL dumpURL = ROMimage.class.getResource("/" + dumpFile);
+    if(dumpURL == null)
+      return(null);
+
+    URLConnection connection = dumpURL.openConnection();
+    InputStream dumpStream = connection.getInputStream();
+
+    try {
+      String key = dumpURL.toString() + " " + connection.getContentLength() + " " + connection.getLastModified() + " " + radix;
+      CRC32 keyHash = new CRC32();
+      keyHash.update(key.getBytes("UTF-8"));
+
+      String name = dumpFile.substring(dumpFile.lastIndexOf('/') + 1);
+      File imageFile = new File(cacheDir, name + "-" + Long.toHexString(keyHash.getValue()) + ".rom");
+
+      int[] words = readImage(imageFile, radix);
+      if(words == null) {
+        words = parse(dumpStream, connection.getContentLength(), radix);
+        writeImage(imageFile, words, radix);
+      }
+
+      return(words);
+    } finally {
+      dumpStream.close();
+    }
+  }
+
+  // parse text dump, one number per line
+  private static int[] parse(InputStream dumpStream, int length, int radix) throws IOException
+  {
+    byte[] buffer;
+
+    if(length >= 0) {
+      buffer = new byte[length];
+      int pos = 0, len;
+      while(pos < length && (len = dumpStream.read(buffer, pos, length - pos)) > 0)
+        pos += len;
+      if(pos < length)
+        buffer = Arrays.copyOf(buffer, pos);
+    } else {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(65536);
+      byte[] tmpbuf = new byte[65536];
+      int len;
+      while((len = dumpStream.read(tmpbuf)) > 0)
+        out.write(tmpbuf, 0, len);
+      buffer = out.toByteArray();
+    }
+
+    int[] words = new int[buffer.length / 4 + 1];
+    int numWords = 0, value = 0, lineStart = 0;
+
+    for(int i = 0; i <= buffer.length; i++) {
+      int c = (i < buffer.length)? buffer[i] : '\n';
+
+      if(c == '\n') {
+        if(i == buffer.length && i == lineStart)
+          break; // no text after last line end
+
+        if(i == lineStart || (i == lineStart + 1 && buffer[lineStart] == '\r'))
+          throw new NumberFormatException("For input string: \"\"");
+
+        if(numWords == words.length)
+          words = Arrays.copyOf(words, 2 * numWords);
+
+        words[numWords++] = value;
+        value = 0;
+        lineStart = i + 1;
+      } else if(c != '\r') {
+        int digit = Character.digit(c, radix);
+        if(digit < 0)
+          throw new NumberFormatException("For input string: \"" + new String(buffer, lineStart, Math.min(i + 1, buffer.length) - lineStart, "ISO-8859-1") + "\"");
+
+        value = value * radix + digit;
+      }
+    }
+
+    return(Arrays.copyOf(words, numWords));
+  }
+
+  // read memory-mapped binary image, returns null if image is missing or invalid
+  private static int[] readImage(File imageFile, int radix)
+  {
+    if(!imageFile.exists())
+      return(null);
+
+    try {
+      FileInputStream in = new FileInputStream(imageFile);
+
+      try {
+        FileChannel channel = in.getChannel();
+        if(channel.size() < HEADER_SIZE)
+          return(null);
+
+        MappedByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        int numWords = image.getInt(12);
+
+        if(image.getInt(0) != MAGIC || image.getInt(4) != VERSION || image.getInt(8) != radix || numWords < 0
+            || channel.size() != HEADER_SIZE + 4L * numWords)
+          return(null);
+
+        int checkSum = image.getInt(16);
+        image.position(HEADER_SIZE);
+        int[] words = new int[numWords];
+        image.asIntBuffer().get(words);
+
+        if(checkSum != checkSum(words))
+          return(null);
+
+        return(words);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return(null);
+    }
+  }
+
+  // write binary image to temporary file first, so that concurrent loaders leave no incomplete image
+  private static void writeImage(File imageFile, int[] words, int radix)
+  {
+    try {
+      cacheDir.mkdirs();
+      File tmpFile = File.createTempFile("rom", ".tmp", cacheDir);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(radix);
+        out.writeInt(words.length);
+        out.writeInt(checkSum(words));
+        for(int i = 0; i < words.length; i++)
+          out.writeInt(words[i]);
+      } finally {
+        out.close();
+      }
+
+      Files.move(tmpFile.toPath(), imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      // image is parsed again next time
+      System.err.println(imageFile.getName() + ": " + e.toString());
+    }
+  }
+
+  private static int checkSum(int[] words)
+  {
+    CRC32 crc = new CRC32();
+    ByteBuffer buffer = ByteBuffer.allocate(4 * words.length);
+
+    buffer.asIntBuffer().put(words);
+    crc.update(buffer.array());
+
+    return((int)crc.getValue());
+  }
+}
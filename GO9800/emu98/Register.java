@@ -93,7 +93,7 @@ public class Register
 
 class QRegister extends Register
 {
-  private boolean q6mode;
+  boolean q6mode;
 
 	public QRegister(String registerName, int registerWidth, int initValue)
 	{
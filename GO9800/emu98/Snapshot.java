@@ -0,0 +1,399 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: snapshot and restore of the complete machine state for warm starts
+ * 17.10.2026 Rel. 2.60 Pending device timers restored by IOinterface.restoreState()
+ */
+
+package emu98;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.Vector;
+
+import io.HP9800Mainframe;
+import io.IOdevice;
+import io.IOinterface;
+
+/*
+ * Snapshot of the complete machine state between two macro-instructions.
+ * A snapshot restored into a freshly created machine of the same configuration replaces the
+ * power-on initialization and everything done since, e.g. loading a program from a cassette.
+ * The state is taken and restored by the emulator thread (see Emulator.runBetweenInstructions()),
+ * so save() and restore() may be called while the machine is running or before it is started.
+ * Pending device timers (e.g. an asynchronous disc transfer with CEO held) continue with their
+ * remaining time after restore.
+ * Cassettes and disc cartridges are not copied into the snapshot. They are written back to their
+ * files and reloaded from there on restore, together with the head positions.
+ *
+ * File layout (DataOutputStream):
+ *   MAGIC, VERSION, model
+ *   ROM configuration: number of memory blocks, per block slot, ROM name, first and last address
+ *   CPU: registers A, B, E, M, T, Q, P, I, micro-program counter, AB selector, carries, instruction counters
+ *   IOunit: flags, display and keyboard counters, print buffer, bus lines, emulated time
+ *   memory: per group of 64 words a bitmap of the RWM words followed by these words
+ *   devices, interfaces, mainframe: length-prefixed blocks written by saveState(),
+ *   interface blocks contain the remaining time of running timers in emulated time
+ *   MAGIC as end mark
+ */
+public class Snapshot
+{
+  static final int MAGIC = 0x39383030; // "9800"
+  static final int VERSION = 1;
+
+  HP9800Mainframe mainframe;
+  byte[] data; // snapshot contents
+  IOException error; // error in emulator thread
+
+  public Snapshot(HP9800Mainframe mainframe)
+  {
+    this.mainframe = mainframe;
+  }
+
+  // take snapshot of machine and write it to file
+  public boolean save(String fileName)
+  {
+    data = null;
+    error = null;
+
+    // machine state is collected in memory by the emulator thread, the file is written afterwards
+    mainframe.emu.runBetweenInstructions(new Runnable() {
+      public void run()
+      {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Memory.SIZE * 3);
+        try {
+          write(new DataOutputStream(bytes));
+          data = bytes.toByteArray();
+        } catch(IOException e) {
+          error = e;
+        }
+      }
+    });
+
+    try {
+      if(error != null)
+        throw error;
+
+      FileOutputStream out = new FileOutputStream(fileName);
+      out.write(data);
+      out.close();
+    } catch(IOException e) {
+      System.err.println(e.toString());
+      return(false);
+    }
+
+    return(true);
+  }
+
+  // restore machine state from snapshot file, the machine must have the same configuration
+  public boolean restore(String fileName)
+  {
+    error = null;
+
+    try {
+      File file = new File(fileName);
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      data = new byte[(int)file.length()];
+      in.readFully(data);
+      in.close();
+    } catch(IOException e) {
+      System.err.println(e.toString());
+      return(false);
+    }
+
+    mainframe.emu.runBetweenInstructions(new Runnable() {
+      public void run()
+      {
+        try {
+          read(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch(IOException e) {
+          error = e;
+        }
+      }
+    });
+
+    if(error != null) {
+      System.err.println(fileName + ": " + error.getMessage());
+      return(false);
+    }
+
+    return(true);
+  }
+
+  private Register[] cpuRegisters()
+  {
+    CPU cpu = mainframe.cpu;
+
+    return(new Register[] {cpu.Aregister, cpu.Bregister, cpu.Eregister, cpu.Mregister,
+                           cpu.Tregister, cpu.Qregister, cpu.Pregister, cpu.Iregister});
+  }
+
+  private void writeBlock(DataOutputStream out, ByteArrayOutputStream block) throws IOException
+  {
+    out.writeInt(block.size());
+    block.writeTo(out);
+  }
+
+  private DataInputStream readBlock(DataInputStream in) throws IOException
+  {
+    byte[] block = new byte[in.readInt()];
+    in.readFully(block);
+
+    return(new DataInputStream(new ByteArrayInputStream(block)));
+  }
+
+  void write(DataOutputStream out) throws IOException
+  {
+    CPU cpu = mainframe.cpu;
+    IOunit ioUnit = mainframe.ioUnit;
+    Memory memory = mainframe.memory;
+    Configuration config = mainframe.config;
+    ByteArrayOutputStream block;
+    int group, i;
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(config.model);
+
+    // ROM configuration, sorted by slot
+    Vector<String> slots = new Vector<String>(config.memoryBlocks.keySet());
+    Collections.sort(slots);
+    out.writeInt(slots.size());
+    for(String slot : slots) {
+      MemoryBlock memoryBlock = config.memoryBlocks.get(slot);
+      out.writeUTF(slot);
+      out.writeUTF(memoryBlock.getName() == null ? "" : memoryBlock.getName());
+      out.writeInt(memoryBlock.getAddress());
+      out.writeInt(memoryBlock.getEnd());
+    }
+
+    // CPU
+    for(Register register : cpuRegisters())
+      out.writeInt(register.getValue());
+    out.writeInt(cpu.PC);
+    out.writeBoolean(cpu.ABselector);
+    out.writeInt(cpu.BC);
+    out.writeInt(cpu.DC);
+    out.writeLong(cpu.instructions);
+    out.writeLong(mainframe.emu.macroInstructions);
+
+    // IOunit
+    out.writeInt(ioUnit.SSI);
+    out.writeBoolean(ioUnit.SSF);
+    out.writeBoolean(ioUnit.QRD);
+    out.writeBoolean(ioUnit.STP);
+    out.writeBoolean(ioUnit.SIH);
+    out.writeBoolean(ioUnit.CEO);
+    out.writeBoolean(ioUnit.MCR);
+    out.writeBoolean(ioUnit.MLS);
+    out.writeBoolean(ioUnit.MFL);
+    out.writeBoolean(ioUnit.PEN);
+    out.writeBoolean(ioUnit.DEN);
+    out.writeBoolean(ioUnit.KLS);
+    out.writeBoolean(ioUnit.dispSRQ);
+    out.writeInt(ioUnit.dispCounter.remaining());
+    out.writeInt(ioUnit.keyCounter.remaining());
+    out.writeInt(ioUnit.ioOperations);
+    out.writeInt(ioUnit.printBuffer.getValue());
+    out.writeInt(ioUnit.bus.din);
+    out.writeInt(ioUnit.bus.dout);
+    out.writeLong(ioUnit.scheduler.getTime());
+
+    // RWM
+    for(group = 0; group < Memory.SIZE; group += 64) {
+      long rwBits = 0;
+      for(i = 0; i < 64; i++) {
+        if(memory.isRW(group + i))
+          rwBits |= 1L << i;
+      }
+
+      out.writeLong(rwBits);
+      for(i = 0; i < 64; i++) {
+        if((rwBits & (1L << i)) != 0)
+          out.writeShort(memory.peek(group + i));
+      }
+    }
+
+    // devices by name
+    out.writeInt(mainframe.ioDevices.size());
+    for(IOdevice device : mainframe.ioDevices) {
+      block = new ByteArrayOutputStream();
+      device.saveState(new DataOutputStream(block));
+      out.writeUTF(device.hpName);
+      writeBlock(out, block);
+    }
+
+    // interfaces by class and select code
+    out.writeInt(mainframe.ioInterfaces.size());
+    for(IOinterface ioInterface : mainframe.ioInterfaces) {
+      block = new ByteArrayOutputStream();
+      ioInterface.saveState(new DataOutputStream(block));
+      out.writeUTF(ioInterface.getClass().getName());
+      out.writeInt(ioInterface.selectCode);
+      writeBlock(out, block);
+    }
+
+    // internal printer
+    block = new ByteArrayOutputStream();
+    mainframe.saveState(new DataOutputStream(block));
+    writeBlock(out, block);
+
+    out.writeInt(MAGIC);
+  }
+
+  void read(DataInputStream in) throws IOException
+  {
+    CPU cpu = mainframe.cpu;
+    IOunit ioUnit = mainframe.ioUnit;
+    Memory memory = mainframe.memory;
+    Configuration config = mainframe.config;
+    int group, i, n;
+
+    if(in.readInt() != MAGIC)
+      throw new IOException("No machine snapshot");
+
+    n = in.readInt();
+    if(n != VERSION)
+      throw new IOException("Snapshot version " + n + " not supported");
+
+    String model = in.readUTF();
+    if(!model.equals(config.model))
+      throw new IOException("Snapshot of " + model + " does not match " + config.model);
+
+    // check memory layout before anything is changed
+    n = in.readInt();
+    if(n != config.memoryBlocks.size())
+      throw new IOException("Snapshot has " + n + " memory blocks, configuration has " + config.memoryBlocks.size());
+
+    String[] slots = new String[n];
+    String[] romNames = new String[n];
+    for(i = 0; i < n; i++) {
+      slots[i] = in.readUTF();
+      romNames[i] = in.readUTF();
+      int address = in.readInt();
+      int end = in.readInt();
+
+      MemoryBlock memoryBlock = config.memoryBlocks.get(slots[i]);
+      if(memoryBlock == null || memoryBlock.getAddress() != address || memoryBlock.getEnd() != end)
+        throw new IOException("Memory block " + slots[i] + " does not match configuration");
+    }
+
+    synchronized(ioUnit) {
+      // plug ROM modules of snapshot
+      for(i = 0; i < n; i++) {
+        MemoryBlock memoryBlock = config.memoryBlocks.get(slots[i]);
+        if(romNames[i].length() != 0 && !romNames[i].equals(memoryBlock.getName())) {
+          config.setROM(slots[i], romNames[i]);
+          if(!romNames[i].equals(memoryBlock.getName()))
+            throw new IOException("ROM " + romNames[i] + " not loaded into " + slots[i]);
+        }
+      }
+
+      // CPU
+      for(Register register : cpuRegisters())
+        register.setValue(in.readInt());
+      cpu.PC = in.readInt();
+      cpu.ABselector = in.readBoolean();
+      cpu.BC = in.readInt();
+      cpu.DC = in.readInt();
+      cpu.instructions = in.readLong();
+      mainframe.emu.macroInstructions = in.readLong();
+      cpu.cleanSources();
+
+      // IOunit, no Power On Preset after restore
+      ioUnit.reset = false;
+      ioUnit.SSI = in.readInt();
+      ioUnit.SSF = in.readBoolean();
+      ioUnit.QRD = in.readBoolean();
+      ioUnit.STP = in.readBoolean();
+      ioUnit.SIH = in.readBoolean();
+      ioUnit.CEO = in.readBoolean();
+      ioUnit.MCR = in.readBoolean();
+      ioUnit.MLS = in.readBoolean();
+      ioUnit.MFL = in.readBoolean();
+      ioUnit.PEN = in.readBoolean();
+      ioUnit.DEN = in.readBoolean();
+      ioUnit.KLS = in.readBoolean();
+      ioUnit.dispSRQ = in.readBoolean();
+      ioUnit.dispCounter.set(in.readInt());
+      ioUnit.keyCounter.set(in.readInt());
+      ioUnit.ioOperations = in.readInt();
+      ioUnit.printBuffer.setValue(in.readInt());
+      ioUnit.bus.din = in.readInt();
+      ioUnit.bus.dout = in.readInt();
+      ioUnit.scheduler.setTime(in.readLong());
+
+      // RWM
+      for(group = 0; group < Memory.SIZE; group += 64) {
+        long rwBits = in.readLong();
+        for(i = 0; i < 64; i++) {
+          memory.setRW(group + i, (rwBits & (1L << i)) != 0);
+          if((rwBits & (1L << i)) != 0)
+            memory.load(group + i, in.readShort());
+        }
+      }
+
+      // devices, media are reloaded before interface registers are restored
+      n = in.readInt();
+      deviceLoop:
+      for(i = 0; i < n; i++) {
+        String hpName = in.readUTF();
+        DataInputStream block = readBlock(in);
+
+        for(IOdevice device : mainframe.ioDevices) {
+          if(device.hpName.equals(hpName)) {
+            device.restoreState(block);
+            continue deviceLoop;
+          }
+        }
+
+        System.err.println("Snapshot: " + hpName + " not configured, state ignored");
+      }
+
+      // interfaces
+      Vector<IOinterface> restored = new Vector<IOinterface>();
+      n = in.readInt();
+      interfaceLoop:
+      for(i = 0; i < n; i++) {
+        String className = in.readUTF();
+        int selectCode = in.readInt();
+        DataInputStream block = readBlock(in);
+
+        for(IOinterface ioInterface : mainframe.ioInterfaces) {
+          if(ioInterface.getClass().getName().equals(className) && ioInterface.selectCode == selectCode && !restored.contains(ioInterface)) {
+            ioInterface.restoreState(block);
+            restored.add(ioInterface);
+            continue interfaceLoop;
+          }
+        }
+
+        System.err.println("Snapshot: " + className + " @" + selectCode + " not configured, state ignored");
+      }
+
+      // internal printer
+      mainframe.restoreState(readBlock(in));
+
+      if(in.readInt() != MAGIC)
+        throw new IOException("Snapshot incomplete");
+    }
+
+    mainframe.repaint();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: real speed emulation with sleeping instead of busy waiting
+ */
+
+package emu98;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Pacing of the emulation to the speed of the original hardware (1 cycle = 125ns).
+ * Emulated cycles are accumulated and compared with the host time only once per quantum of emulated time.
+ * If the emulation is ahead, the thread is parked for the difference. Oversleeping is corrected
+ * automatically, because emulated and host time are both measured from the same start time.
+ * If the emulation falls behind by more than MAX_LAG (slow host, single step, debugger),
+ * both times are synchronized again instead of running at full speed to catch up.
+ */
+public class Throttle
+{
+  static final long CYCLE_TIME = 125;     // duration of one clock cycle in ns
+  static final long QUANTUM = 1000000;    // pacing quantum of 1ms emulated time
+  static final long MAX_LAG = 50000000;   // resynchronize if more than 50ms behind
+
+  private long startTime;    // host time of synchronization in ns
+  private long emulatedTime; // emulated time since synchronization in ns
+  private long checkTime;    // emulated time of next comparison with host time
+
+  // statistics
+  private long sleeps;       // number of sleeps
+  private long sleepTime;    // total requested sleep time in ns
+  private long overSleep;    // total time slept longer than requested in ns
+  private long maxLate;      // maximum lag of emulation behind host time in ns
+  private long resyncs;      // number of synchronizations due to lag > MAX_LAG
+
+  public Throttle()
+  {
+    reset();
+  }
+
+  // start new synchronization of emulated and host time and clear statistics
+  public void reset()
+  {
+    sync();
+    sleeps = sleepTime = overSleep = maxLate = resyncs = 0;
+  }
+
+  private void sync()
+  {
+    startTime = System.nanoTime();
+    emulatedTime = 0;
+    checkTime = QUANTUM;
+  }
+
+  // add emulated clock cycles and delay if the emulation is ahead of host time
+  public void pace(long cycles)
+  {
+    long ahead, slept;
+
+    emulatedTime += cycles * CYCLE_TIME;
+    if(emulatedTime < checkTime)
+      return;
+
+    checkTime = emulatedTime + QUANTUM;
+    ahead = emulatedTime - (System.nanoTime() - startTime);
+
+    if(ahead > 0) {
+      slept = System.nanoTime();
+      LockSupport.parkNanos(ahead);
+      slept = System.nanoTime() - slept;
+
+      sleeps++;
+      sleepTime += ahead;
+      if(slept > ahead)
+        overSleep += slept - ahead;
+    } else {
+      if(-ahead > maxLate)
+        maxLate = -ahead;
+
+      if(-ahead > MAX_LAG) {
+        resyncs++;
+        sync();
+      }
+    }
+  }
+
+  // actual drift of emulated time against host time in ns (positive = emulation ahead)
+  public long getDrift()
+  {
+    return(emulatedTime - (System.nanoTime() - startTime));
+  }
+
+  public String getStatistics()
+  {
+    return("Real speed: " + sleeps + " sleeps, " + sleepTime / 1000000 + "ms total"
+        + ", avg. oversleep " + (sleeps > 0 ? overSleep / sleeps / 1000 : 0) + "us"
+        + ", max. lag " + maxLate / 1000 + "us"
+        + ", " + resyncs + " resyncs"
+        + ", drift " + getDrift() / 1000 + "us");
+  }
+}
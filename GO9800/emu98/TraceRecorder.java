@@ -0,0 +1,340 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: binary trace ring buffer with formatting in separate thread
+ */
+
+package emu98;
+
+import java.io.PrintStream;
+import java.util.concurrent.locks.LockSupport;
+
+import io.HP9800Mainframe;
+
+/*
+ * Trace recorder with a fixed-size ring buffer of binary records.
+ * The emulator thread writes one record before each macro-instruction (and optionally before each
+ * micro-instruction) without allocation and without formatting. A consumer thread formats the records
+ * to the console or to a PrintStream.
+ * Without trigger the consumer follows the writer and outputs all records, records overwritten before
+ * they were formatted are reported as lost. With trigger the recorder runs silently until the trigger
+ * condition (address and/or opcode) is met, records postTrigger further records, and stops. Then the
+ * consumer outputs the whole buffer, i.e. the history before the trigger and the post-trigger capture.
+ *
+ * Record layout (RECORD_SIZE ints):
+ *   0: P-register (15 bits) | type (bit 15) | opcode or micro-address (bits 16-31)
+ *   1: A-register << 16 | B-register
+ *   2: E-register (4 bits) | I/O flags (bits 4-14) | AB selector (bit 15) | BC (bit 16) | DC (bit 17)
+ *   3: M-register << 16 | T-register
+ *   4: Q-register << 16 | I-register
+ *   5, 6: emulated time in clock cycles (high and low word)
+ */
+public class TraceRecorder implements Runnable
+{
+  static final int RECORD_SIZE = 7;
+  static final int MACRO = 0, MICRO = 1;
+  static final String FLAG_NAMES = "MLS MCR SIH SSF SSI KLS DEN PEN MFL CEO STP";
+
+  HP9800Mainframe mainframe;
+  CPU cpu;
+  IOunit ioUnit;
+  Emulator disassembler; // own instance for disassembly in consumer thread
+  Register aRegister, bRegister; // recorded values for disassembly
+
+  int[] records;
+  int mask; // number of records - 1
+  volatile long count; // number of written records
+  long readCount; // number of records read by consumer
+  boolean micro = false; // record micro-instructions
+
+  // trigger condition
+  int triggerAddress = -1; // -1 = any address
+  int triggerMask = 0, triggerOpcode = 0; // (opcode & triggerMask) == triggerOpcode
+  int postTrigger = 0; // number of records after trigger
+  boolean triggered = false; // true if trigger is set
+  long triggerCount = -1; // record number of trigger event
+  volatile boolean frozen = false; // recording stopped after post-trigger capture
+
+  Thread consumer;
+  volatile boolean running = false;
+  Console console;
+  PrintStream out;
+
+  // capacity is rounded up to a power of 2
+  public TraceRecorder(HP9800Mainframe mainframe, int capacity)
+  {
+    int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+
+    this.mainframe = mainframe;
+    cpu = mainframe.cpu;
+    ioUnit = mainframe.ioUnit;
+    records = new int[n * RECORD_SIZE];
+    mask = n - 1;
+
+    disassembler = new Emulator(mainframe.config.model);
+    disassembler.setMainframe(mainframe);
+    aRegister = new Register("A", 16, 0);
+    bRegister = new Register("B", 16, 0);
+  }
+
+  // record also each micro-instruction with its micro-address
+  public void setMicroState(boolean on)
+  {
+    micro = on;
+  }
+
+  // stop recording postTrigger records after execution of opcode at address (address -1 = any address, mask 0 = any opcode)
+  public void setTrigger(int address, int opcodeMask, int opcode, int postTrigger)
+  {
+    triggerAddress = address;
+    triggerMask = opcodeMask;
+    triggerOpcode = opcode & opcodeMask;
+    this.postTrigger = postTrigger;
+    triggered = true;
+  }
+
+  // start recording with output to console
+  public void start(Console console)
+  {
+    this.console = console;
+    start();
+  }
+
+  // start recording with output to stream
+  public void start(PrintStream out)
+  {
+    this.out = out;
+    start();
+  }
+
+  private void start()
+  {
+    count = readCount = 0;
+    triggerCount = -1;
+    frozen = false;
+    running = true;
+
+    consumer = new Thread(this, "HP9800 Trace");
+    consumer.setDaemon(true);
+    consumer.start();
+
+    mainframe.emu.setTraceRecorder(this);
+    cpu.tracer = micro ? this : null;
+  }
+
+  // stop recording, output remaining records and wait for end of consumer thread
+  public void stop()
+  {
+    mainframe.emu.setTraceRecorder(null);
+    cpu.tracer = null;
+    running = false;
+    LockSupport.unpark(consumer);
+
+    try {
+      consumer.join(10000);
+    } catch(InterruptedException e) {
+    }
+  }
+
+  public boolean isFrozen()
+  {
+    return(frozen);
+  }
+
+  // record macro-instruction, called by emulator thread before execution
+  void record(int address, int opcode)
+  {
+    if(frozen)
+      return;
+
+    if(triggered) {
+      if(triggerCount < 0) {
+        if((triggerAddress < 0 || triggerAddress == address) && (opcode & triggerMask) == triggerOpcode)
+          triggerCount = count;
+      } else if(count - triggerCount > postTrigger) {
+        frozen = true;
+        LockSupport.unpark(consumer);
+        return;
+      }
+    }
+
+    write(address, MACRO, opcode);
+  }
+
+  // record micro-instruction, called by CPU.exec() before execution
+  void recordMicro()
+  {
+    if(!frozen)
+      write(cpu.Pregister.value, MICRO, cpu.PC);
+  }
+
+  private void write(int address, int type, int code)
+  {
+    long n = count;
+    int i = (int)(n & mask) * RECORD_SIZE;
+    int flags;
+    long time = ioUnit.scheduler.getTime() + cpu.cycles;
+
+    flags = (ioUnit.MLS ? 1 << 10 : 0) | (ioUnit.MCR ? 1 << 9 : 0) | (ioUnit.SIH ? 1 << 8 : 0) | (ioUnit.SSF ? 1 << 7 : 0)
+      | (ioUnit.SSI != 0 ? 1 << 6 : 0) | (ioUnit.KLS ? 1 << 5 : 0) | (ioUnit.DEN ? 1 << 4 : 0) | (ioUnit.PEN ? 1 << 3 : 0)
+      | (ioUnit.MFL ? 1 << 2 : 0) | (ioUnit.CEO ? 1 << 1 : 0) | (ioUnit.STP ? 1 : 0);
+
+    records[i] = address & 077777 | type << 15 | code << 16;
+    records[i + 1] = cpu.Aregister.value << 16 | cpu.Bregister.value;
+    records[i + 2] = cpu.Eregister.value | flags << 4 | (cpu.ABselector ? 1 << 15 : 0) | cpu.BC << 16 | cpu.DC << 17;
+    records[i + 3] = cpu.Mregister.value << 16 | cpu.Tregister.value;
+    records[i + 4] = cpu.Qregister.value << 16 | cpu.Iregister.value;
+    records[i + 5] = (int)(time >> 32);
+    records[i + 6] = (int)time;
+
+    count = n + 1; // publish record to consumer
+  }
+
+  // consumer thread
+  public void run()
+  {
+    StringBuilder line = new StringBuilder();
+
+    output("P      Opcode  Instruction          A      B      E IO-reg "
+        + FLAG_NAMES + " ABD M      T      Q      Cycles\n");
+
+    while(running || readCount < count) {
+      if(triggered) {
+        // output complete buffer after post-trigger capture or at end of recording
+        if(frozen || !running) {
+          readCount = Math.max(0, count - (mask + 1));
+          format(line, count, false);
+          running = false;
+          break;
+        }
+      } else if(readCount < count) {
+        format(line, count, running);
+        continue;
+      }
+
+      LockSupport.parkNanos(this, 10000000);
+    }
+
+    flush();
+  }
+
+  // format records from readCount to end, live = writer is still recording
+  private void format(StringBuilder line, long end, boolean live)
+  {
+    int[] record = new int[RECORD_SIZE];
+    long lost;
+
+    while(readCount < end) {
+      // records overwritten or being overwritten by the writer are lost
+      if(live && (lost = count - mask - readCount) > 0) {
+        readCount += lost;
+        output("... " + lost + " records lost\n");
+        continue;
+      }
+
+      int i = (int)(readCount & mask) * RECORD_SIZE;
+      System.arraycopy(records, i, record, 0, RECORD_SIZE);
+
+      // record was overwritten while it was copied
+      if(live && count - mask - readCount > 0)
+        continue;
+
+      line.setLength(0);
+      formatRecord(line, record);
+      output(line.toString());
+      readCount++;
+    }
+  }
+
+  private void formatRecord(StringBuilder line, int[] record)
+  {
+    int address = record[0] & 077777;
+    int code = record[0] >>> 16;
+    int flags = record[2] >> 4 & 03777;
+    long time = (long)record[5] << 32 | record[6] & 0xffffffffL;
+
+    if((record[0] & 0100000) == MACRO << 15) {
+      // disassemble with recorded A- or B-register for register reference instructions
+      aRegister.value = record[1] >>> 16;
+      bRegister.value = record[1] & 0177777;
+      disassembler.register = (code & 0004000) == 0 ? aRegister : bRegister;
+
+      octal(line, address, 6).append(' ');
+      octal(line, code, 6).append("  ");
+      String instr = disassembler.mnemonic(code, address);
+      line.append(instr);
+      for(int j = instr.length(); j < 20; j++)
+        line.append(' ');
+    } else {
+      // micro-instruction: micro-address, decoded micro-instruction at end of line
+      octal(line, address, 6).append("   ");
+      octal(line, code >> 4, 2);
+      octal(line, code & 017, 2).append("  ");
+      line.append("                    ");
+    }
+
+    line.append(' ');
+    octal(line, record[1] >>> 16, 6).append(' ');
+    octal(line, record[1] & 0177777, 6).append(' ');
+    line.append(Character.forDigit(record[2] & 017, 16)).append(' ');
+    octal(line, record[4] & 0177777, 6).append(' ');
+
+    for(int bit = 10; bit >= 0; bit--)
+      line.append((flags & 1 << bit) != 0 ? " 1  " : " .  ");
+
+    line.append((record[2] & 0100000) != 0 ? 'B' : 'A');
+    line.append((record[2] & 0200000) != 0 ? '1' : '.');
+    line.append((record[2] & 0400000) != 0 ? '1' : '.');
+    line.append(' ');
+    octal(line, record[3] >>> 16, 6).append(' ');
+    octal(line, record[3] & 0177777, 6).append(' ');
+    octal(line, record[4] >>> 16, 6).append(' ');
+    line.append(time);
+
+    if((record[0] & 0100000) == MICRO << 15) {
+      line.append("  ");
+      line.append(cpu.microProgram[code & 0377].decoded);
+    } else
+      line.append('\n');
+  }
+
+  // append value as octal number with leading zeros
+  private static StringBuilder octal(StringBuilder line, int value, int digits)
+  {
+    for(int shift = (digits - 1) * 3; shift >= 0; shift -= 3)
+      line.append((char)('0' + (value >> shift & 7)));
+
+    return(line);
+  }
+
+  private void output(String text)
+  {
+    if(console != null)
+      console.append(text);
+    else if(out != null)
+      out.print(text);
+  }
+
+  private void flush()
+  {
+    if(out != null)
+      out.flush();
+  }
+}
@@ -29,10 +29,16 @@
  * 03.04.2010 Rel. 1.50 Inheritance from IOinterface and initialization completely reworked
  * 25.10.2017 Rel. 2.03 Changed static access to ioUnit, removed deprecated use of ioRegister
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: Device timer action moved from run() to timerExpired() for DeviceScheduler
+ * 17.10.2026 Rel. 2.60: Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 public class HP11200A extends IOinterface
 {
   protected HP9860A hp9860a;
@@ -52,34 +58,25 @@ public class HP11200A extends IOinterface
     hp9860a = (HP9860A)ioDev;
   }
     
-  public void run()
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
   {
-    while(true) {
-      // sleep 30ms before returning next character 
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-        // restart timer with (changed) timerValue
-        continue;
-      }
-
-      synchronized(ioUnit) {
-        if(serviceRequested && !ioUnit.line10_20) {
-          // on HP9860 SRQ is held only for one card clock
-          // clear Service Request line 12
-          ioUnit.SSI &= ~srqBits;
+    synchronized(ioUnit) {
+      if(serviceRequested && !ioUnit.line10_20) {
+        // on HP9860 SRQ is held only for one card clock
+        // clear Service Request line 12
+        ioUnit.SSI &= ~srqBits;
 
-          // this in turn clears Single Service FF
-          ioUnit.SSF = false;
-          //serviceRequested = false;
-        }
+        // this in turn clears Single Service FF
+        ioUnit.SSF = false;
+        //serviceRequested = false;
       }
-      
-      if(reading) {
-        reading = hp9860a.readInputFile();
-        if(reading && keyCode != -1) {
-          requestInterrupt();
-        }
+    }
+    
+    if(reading) {
+      reading = hp9860a.readInputFile();
+      if(reading && keyCode != -1) {
+        requestInterrupt();
       }
     }
   }
@@ -103,6 +100,22 @@ public class HP11200A extends IOinterface
     }
   }
   
+  // write keyboard state into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    super.saveState(out);
+    out.writeBoolean(reading);
+    out.writeInt(keyCode);
+  }
+
+  // restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    super.restoreState(in);
+    reading = in.readBoolean();
+    keyCode = in.readInt();
+  }
+
   public boolean input()
   {
     synchronized(ioUnit) {
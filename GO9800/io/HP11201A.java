@@ -24,10 +24,16 @@
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
  * 25.05.2021 Rel. 2.31: Add zero (0) data to input() method as the device has no output data
  * 10.07.2021 Rel. 2.51: Remove zero (0) data from input() method again, as it leads to complete malfunction of the card reader
+ * 17.10.2026 Rel. 2.60: Device timer action moved from run() to timerExpired() for DeviceScheduler
+ * 17.10.2026 Rel. 2.60: Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import emu98.IOunit;
 
 public class HP11201A extends IOinterface
@@ -48,31 +54,36 @@ public class HP11201A extends IOinterface
     hp9861a = (HP9861A)ioDev;
   }
 
-  public void run()
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
   {
-    while(true) {
-      // sleep until interrupted by IO-instruction
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-        // restart with new timerValue
-        continue;
-      }
-
-      // put printer in ready status after delay
-      if(delay) {
-        synchronized(ioUnit) {
-          status |= IOunit.devStatusReady;
-          ioUnit.CEO = false;
-          delay = false;
-          hp9861a.soundStop();
-          // set timer to idle
-          timerValue = 1000;
-        }
+    // put printer in ready status after delay
+    if(delay) {
+      synchronized(ioUnit) {
+        status |= IOunit.devStatusReady;
+        ioUnit.CEO = false;
+        delay = false;
+        hp9861a.soundStop();
+        // set timer to idle
+        timerValue = 1000;
       }
     }
   }
   
+  // write typewriter delay into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    super.saveState(out);
+    out.writeBoolean(delay);
+  }
+
+  // restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    super.restoreState(in);
+    delay = in.readBoolean();
+  }
+
   public boolean input()
   {
     synchronized(ioUnit) {
@@ -90,7 +101,7 @@ public class HP11201A extends IOinterface
 
       // restart timer for printer status
       timerValue = highSpeed? 0 : timerValue;
-      devThread.interrupt();
+      restartTimer();
 
       ioUnit.setStatus(status); // return printer status (CFI loads IO-Register and clears CEO)
 
@@ -25,10 +25,16 @@
  * 07.04.2010 Rel. 1.50 Inheritance from IOinterface and initialization completely reworked
  * 09.05.2012 Rel. 1.60 Added SO status output to device
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: Device timer action moved from run() to timerExpired() for DeviceScheduler
+ * 17.10.2026 Rel. 2.60: Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import emu98.IOunit;
 
 public class HP11202A extends IOinterface
@@ -52,19 +58,11 @@ public class HP11202A extends IOinterface
     ioDevice = (HostIO)ioDev;
   }
   
-  public void run()
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
   {
-    while(true) {
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-        // restart timer
-        continue;
-      }
-
-      ioDevice.timerCallback();
-      status = IOunit.devStatusReady;
-    }
+    ioDevice.timerCallback();
+    status = IOunit.devStatusReady;
   }
 
   public boolean output()
@@ -89,6 +87,20 @@ public class HP11202A extends IOinterface
     }
   }
 
+  // write input byte into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    super.saveState(out);
+    out.writeInt(inByte);
+  }
+
+  // restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    super.restoreState(in);
+    inByte = in.readInt();
+  }
+
   public boolean input()
   {
     debug = ioUnit.console.getDebugMode();
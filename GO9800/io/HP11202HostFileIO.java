@@ -26,6 +26,7 @@
  * 11.05.2012 Rel. 1.60 Added buffered output window 
  * 28.10.2017 Rel. 2.10 Added new linking between Mainframe and other components
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
+ * 17.10.2026 Rel. 2.60 Timer restart by restartTimer() instead of devThread.interrupt()
 */
 
 package io;
@@ -230,7 +231,7 @@ public class HP11202HostFileIO extends HostIO implements Printable
       // disable fileDialog 
       fileSelector = false;
       // restart timer for auto enable fileDialog after 5sec 
-      hp11202Interface.devThread.interrupt();
+      hp11202Interface.restartTimer();
       return(null);
     }
 
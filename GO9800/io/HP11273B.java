@@ -24,15 +24,23 @@
  * 04.04.2010 Rel. 1.50 Inheritance from IOinterface and initialization completely reworked
  * 25.10.2017 Rel. 2.03 Changed static access to ioUnit, removed deprecated use of ioRegister
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: Device timer action moved from run() to timerExpired() for DeviceScheduler
+ * 17.10.2026 Rel. 2.60: Disc commands executed asynchronously in emulated time with access time of drive model
+ * 17.10.2026 Rel. 2.60: Added saveState() and restoreState() for disc command in progress
  */
 
 package io;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 public class HP11273B extends IOinterface
 {
   public HP11305A hp11305a;
   private int command = 0;
   private boolean busy = false;
+  private long startTime = System.nanoTime() / 1000; // time base of disc rotation for device thread mode
   private boolean debug = false;
   
   public HP11273B(Integer selectCode, HP9800Mainframe hp9800Mainframe)
@@ -49,25 +57,17 @@ public class HP11273B extends IOinterface
     hp11305a = (HP11305A)ioDev;
   }
   
-  public void run()
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
   {
-    while(true) {
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-        // restart timer
-        continue;
-      }
-
-      // execute disc command asynchronously
-      if(busy) {
-        busy = false;
-        timerValue = HP11305A.IDLE_TIMER;
+    // execute disc command asynchronously
+    if(busy) {
+      busy = false;
+      timerValue = HP11305A.IDLE_TIMER;
 
-        status = hp11305a.output(command);
-        ioUnit.setStatus(status); // return error status
-        ioUnit.CEO = false; // clear CEO
-      }
+      status = hp11305a.output(command);
+      ioUnit.setStatus(status); // return error status
+      ioUnit.CEO = false; // clear CEO
     }
   }
 
@@ -81,25 +81,59 @@ public class HP11273B extends IOinterface
         if(debug)
           ioUnit.console.append("HP11273B out: " + Integer.toHexString(ioUnit.getValue()) + "\n");
 
-      // synchronous execution of disc command
-      status = hp11305a.output(ioUnit.getValue());
-      ioUnit.setStatus(status); // return error status
+        command = ioUnit.getValue();
+        int accessTime = hp11305a.accessTime(command, getMicros());
+
+        if(accessTime > 0) {
+          if(scheduler != null) {
+            // asynchronous execution of disc command in emulated time, CEO is held until transfer is finished
+            busy = true;
+            scheduler.scheduleMicros(this, accessTime);
+            return(true);
+          }
 
-      return(false); // clear CEO
+          // device threads are too coarse for asynchronous execution, so wait here for approx. realistic timing
+          try {
+            Thread.sleep(accessTime * HP11305A.BUSY_TIMER / 10000);
+          } catch (InterruptedException e) { }
+        }
+
+        // synchronous execution of disc command
+        status = hp11305a.output(command);
+        ioUnit.setStatus(status); // return error status
 
-      /*
-        // asynchronous execution of disc command  -> NOT USED AT THE MOMENT
-        command = ioReg.getValue();
-        busy = true;
-        timerValue = HP11305A.BUSY_TIMER;
-        devThread.interrupt();
-      */
+        return(false); // clear CEO
       }
 
       return(ioUnit.CEO); // hold CEO
     }
   }
 
+  // current time in microseconds for the rotational position of the discs
+  private long getMicros()
+  {
+    if(scheduler != null)
+      return(scheduler.getMicros());
+
+    return(System.nanoTime() / 1000 - startTime);
+  }
+
+  // write disc command in progress into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    super.saveState(out);
+    out.writeInt(command);
+    out.writeBoolean(busy);
+  }
+
+  // restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    super.restoreState(in);
+    command = in.readInt();
+    busy = in.readBoolean();
+  }
+
   public boolean input()
   {
     debug = ioUnit.console.getDebugMode();
@@ -24,6 +24,11 @@
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
  * 01.06.2019 Rel. 2.30 Added HP11305A Image, interface management from H9868A
+ * 17.10.2026 Rel. 2.60 No drive windows in headless mode, added openDiskFile()
+ * 17.10.2026 Rel. 2.60 Added flush()
+ * 17.10.2026 Rel. 2.60 Added accessTime() and getStatistics()
+ * 17.10.2026 Rel. 2.60 Added saveState() and restoreState() for machine snapshots
+ * 17.10.2026 Rel. 2.60 No access time for commands which will fail
  */
 
 package io;
@@ -37,6 +42,9 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -123,14 +131,88 @@ public class HP11305A extends IOdevice implements ActionListener
 		BUSY_TIMER = ioInterface.ioUnit.time_10ms;
 
 		hp9867b = new HP9867B[2];
-		HP9867B.time_10ms = BUSY_TIMER;
 
 		for(int drive = 0; drive < numDrives && drive < 2; drive++) {
 			hp9867b[drive] = new HP9867B(drive, ioInterface);  // unit numbers are 0+1 for drive 0 and 2+3 for drive 1
-			hp9867b[drive].setDeviceWindow(new DeviceWindow(hp9867b[drive]));  // create JFrame for device
+			if(!ioInterface.mainframe.headless)
+				hp9867b[drive].setDeviceWindow(new DeviceWindow(hp9867b[drive]));  // create JFrame for device
 		}
 	}
 
+	// load cartridge file for disk unit 0-3 without FileDialog
+	public boolean openDiskFile(int unit, String fileName)
+	{
+		if(unit < 0 || unit > 3 || hp9867b[unit / 2] == null) {
+			System.err.println("HP9880A disk unit " + unit + " not present.");
+			return(false);
+		}
+
+		return(hp9867b[unit / 2].disks[unit % 2].openDiskFile(fileName));
+	}
+
+	// write back modified sectors of all cartridges
+	public void flush()
+	{
+		for(int drive = 0; drive < 2; drive++)
+			if(hp9867b[drive] != null)
+				for(int i = 0; i < 2; i++)
+					hp9867b[drive].disks[i].flush();
+	}
+
+	// duration of disc command in microseconds when started at time now, 0 if command is executed immediately
+	// commands which will fail (no cartridge, door unlocked, invalid address) don't move the head
+	public int accessTime(int command, long now)
+	{
+		if((command & FIRST) != 0 || hp9867b[drive] == null || !hp9867b[drive].disks[disk].accessible(head, command & CYLINDER, sector))
+			return(0);
+
+		return(hp9867b[drive].accessTime(command & CYLINDER, sector, now));
+	}
+
+	// disc access statistics of all drives
+	public String getStatistics()
+	{
+		String statistics = "";
+
+		for(int drive = 0; drive < 2; drive++)
+			if(hp9867b[drive] != null && hp9867b[drive].accesses != 0)
+				statistics += "HP9867B Drive " + drive + ": " + hp9867b[drive].getStatistics() + "\n";
+
+		return(statistics);
+	}
+
+	// write disk parameters of last command and state of all drives into machine snapshot
+	public void saveState(DataOutputStream out) throws IOException
+	{
+		out.writeInt(unit);
+		out.writeInt(head);
+		out.writeInt(cylinder);
+		out.writeInt(sector);
+		out.writeInt(accessMode);
+		out.writeInt(initialize);
+
+		for(int drive = 0; drive < 2; drive++)
+			if(hp9867b[drive] != null)
+				hp9867b[drive].saveState(out);
+	}
+
+	// restore state written by saveState(), the number of drives must not be changed
+	public void restoreState(DataInputStream in) throws IOException
+	{
+		unit = in.readInt();
+		head = in.readInt();
+		cylinder = in.readInt();
+		sector = in.readInt();
+		accessMode = in.readInt();
+		initialize = in.readInt();
+		drive = unit / 2;
+		disk = unit % 2;
+
+		for(int drive = 0; drive < 2; drive++)
+			if(hp9867b[drive] != null)
+				hp9867b[drive].restoreState(in);
+	}
+
 	public int output(int status)
 	{
 		debug = ioInterface.ioUnit.console.getDebugMode();
@@ -24,6 +24,7 @@
  * 09.04.2007 Rel. 1.00 removed dispWindow
  * 03.10.2007 Rel. 1.20 removed sleep(150)
  * 30.10.2011 Rel. 1.50 class renamed to HP9800BeeperInterface and moved to package io for use with HP9821A
+ * 17.10.2026 Rel. 2.60 Update select code table of IOunit.Bus when interface is added or removed
  */
 
 package io;
@@ -37,6 +38,7 @@ public class HP9800BeeperInterface extends HP9800MagneticCardReaderInterface
   	mainframe = hp9800Mainframe; // connect to HP9800Mainframe
   	ioUnit = mainframe.ioUnit; // connect to IOunit
     mainframe.ioInterfaces.add(this); // connect to ioBus
+    ioUnit.bus.updateDevices();
     internalInterface = true;
 
     // generate beep sound
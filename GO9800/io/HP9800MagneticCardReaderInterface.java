@@ -27,17 +27,19 @@
  *            Instead call of closeCardFile() the card-out sensors are set.
  *            The closeCardFile() is now called at EOF. 
  * 09.04.2007 Rel. 1.00 removed dispWindow
+ * 17.10.2026 Rel. 2.60 Device timer action moved from run() to timerExpired() for DeviceScheduler
+ * 17.10.2026 Rel. 2.60 Conversion of .asc and .hex cards moved to MediaConverter, running in background
 */
 
 package io;
 
 import java.awt.Color;
 import java.awt.FileDialog;
-import java.io.EOFException;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
 
 public class HP9800MagneticCardReaderInterface extends IOinterface
 {
@@ -67,9 +69,10 @@ public class HP9800MagneticCardReaderInterface extends IOinterface
   int sensors = 0;
   
   RandomAccessFile cardFile;
+  CompletableFuture<String> cardConversion; // conversion of text-coded card image in progress
+  boolean cardProtected;
   SoundMedia motorSound, startSound, loopSound, cardSound;
 
-  int timerValue = WAIT_IDLE;  // value for idle loop
   boolean readMode = false;
   boolean debug = false;
 
@@ -84,6 +87,7 @@ public class HP9800MagneticCardReaderInterface extends IOinterface
     internalInterface = true;
 
     // store references and start thread
+    timerValue = WAIT_IDLE;  // value for idle loop
     WAIT_BYTE = ioUnit.time_3ms;
     WAIT_INSERT = 2 * ioUnit.time_100ms;
 
@@ -95,86 +99,97 @@ public class HP9800MagneticCardReaderInterface extends IOinterface
     System.out.println("HP9800 Magnetic Card Reader loaded.");
   }
   
-  public void run()
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
   {
     debug = mainframe.console.getDebugMode();
     
-    while(true) {
-      // sleep until interrupted by IO-instruction
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-        // restart timer with (changed) timerValue
-        continue;
-      }
+    // check if card is in progress
+    synchronized(ioUnit) {
+      switch(sensors) {
+      case 0:
+        break;
 
-      // check if card is in progress
-      synchronized(ioUnit) {
-        switch(sensors) {
-        case 0:
-          break;
+      case CARD_END_RECORD:
+        if(cardFile == null) {
+          String fileName;
 
-        case CARD_END_RECORD:
-          if(cardFile == null) {
+          if(cardConversion == null) {
             motorSound = loopSound;
             motorSound.loop();
 
-            if(openCardFile()) {
-              sensors |= CARD_END_LOAD | CARD_IN;
-              ioUnit.bus.din = sensors;
-              motorSound.stop();
-              motorSound = cardSound;
-              motorSound.loop();
-
-              readMode = (outBuffer & INHIBIT_SOURCE) != 0;
-              if(readMode) {
-                // set timer for reading of card bytes
-                if(asyncMode)
-                  timerValue = WAIT_BYTE;
-                else
-                  timerValue = WAIT_CARD;
-              } else {
-                // set time value for max. card "length" for writing
-                timerValue = WAIT_CARD;
-              }
-            } else {
-              sensors = 0;
-              ioUnit.bus.din = sensors;
+            fileName = selectCardFile();
+            cardProtected = false;
+
+            // text-coded card is converted in background, card is loaded when conversion is finished
+            if(MediaConverter.isText(fileName, MediaConverter.MCARD)) {
+              cardProtected = !new File(fileName).canWrite();
+              cardConversion = MediaConverter.convertAsync(fileName, MediaConverter.MCARD);
+              break;
             }
-          }
-          break;
+          } else {
+            if(!cardConversion.isDone())
+              break;
 
-        case CARD_END_RECORD | CARD_END_LOAD | CARD_IN:
-        case CARD_END_RECORD | CARD_END_LOAD | CARD_IN | CARD_UNPROTECTED:
-          if(readMode && asyncMode) {
-            // read from magn. card
-            try {
-              // read byte from card and put on bus together with sensor status
-              ioUnit.bus.din = cardFile.readByte() | sensors;
+            fileName = cardConversion.join();
+            cardConversion = null;
+          }
 
-              // set card reader flag
-              ioUnit.MFL = true;
+          if(openCardFile(fileName, cardProtected)) {
+            sensors |= CARD_END_LOAD | CARD_IN;
+            ioUnit.bus.din = sensors;
+            motorSound.stop();
+            motorSound = cardSound;
+            motorSound.loop();
 
-              if(debug)
-                ioUnit.console.append("HP9800 MC read async " + Integer.toHexString(ioUnit.bus.din & CARD_DATA) + "\n");
-            } catch (IOException e) {
-              // when card reading is complete stop read mode
-              readMode = false;
+            readMode = (outBuffer & INHIBIT_SOURCE) != 0;
+            if(readMode) {
+              // set timer for reading of card bytes
+              if(asyncMode)
+                timerValue = WAIT_BYTE;
+              else
+                timerValue = WAIT_CARD;
+            } else {
+              // set time value for max. card "length" for writing
+              timerValue = WAIT_CARD;
             }
           } else {
-            // card is out of reader
-            ioUnit.MFL = false;
             sensors = 0;
             ioUnit.bus.din = sensors;
-            // don't stop reading here
-            //closeCardFile();
           }
         }
+        break;
+
+      case CARD_END_RECORD | CARD_END_LOAD | CARD_IN:
+      case CARD_END_RECORD | CARD_END_LOAD | CARD_IN | CARD_UNPROTECTED:
+        if(readMode && asyncMode) {
+          // read from magn. card
+          try {
+            // read byte from card and put on bus together with sensor status
+            ioUnit.bus.din = cardFile.readByte() | sensors;
+
+            // set card reader flag
+            ioUnit.MFL = true;
+
+            if(debug)
+              ioUnit.console.append("HP9800 MC read async " + Integer.toHexString(ioUnit.bus.din & CARD_DATA) + "\n");
+          } catch (IOException e) {
+            // when card reading is complete stop read mode
+            readMode = false;
+          }
+        } else {
+          // card is out of reader
+          ioUnit.MFL = false;
+          sensors = 0;
+          ioUnit.bus.din = sensors;
+          // don't stop reading here
+          //closeCardFile();
+        }
       }
     }
   }
   
-  boolean openCardFile()
+  String selectCardFile()
   {
     FileDialog fileDialog = new FileDialog(mainframe.hp9800Window, "Load Magnetic Card");
     fileDialog.setBackground(Color.WHITE);
@@ -183,14 +198,28 @@ public class HP9800MagneticCardReaderInterface extends IOinterface
     String fileName = fileDialog.getFile();
     String dirName = fileDialog.getDirectory();
 
+    if(fileName == null) {
+      return(null);
+    }
+
+    return(dirName + fileName);
+  }
+
+  // open binary card image
+  boolean openCardFile(String fileName, boolean writeProtect)
+  {
     if(fileName == null) {
       return(false);
     }
 
-    fileName = dirName + fileName;
     String mode = "rw";
     sensors |= CARD_UNPROTECTED;  // assume card is unprotected
 
+    if(writeProtect) {
+      sensors &= ~CARD_UNPROTECTED;
+      mode = "r";
+    }
+
     while(true) {
       try{
         cardFile = new RandomAccessFile(fileName, mode);
@@ -207,110 +236,13 @@ public class HP9800MagneticCardReaderInterface extends IOinterface
       }
     }
 
-    // copy ascii coded input file to binary output file
-    // input values are 3bit words 
-    if(fileName.endsWith(".asc")) {
-      RandomAccessFile outFile;
-      String line;
-      int value;
-
-      String outFileName = fileName + ".mcard";
-      try {
-        outFile = new RandomAccessFile(outFileName, "rw");
-      } catch (FileNotFoundException e) {
-        System.err.println(e.toString());
-        return(false);
-      }
-
-      try {
-        try {
-          StringTokenizer tokenline;
-
-          // write file body
-          while((line = cardFile.readLine()) != null) {
-            tokenline = new StringTokenizer(line, " \t");
-            if(tokenline.hasMoreTokens()) {
-              value = Integer.parseInt(tokenline.nextToken());
-              outFile.writeByte(value & 0x7);
-            }
-          }
-        } catch (EOFException e) {
-          // nothing  
-        }
-
-        cardFile.close();
-        outFile.close();
-        
-        try{
-          cardFile = new RandomAccessFile(outFileName, mode);
-        } catch (FileNotFoundException e) {
-          if(mode.equals("r")) {
-            System.err.println(e.toString());
-            return(false);
-          }
-
-          mode = "r";
-        }
-      } catch (IOException e) {
-        // nothing  
-      }
-    }
-    
-    // copy hex coded input file to binary output file
-    // input values are 6bit words 
-    if(fileName.endsWith(".hex")) {
-      RandomAccessFile outFile;
-      String line;
-      int value;
-
-      String outFileName = fileName + ".mcard";
-      try {
-        outFile = new RandomAccessFile(outFileName, "rw");
-      } catch (FileNotFoundException e) {
-        System.err.println(e.toString());
-        return(false);
-      }
-
-      try {
-        try {
-          StringTokenizer tokenline;
-
-          // write file body
-          while((line = cardFile.readLine()) != null) {
-            tokenline = new StringTokenizer(line, " \t");
-            if(tokenline.hasMoreTokens()) {
-              value = Integer.parseInt(tokenline.nextToken(), 16);
-              outFile.writeByte(value & 0x7);
-              outFile.writeByte((value >> 3) & 0x7);
-            }
-          }
-        } catch (EOFException e) {
-          // nothing  
-        }
-
-        cardFile.close();
-        outFile.close();
-        
-        try{
-          cardFile = new RandomAccessFile(outFileName, mode);
-        } catch (FileNotFoundException e) {
-          if(mode.equals("r")) {
-            System.err.println(e.toString());
-            return(false);
-          }
-
-          mode = "r";
-        }
-      } catch (IOException e) {
-        // nothing  
-      }
-    }
-
     return(true);
   }
   
   boolean closeCardFile()
   {
+    cardConversion = null;
+
     if(cardFile != null) {
       try {
         cardFile.close();
@@ -353,7 +285,7 @@ public class HP9800MagneticCardReaderInterface extends IOinterface
             sensors = CARD_END_RECORD; // this may cause strange status output response of other interface with select code 8
             ioUnit.bus.din = sensors;
             timerValue = WAIT_INSERT;
-            devThread.interrupt();
+            restartTimer();
             break;
 
           case CARD_END_RECORD | CARD_END_LOAD | CARD_IN | CARD_UNPROTECTED:
@@ -433,8 +365,6 @@ public class HP9800MagneticCardReaderInterface extends IOinterface
   
   public void stop()
   {
-  	if(devThread != null)	devThread.stop();
-  	
     // stop all sound threads
   	if(startSound != null) startSound.close();
   	if(loopSound != null) loopSound.close();
@@ -48,13 +48,25 @@
  * 04.12.2017 Rel. 2.10 Added drawing of separate modifier key strings in method displayKeyMatriy()
  * 10.12.2017 Rel. 2.10 Added MenuBar and required menu actions
  * 17.12.2017 Rel. 2.10 Moved Menubar and ContentPane to class MainWindow, changed to extend JPanel  
+ * 17.10.2026 Rel. 2.60 Added headless mode without windows, images, and sound, added getDisplayText() and writeOutput() for batch runs
+ * 17.10.2026 Rel. 2.60 Memory gets Emulator as parameter instead of static variable
+ * 17.10.2026 Rel. 2.60 Added deviceScheduling: device timers in emulated time for headless runs
+ * 17.10.2026 Rel. 2.60 Print buffer replaced by PaperStore, paper output rendered incrementally into cached image
+ * 17.10.2026 Rel. 2.60 Added saveState() and restoreState() for machine snapshots
+ * 17.10.2026 Rel. 2.60 Dot rows are counted after they are stored in PaperStore
  */
 
 package io;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.print.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
 import javax.sound.sampled.*;
 import javax.swing.JPanel;
@@ -110,7 +122,7 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   
   // mainframe ressources used by all modules, interfaces, devices  
   public CPU cpu;
-  public Memory[] memory;
+  public Memory memory;
   public IOunit ioUnit;
   public Console console;
   public HP2116Panel hp2116panel; 
@@ -144,8 +156,11 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   protected Color brown = new Color(87, 87, 75);
   
   public SoundMedia fanSound, printSound, paperSound;
-  Vector<byte[]> printBuffer;
+  PaperStore paperStore; // printed dot rows
   byte[] lineBuffer;
+  BufferedImage paperImage; // visible part of paper, rendered from paperStore
+  byte[] paperRow = new byte[16]; // dot row for rendering
+  int paperImageLines = -1, paperImagePage; // numLines and page of rendered paperImage
   public int numLines;
   public int page;
   int dotLine = 0;
@@ -156,11 +171,17 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   public PrinterJob printJob;
   public PageFormat pageFormat;
   public boolean realSpeed = false;
+  public boolean headless; // no windows, images, and sounds
+  public boolean deviceScheduling; // device timers executed by emulator thread instead of device threads
 
   public HP9800Mainframe(Emulator emu, String machine) 
   {
     super();
     this.emu = emu;
+    headless = GraphicsEnvironment.isHeadless();
+
+    // deterministic device timing without device threads for batch runs
+    deviceScheduling = headless;
 
     // List of all loaded IOinterfaces
     ioInterfaces = new Vector<IOinterface>();
@@ -173,13 +194,7 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
     emu.setConsole(console);
 
     // initialize complete memory to 'unused'  
-    memory = new Memory[0100000];
-    //unusedMemory = new Memory(false, -1, 0);
-    for(int i = 0; i <= 077777; i++)
-      memory[i] = new Memory(false, i, 0);
-
-    // set object variable for trace outputs
-    Memory.emu = emu;
+    memory = new Memory(emu);
 
     // initialize CPU
     cpu = new CPU(this);
@@ -192,8 +207,10 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
     ioUnit.setDisassemblerOutput(console);
 
     // HP2116 like lamp panel (just for fun)
-    hp2116panel = new HP2116Panel(this);
-    hp2116panel.setVisible(false);
+    if(!headless) {
+      hp2116panel = new HP2116Panel(this);
+      hp2116panel.setVisible(false);
+    }
 
     // fixed window size ratio
     addComponentListener(new ComponentAdapter() {
@@ -204,12 +221,16 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
 		
     imageController = new ImageController();
     soundController = new SoundController();
+    if(headless)
+      soundController.setEnabled(false);
     
     fanSound = new SoundMedia("media/HP9800/HP9800_FAN.wav", soundController, false);
     fanSound.loop();
     
-    instructionsWindow = new InstructionsWindow(hp9800Window);
-    instructionsWindow.setSize(860, 800);
+    if(!headless) {
+      instructionsWindow = new InstructionsWindow(hp9800Window);
+      instructionsWindow.setSize(860, 800);
+    }
 
     ledRed = new Color(255, 120, 80);
     ledBack = new Color(31, 10, 9);
@@ -218,7 +239,8 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
     setLocation(0, 100);
     
     if(!machine.startsWith("HP9830")) {
-      romSelector = new ROMselector(hp9800Window, this, BLOCK_W, BLOCK_H - 8);
+      if(!headless)
+        romSelector = new ROMselector(hp9800Window, this, BLOCK_W, BLOCK_H - 8);
       printSound = new SoundMedia("media/HP9810A/HP9810A_PRINT_LINE.wav", soundController, false);
       paperSound = new SoundMedia("media/HP9810A/HP9810A_PAPER.wav", soundController, true);
       paperWhite = new Color(230, 230, 230);
@@ -247,6 +269,9 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   // set standard size of HP9800Mainframe panel
   public void setNormalSize()
   {
+  	if(headless)
+  		return; // there is no screen
+
   	Dimension normalSize;
   	Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
   	
@@ -391,7 +416,7 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   public void showInstructions()
   {
     MemoryBlock romBlock = (MemoryBlock)config.memoryBlocks.get("Block0");
-    if(romBlock != null) {
+    if(romBlock != null && instructionsWindow != null) {
       instructionsWindow.setROMblock(romBlock);
       instructionsWindow.showInstructions();
     }
@@ -401,7 +426,13 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   {
     numLines = 0;
     lineBuffer = new byte[16];
-    printBuffer = new Vector<byte[]>();
+    if(paperStore == null)
+      paperStore = new PaperStore(true);
+
+    synchronized(paperStore) {
+      paperStore.clear();
+      paperImageLines = -1;
+    }
   }
 
   public void printOutput(int dotGroup1, int dotGroup2)
@@ -427,9 +458,12 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
     // last dot group?
     if(i == 16) {
       time = System.nanoTime();
-      numLines++;
-      printBuffer.addElement(lineBuffer);
-      lineBuffer = new byte[16];
+      // row must be stored before it is counted, renderPaper() holds the same lock
+      synchronized(paperStore) {
+        paperStore.add(lineBuffer);
+        numLines++;
+      }
+      Arrays.fill(lineBuffer, (byte)0);
 
       displayPrintOutput(null);
 
@@ -479,8 +513,10 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
     
     for(int i = 1; i <= 10; i++) {
       time = System.nanoTime();
-      numLines++;
-      printBuffer.addElement(lineBuffer);
+      synchronized(paperStore) {
+        paperStore.add(lineBuffer);
+        numLines++;
+      }
 
       // wait 4*8ms for exact printer timing
       // considering run-rime for painting the output
@@ -491,7 +527,7 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
         Thread.sleep(soundController.isEnabled()? time : 0);
       } catch(InterruptedException e) { }
       
-      lineBuffer = new byte[16];
+      Arrays.fill(lineBuffer, (byte)0);
       displayPrintOutput(null);
     }
   }
@@ -500,7 +536,7 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   public int print(Graphics g, PageFormat pf, int page)
   {
     final int paperColWidth = 7 * (16 + 2);
-    byte[] lineBuffer;
+    byte[] lineBuffer = new byte[16];
     int dotRow;
     int i, j, n, xd;
 
@@ -531,7 +567,8 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
     g.setColor(Color.BLUE);
 
     for(i = rowNum; i < rowNum + windowDotRows && i < numLines; i++) {
-      lineBuffer = (byte[])printBuffer.elementAt(i);
+      if(!paperStore.get(i, lineBuffer))
+        Arrays.fill(lineBuffer, (byte)0);
 
       for(j = 0; j < 16; j++) {
         dotRow = lineBuffer[j];
@@ -559,9 +596,7 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   
   public void displayPrintOutput(Graphics2D g2d)
   {
-    byte[] lineBuffer;
-    int dotRow;
-    int i, j, n, xd;
+    int x, y;
 
     if(numLines == 0)
       return;
@@ -569,45 +604,172 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
     if(g2d == null)
     	g2d = getG2D(getGraphics());  // get current graphics if not given by paint()
 
-    int x = 0, y = 0; // positioning is done by g2d.translate()
-    int maxLine = numLines - page * PAPER_HEIGHT;
+    if(g2d == null)
+    	return; // panel not visible
 
-    if(maxLine < 0) maxLine = 0;
-    int minLine = maxLine - PAPER_HEIGHT - 1;
-    if(minLine < 0) minLine = 0;
+    // positioning is done by g2d.translate()
+    synchronized(paperStore) {
+      renderPaper();
+      g2d.drawImage(paperImage, PAPER_LEFT, 0, null);
+    }
 
-    x += PAPER_LEFT;
-    g2d.setColor(paperWhite);
-    g2d.fillRect(x, y + PAPER_HEIGHT - maxLine, PAPER_WIDTH, maxLine);
+    // draw transparent paper cover
+    x = PAPER_LEFT;
+    y = PAPER_EDGE;
+    g2d.setColor(paperGray);
+    g2d.fillRect(x, y, PAPER_WIDTH, 6);
+  }
+  
+  // render visible dot rows into paperImage
+  // while printing on the last page only the new rows are rendered, older rows are scrolled up
+  void renderPaper()
+  {
+    int w = PAPER_WIDTH, h = PAPER_HEIGHT;
+    int maxLine = numLines - page * h;
+    int newRows = h;
 
-    x += 8;
-    y += PAPER_HEIGHT - 1;
-    g2d.setColor(Color.BLUE);
+    if(paperImage == null || paperImage.getWidth() != w || paperImage.getHeight() != h) {
+      paperImage = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+      paperImageLines = -1;
+    }
+
+    int[] pixels = ((DataBufferInt)paperImage.getRaster().getDataBuffer()).getData();
+
+    if(page == 0 && paperImagePage == 0 && paperImageLines >= 0 && numLines >= paperImageLines && numLines - paperImageLines < h) {
+      newRows = numLines - paperImageLines;
+      System.arraycopy(pixels, newRows * w, pixels, 0, (h - newRows) * w);
+    }
+
+    for(int r = h - newRows; r < h; r++)
+      renderRow(pixels, r * w, maxLine - h + r);
+
+    paperImageLines = numLines;
+    paperImagePage = page;
+  }
+
+  // render one dot row of paper into pixel array
+  private void renderRow(int[] pixels, int offset, int line)
+  {
+    int dotRow, j, n;
+
+    if(line < 0) {
+      // above begin of paper
+      Arrays.fill(pixels, offset, offset + PAPER_WIDTH, 0);
+      return;
+    }
+
+    Arrays.fill(pixels, offset, offset + PAPER_WIDTH, paperWhite.getRGB());
+
+    if(!paperStore.get(line, paperRow))
+      return;
+
+    for(j = 0; j < 16; j++) {
+      dotRow = paperRow[j];
+      for(n = 4; n >= 0; n--) {
+        if((dotRow & 1) != 0)
+          pixels[offset + 8 + 7 * j + n] = Color.BLUE.getRGB();
 
-    for(i = maxLine - 1; i >= minLine; i--) {
-      lineBuffer = (byte[])printBuffer.elementAt(i);
+        dotRow >>= 1;
+      } // for n
+    } // for j
+  }
+
+  // actual display contents as text, one line per display register
+  public String getDisplayText()
+  {
+    int[][] displayBuffer = ioUnit.bus.display.getDisplayBuffer();
+    StringBuffer text = new StringBuffer();
+
+    for(int i = 0; i < displayBuffer.length; i++) {
+      for(int j = 0; j < displayBuffer[i].length; j++) {
+        text.append(emu.intToOctalString(displayBuffer[i][j], 3));
+        text.append(' ');
+      }
+      text.append('\n');
+    }
+
+    return(text.toString());
+  }
+
+  // write paper of internal printer into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    out.writeBoolean(paperStore != null);
+    if(paperStore == null)
+      return;
+
+    byte[] row = new byte[16];
+
+    synchronized(paperStore) {
+      out.writeInt(dotLine);
+      out.write(lineBuffer);
+      out.writeInt(numLines);
+      for(int i = 0; i < numLines; i++) {
+        if(!paperStore.get(i, row))
+          Arrays.fill(row, (byte)0);
+        out.write(row);
+      }
+    }
+  }
+
+  // restore paper written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    if(!in.readBoolean())
+      return;
+
+    initializeBuffer();
+    byte[] row = new byte[16];
+
+    synchronized(paperStore) {
+      dotLine = in.readInt();
+      in.readFully(lineBuffer);
+      numLines = in.readInt();
+      for(int i = 0; i < numLines; i++) {
+        in.readFully(row);
+        paperStore.add(row);
+      }
+      page = 0;
+    }
+
+    repaint();
+  }
+
+  // write print output of internal printer as dot rows, returns false if there is no printer
+  public boolean writeOutput(PrintStream out)
+  {
+    byte[] lineBuffer;
+    StringBuffer dotLine = new StringBuffer();
+    int dotRow, i, j, n;
+
+    if(paperStore == null)
+      return(false);
+
+    lineBuffer = new byte[16];
+
+    for(i = 0; i < numLines; i++) {
+      if(!paperStore.get(i, lineBuffer))
+        continue;
+
+      dotLine.setLength(0);
 
       for(j = 0; j < 16; j++) {
         dotRow = lineBuffer[j];
-        for(n = 4; n >= 0; n--) {
-          if((dotRow & 1) != 0) {
-            xd = x + 7 * j + n;
-              g2d.drawLine(xd, y, xd, y);
-          }
+        // leftmost dot is bit 4
+        for(n = 4; n >= 0; n--)
+          dotLine.append(((dotRow >> n) & 1) != 0 ? '#' : ' ');
+        dotLine.append("  ");
+      }
 
-          dotRow >>= 1;
-        } // for n
-      } // for j
-      y--;
-    } // for i
+      // remove trailing blanks
+      for(n = dotLine.length(); n > 0 && dotLine.charAt(n - 1) == ' '; n--);
+      dotLine.setLength(n);
+      out.println(dotLine);
+    }
 
-    // draw transparent paper cover
-    x = PAPER_LEFT;
-    y = PAPER_EDGE;
-    g2d.setColor(paperGray);
-    g2d.fillRect(x, y, PAPER_WIDTH, 6);
+    return(true);
   }
-  
+
   public void displayKeyMatrix(Graphics2D g2d)
   {
     float[] dashArray = {2f, 2f};
@@ -712,7 +874,7 @@ public class HP9800Mainframe extends JPanel implements LineListener, Printable
   	closeAllDevices(); // close all loaded devices
   	closeAllInterfaces(); // close remaining interfaces without device (MCR, Beeper etc.)
   	console.dispose();
-  	hp2116panel.stop();
+  	if(hp2116panel != null) hp2116panel.stop();
   	if(romSelector != null)	romSelector.dispose();
   	if(instructionsWindow != null) instructionsWindow.dispose();
   	imageController.disposeAll();
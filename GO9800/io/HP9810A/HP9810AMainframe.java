@@ -54,6 +54,7 @@
  * 10.11.2017 Rel. 2.10 Added dynamic image scaling and processing
  * 13.11.2017 Rel. 2.10 Added HP11265A Cassette Memory keyboard overlay
  * 18.11.2017 Rel. 2.10 Bugfix: display(), displayLEDs(), displayClickAreas() now get actual Graphics2D to avoid problems during update()
+ * 17.10.2026 Rel. 2.60 No ROM selector in headless mode
  */
 
 package io.HP9810A;
@@ -147,20 +148,22 @@ public class HP9810AMainframe extends HP9800Mainframe
     // HP9810A keyboard has in fact no select code
     ioUnit.bus.keyboard = new HP9810KeyboardInterface(16, this);
 
-    romSelector.addRomButton("media/HP9810A/HP11XXXX_Slot.png", "HP11XXXX");
-    romSelector.addRomButton("media/HP9810A/HP11210A_Module.png", "HP11210A");
-    romSelector.addRomButton("media/HP9810A/HP11211A_Module.png", "HP11211A");
-    romSelector.addRomButton("media/HP9810A/HP11212A_Module.png", "HP11212A");
-    romSelector.addRomButton("media/HP9810A/HP11213A_Module.png", "HP11213A");
-    romSelector.addRomButton("media/HP9810A/HP11214A_Module.png", "HP11214A");
-    romSelector.addRomButton("media/HP9810A/HP11215A_Module.png", "HP11215A");
-    romSelector.addRomButton("media/HP9810A/HP11252A_Module.png", "HP11252A");
-    romSelector.addRomButton("media/HP9810A/HP11261A_Module.png", "HP11261A");
-    romSelector.addRomButton("media/HP9810A/HP11262A_Module.png", "HP11262A");
-    romSelector.addRomButton("media/HP9810A/HP11264A_Module.png", "HP11264A");
-    romSelector.addRomButton("media/HP9810A/HP11265A_Module.png", "HP11265A");
-    romSelector.addRomButton("media/HP9810A/HP11266A_Module.png", "HP11266A");
-    romSelector.addRomButton("media/HP9810A/HP11267A_Module.png", "HP11267A");
+    if(romSelector != null) { // no ROM selector in headless mode
+      romSelector.addRomButton("media/HP9810A/HP11XXXX_Slot.png", "HP11XXXX");
+      romSelector.addRomButton("media/HP9810A/HP11210A_Module.png", "HP11210A");
+      romSelector.addRomButton("media/HP9810A/HP11211A_Module.png", "HP11211A");
+      romSelector.addRomButton("media/HP9810A/HP11212A_Module.png", "HP11212A");
+      romSelector.addRomButton("media/HP9810A/HP11213A_Module.png", "HP11213A");
+      romSelector.addRomButton("media/HP9810A/HP11214A_Module.png", "HP11214A");
+      romSelector.addRomButton("media/HP9810A/HP11215A_Module.png", "HP11215A");
+      romSelector.addRomButton("media/HP9810A/HP11252A_Module.png", "HP11252A");
+      romSelector.addRomButton("media/HP9810A/HP11261A_Module.png", "HP11261A");
+      romSelector.addRomButton("media/HP9810A/HP11262A_Module.png", "HP11262A");
+      romSelector.addRomButton("media/HP9810A/HP11264A_Module.png", "HP11264A");
+      romSelector.addRomButton("media/HP9810A/HP11265A_Module.png", "HP11265A");
+      romSelector.addRomButton("media/HP9810A/HP11266A_Module.png", "HP11266A");
+      romSelector.addRomButton("media/HP9810A/HP11267A_Module.png", "HP11267A");
+    }
 
     keyboardImageMedia = new ImageMedia("media/HP9810A/HP9810A_Keyboard.png", imageController);
     displayImageMedia = new ImageMedia("media/HP9810A/HP9810A_Display.png", imageController);
@@ -416,6 +419,9 @@ public class HP9810AMainframe extends HP9800Mainframe
     if(g2d == null)
     	g2d = getG2D(getGraphics());  // get current graphics if not given by paint()
 
+    if(g2d == null)
+    	return; // panel not visible
+
     ledOn = ledOnImageMedia.getScaledImage((int)(LED_WH * widthScale), (int)(LED_WH * heightScale));
     ledOff = ledOffImageMedia.getScaledImage((int)(LED_WH * widthScale), (int)(LED_WH * heightScale));
     
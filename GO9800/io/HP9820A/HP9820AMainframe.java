@@ -45,6 +45,7 @@
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
  * 10.11.2017 Tel. 2.10 Added dynamic image scaling and processing
  * 18.11.2017 Rel. 2.10 Bugfix: display(), displayClickAreas() now get actual Graphics2D to avoid problems during update()
+ * 17.10.2026 Rel. 2.60 No ROM selector in headless mode
  */
 
 package io.HP9820A;
@@ -140,21 +141,24 @@ public class HP9820AMainframe extends HP9800Mainframe
     // check every block of 02000 words
     for(MAW = 032000; MAW > 020000; MAW -= 002000)
     {
-      if(memory[MAW-1].isRW)
+      if(memory.isRW(MAW-1))
         break;
     }
 
     // set MAW
-    memory[01377] = new Memory(false, 01377, MAW);
+    memory.setRW(01377, false);
+    memory.load(01377, MAW);
 
     // create card reader
     ioUnit.bus.cardReader = new HP9800MagneticCardReaderInterface(this);
 
-    romSelector.addRomButton("media/HP9820A/HP11XXXX_Slot.png", "HP11XXXX");
-    romSelector.addRomButton("media/HP9820A/HP11220A_Module.png", "HP11220A");
-    romSelector.addRomButton("media/HP9820A/HP11221A_Module.png", "HP11221A");
-    romSelector.addRomButton("media/HP9820A/HP11222A_Module.png", "HP11222A");
-    romSelector.addRomButton("media/HP9820A/HP11223A_Module.png", "HP11223A");
+    if(romSelector != null) { // no ROM selector in headless mode
+      romSelector.addRomButton("media/HP9820A/HP11XXXX_Slot.png", "HP11XXXX");
+      romSelector.addRomButton("media/HP9820A/HP11220A_Module.png", "HP11220A");
+      romSelector.addRomButton("media/HP9820A/HP11221A_Module.png", "HP11221A");
+      romSelector.addRomButton("media/HP9820A/HP11222A_Module.png", "HP11222A");
+      romSelector.addRomButton("media/HP9820A/HP11223A_Module.png", "HP11223A");
+    }
 
     keyboardImageMedia = new ImageMedia("media/HP9820A/HP9820A_Keyboard.png", imageController);
     blockImageMedia = new ImageMedia("media/HP9820A/HP9820A_Module.png", imageController);
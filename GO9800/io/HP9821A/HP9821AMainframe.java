@@ -30,6 +30,7 @@
  * 21.10.2017 Rel. 2.10 Added Graphics scaling using class Graphics2D
  * 24.10.2017 Rel. 2.10 Added display of click areas, changed size and behaviour (left-click) of ROM template and instructions click areas
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: No ROM selector in headless mode
  */
 
 package io.HP9821A;
@@ -150,11 +151,13 @@ public class HP9821AMainframe extends HP9820AMainframe
     hp9865Interface.setDevice(tapeDevice); 
     hp9865Interface.start();
 
-    romSelector.addRomButton("media/HP9821A/HP11XXXX_Slot.png", "HP11XXXX");
-    romSelector.addRomButton("media/HP9821A/HP11220A_Module.png", "HP11220A");
-    romSelector.addRomButton("media/HP9821A/HP11221A_Module.png", "HP11221A");
-    romSelector.addRomButton("media/HP9821A/HP11222A_Module.png", "HP11222A");
-    //romSelector.addRomButton("media/HP9821A/HP11223A_Block.jpg", "HP11223A");
+    if(romSelector != null) { // no ROM selector in headless mode
+      romSelector.addRomButton("media/HP9821A/HP11XXXX_Slot.png", "HP11XXXX");
+      romSelector.addRomButton("media/HP9821A/HP11220A_Module.png", "HP11220A");
+      romSelector.addRomButton("media/HP9821A/HP11221A_Module.png", "HP11221A");
+      romSelector.addRomButton("media/HP9821A/HP11222A_Module.png", "HP11222A");
+      //romSelector.addRomButton("media/HP9821A/HP11223A_Block.jpg", "HP11223A");
+    }
     
     keyboardImageMedia = new ImageMedia("media/HP9821A/HP9821A_Keyboard.png", imageController);
  		driveopenImageMedia = new ImageMedia("media/HP9821A/HP9821A_Drive_Open.png", imageController);
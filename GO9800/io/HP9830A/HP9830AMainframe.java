@@ -55,6 +55,7 @@
  * 14.11.2017 Rel. 2.10 Added overlays for tape drive
  * 18.11.2017 Rel. 2.10 Bugfix: display(), displayLEDs(), displayClickAreas() now get actual Graphics2D to avoid problems during update()
  * 18.12.2017 Rel. 2.10 Moved creation of LEDmatrix from WindowListener() to paint() 
+ * 17.10.2026 Rel. 2.60 No ROM slots window in headless mode, added getDisplayText()
  */
 
 package io.HP9830A;
@@ -219,7 +220,8 @@ public class HP9830AMainframe extends HP9800Mainframe
  		keyboardImageMedia = new ImageMedia("media/HP9830A/HP9830A_Keyboard.png", imageController);
  		driveopenImageMedia = new ImageMedia("media/HP9830A/HP9830A_Drive_Open.png", imageController);
  		driveloadedImageMedia = new ImageMedia("media/HP9830A/HP9830A_Drive_Loaded.png", imageController);
-    romSlots = new HP9830ROMslots(this);
+    if(!headless)
+      romSlots = new HP9830ROMslots(this);
 
     setNormalSize();
     System.out.println("HP9830 Mainframe loaded.");
@@ -355,7 +357,7 @@ public class HP9830AMainframe extends HP9800Mainframe
   		tapeDevice.drawStatus(g2d);
   	
   	// repaint ROM slots in case of a ROM exchange
-  	if(romSlots.isVisible())
+  	if(romSlots != null && romSlots.isVisible())
   		romSlots.repaint();
   }
 
@@ -414,12 +416,31 @@ public class HP9830AMainframe extends HP9800Mainframe
     }
   }
 
+  public String getDisplayText()
+  {
+    int[][] displayBuffer = ioUnit.bus.display.getDisplayBuffer();
+    StringBuffer text = new StringBuffer();
+    int charCode;
+
+    // character codes 0-31 are @, A-Z, [, cursor, ], up, lazy-T
+    for(int i = 0; i < displayBuffer[0].length; i++) {
+      charCode = displayBuffer[0][i] & 0x3f;
+      text.append((char)(charCode < 32 ? charCode + 64 : charCode));
+    }
+
+    // remove trailing blanks
+    for(int i = text.length(); i > 0 && text.charAt(i - 1) == ' '; i--)
+      text.setLength(i - 1);
+
+    return(text.append('\n').toString());
+  }
+
   public void printOutput(int dotGroup)
   {}
   
   public void close()
   {
-  	romSlots.dispose();
+  	if(romSlots != null) romSlots.dispose();
   	super.close();
   }
 }
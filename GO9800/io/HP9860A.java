@@ -32,6 +32,7 @@
  * 03.04.2010 Rel. 1.50 Class now inherited from IOdevice and completely reworked
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
  * 25.05.2019 Rel. 2.30 Changed to bigger, resizable images. Card image overlay.
+ * 17.10.2026 Rel. 2.60 Timer restart by restartTimer() instead of devThread.interrupt()
  */
 
 package io;
@@ -257,7 +258,7 @@ public class HP9860A extends IOdevice implements ActionListener
       repaint();
       // restart timer
       hp11200a.timerValue = WAIT_CARD;
-      hp11200a.devThread.interrupt();
+      hp11200a.restartTimer();
 
       return(true);
     }
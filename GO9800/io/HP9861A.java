@@ -29,14 +29,23 @@
  * 20.11.2011 Rel. 1.51 SHIFT+DELETE key resizes window to default
  * 28.10.2017 Rel. 2.10 Added new linking between Mainframe and other components
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
+ * 17.10.2026 Rel. 2.60 Added writeOutput() for batch runs, no typing output if device is not visible
+ * 17.10.2026 Rel. 2.60 Lines stored in PrintLineStore, rendering with font glyph atlas into scrolling page strip
+ * 17.10.2026 Rel. 2.60 Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.print.*;
-import java.util.Vector;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
@@ -54,13 +63,18 @@ public class HP9861A extends IOdevice implements ActionListener, Printable
   HP11201A hp11201a;
   SoundMedia typeSound, spaceSound, crSound, lfSound;
   SoundController soundController;
-  private Vector<StringBuffer> printBuffer;
+  private PrintLineStore printBuffer = new PrintLineStore();
   private StringBuffer lineBuffer;
   private int fontSize;
   private int numLines, pos;
   private int page, ribbon;
   private boolean tab[];
   private Font font;
+  private Font glyphFont;  // font of actual glyph atlas
+  private BufferedImage[] glyphs;  // glyph atlas for black and red ribbon
+  private int glyphWidth, glyphAscent, glyphHeight;
+  private BufferedImage strip;  // visible part of paper
+  private int stripLines = -1, stripPage;  // number of lines and page of rendered strip
   private PrinterJob printJob;
   private PageFormat pageFormat;
   private boolean debug = false;
@@ -372,9 +386,6 @@ public class HP9861A extends IOdevice implements ActionListener, Printable
     char c;
     int xmin = x;
 
-    if(g2d == null)
-      g2d = getG2D(getGraphics());  // get current graphics if not given by paint()
-
     for(int i = 0; i < line.length(); i++) {
       c = line.charAt(i);
       switch(c) {
@@ -424,12 +435,132 @@ public class HP9861A extends IOdevice implements ActionListener, Printable
 
     for(int i = lineNum; i < lineNum + windowLines && i < numLines; i++) {
       y += fontSize;  // advance one character line
-      typeLine(g2d, printBuffer.elementAt(i).toString(), x, y);
+      typeLine(g2d, printBuffer.getText(i), x, y);
     }
 
     return(PAGE_EXISTS);
   }
 
+  // type line using the glyph atlas, x and y are the position of the baseline
+  private void typeGlyphs(Graphics g, String line, int x, int y)
+  {
+    char c;
+    int xmin = x;
+    BufferedImage glyphImage = glyphs[0];
+
+    for(int i = 0; i < line.length(); i++) {
+      c = line.charAt(i);
+      switch(c) {
+      case BLACK_RBN:
+        glyphImage = glyphs[0];
+        break;
+
+      case RED_RBN:
+        glyphImage = glyphs[1];
+        break;
+
+      case BSP:
+        x -= glyphWidth;
+        if(x < xmin)
+          x = xmin;
+        break;
+
+      case '\r':
+        x = xmin;
+        break;
+
+      default:
+        c &= 0xff;
+        g.drawImage(glyphImage, x, y - glyphAscent, x + glyphWidth, y - glyphAscent + glyphHeight, c * glyphWidth, 0, (c + 1) * glyphWidth, glyphHeight, null);
+        x += glyphWidth;
+      }
+    }
+  }
+
+  // draw all characters of font into glyph atlas for black and red ribbon
+  private void makeGlyphs()
+  {
+    Color[] ribbonColor = {Color.BLACK, Color.RED};
+
+    glyphs = new BufferedImage[2];
+    glyphFont = font;
+
+    for(int i = 0; i < 2; i++) {
+      BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+      Graphics g = image.getGraphics();
+      FontMetrics metrics = g.getFontMetrics(font);
+
+      glyphWidth = metrics.charWidth(' ');
+      glyphAscent = metrics.getAscent();
+      glyphHeight = metrics.getAscent() + metrics.getDescent();
+      g.dispose();
+
+      image = new BufferedImage(256 * glyphWidth, glyphHeight, BufferedImage.TYPE_INT_ARGB);
+      g = image.getGraphics();
+      g.setFont(font);
+      g.setColor(ribbonColor[i]);
+
+      for(int c = ' '; c < 256; c++) {
+        g.drawString(Character.toString((char)c), c * glyphWidth, glyphAscent);
+      }
+
+      g.dispose();
+      glyphs[i] = image;
+    }
+
+    stripLines = -1;
+  }
+
+  // render visible lines into strip, while typing on the last page only new lines are rendered
+  private BufferedImage renderStrip(int width, int height, int x, int yBottom)
+  {
+    synchronized(printBuffer) {
+      int numLines = printBuffer.size();
+      int firstLine = 0;  // oldest line to render
+      int yPage = yBottom + page * yBottom;  // y-position of actual displayed page
+      int newRows = height;
+
+      if(glyphs == null || glyphFont != font)
+        makeGlyphs();
+
+      if(strip == null || strip.getWidth() != width || strip.getHeight() != height) {
+        strip = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        stripLines = -1;
+      }
+
+      int[] pixels = ((DataBufferInt)strip.getRaster().getDataBuffer()).getData();
+
+      if(page == 0 && stripPage == 0 && stripLines >= 0 && numLines >= stripLines)
+        newRows = (numLines - stripLines) * fontSize;
+
+      if(newRows < height) {
+        // scroll up typed lines
+        System.arraycopy(pixels, newRows * width, pixels, 0, (height - newRows) * width);
+        Arrays.fill(pixels, (height - newRows) * width, height * width, Color.WHITE.getRGB());
+        firstLine = stripLines;
+      } else {
+        Arrays.fill(pixels, Color.WHITE.getRGB());
+      }
+
+      Graphics g = strip.getGraphics();
+
+      // type lines in paper order, so overlapping glyphs of adjacent lines look the same after scrolling
+      firstLine = Math.max(firstLine, numLines - (yPage + fontSize) / fontSize);  // highest visible line
+
+      for(int i = firstLine; i < numLines; i++) {
+        int y = yPage - (numLines - i) * fontSize;
+        if(y > yBottom) break;  // is print y-position below lowest visible line? If yes: we are done
+        typeGlyphs(g, printBuffer.getText(i), x, y);
+      }
+
+      g.dispose();
+      stripLines = numLines;
+      stripPage = page;
+
+      return(strip);
+    }
+  }
+
   public void paint(Graphics g)
   {
     super.paint(g);
@@ -437,30 +568,21 @@ public class HP9861A extends IOdevice implements ActionListener, Printable
     unscaledHeight = (int)((getHeight() - getInsets().top - getInsets().bottom) / heightScale);
 
     int x = 4;  // leftmost print positon
-    int yTop = 0;  // topmost print position
     int yBottom = unscaledHeight - 8;  // lowest print positon
-    int windowDotRows = yBottom - yTop;  // # dot rows in output area
-    int y = yBottom + page * windowDotRows;  // y-position of actual displayed page
-
-    g.setColor(Color.WHITE);
-    g2d.fillRect(0, 0, NORMAL_W, unscaledHeight);
-    g2d.setFont(font);
 
-    typeLine(g2d, lineBuffer.toString(), x, y);
+    g2d.drawImage(renderStrip(NORMAL_W, Math.max(1, unscaledHeight), x, yBottom), 0, 0, null);
 
-    for(int i = numLines - 1; i >= 0; i--) {
-      y -= fontSize;  // advance one character line
-      if(y > yBottom) continue;  // is print y-position below lowest visible line? If yes: try next line
-      if(y < yTop - fontSize) break;  // is print y-position above highest visible line? If yes: we are done
-      typeLine(g2d, printBuffer.elementAt(i).toString(), x, y);
-    }
+    // actual line is only visible on last page
+    if(page == 0)
+      typeGlyphs(g2d, lineBuffer.toString(), x, yBottom);
   }
 
   public void initializeBuffer()
   {
     numLines = pos = 0;
     lineBuffer = new StringBuffer();
-    printBuffer = new Vector<StringBuffer>();
+    printBuffer.clear();
+    stripLines = -1;
     lineBuffer.append((char)ribbon);
   }
 
@@ -538,7 +660,7 @@ public class HP9861A extends IOdevice implements ActionListener, Printable
       if(!hp11201a.highSpeed)
         lfSound.start(); // play line feed sound
       numLines++;
-      printBuffer.addElement(lineBuffer);
+      printBuffer.add(lineBuffer);
       lineBuffer = new StringBuffer();
       lineBuffer.append((char)ribbon);
       for(i = 0; i < pos; i++)
@@ -562,10 +684,15 @@ public class HP9861A extends IOdevice implements ActionListener, Printable
       }
       status = 0;
 
-      if(page == 0) {
-        int x = 4;  // leftmost print position
-        int y = unscaledHeight - 8;
-        typeLine(null, lineBuffer.toString(), x, y);
+      if(page == 0 && glyphs != null) {
+        Graphics2D g2d = getG2D(getGraphics());
+
+        // type actual line directly, device may not be visible
+        if(g2d != null) {
+          int x = 4;  // leftmost print position
+          int y = unscaledHeight - 8;
+          typeGlyphs(g2d, lineBuffer.toString(), x, y);
+        }
       }
 
       pos++;
@@ -584,6 +711,53 @@ public class HP9861A extends IOdevice implements ActionListener, Printable
     crSound.stop();
   }
 
+  // write printed lines, actual line, print position and tabs into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    out.writeInt(pos);
+    out.writeInt(ribbon);
+    for(int i = 0; i < WIDTH; i++)
+      out.writeBoolean(tab[i]);
+    out.writeUTF(lineBuffer.toString());
+    printBuffer.write(out);
+  }
+
+  // restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    initializeBuffer();
+    pos = in.readInt();
+    ribbon = in.readInt();
+    for(int i = 0; i < WIDTH; i++)
+      tab[i] = in.readBoolean();
+    lineBuffer.setLength(0);
+    lineBuffer.append(in.readUTF());
+    printBuffer.read(in);
+    numLines = printBuffer.size();
+    repaint();
+  }
+
+  // write printed lines without control characters
+  public boolean writeOutput(PrintStream out)
+  {
+    String printLine;
+    StringBuffer text = new StringBuffer();
+
+    for(int i = 0; i < numLines; i++) {
+      printLine = printBuffer.getText(i);
+      text.setLength(0);
+
+      for(int j = 0; j < printLine.length(); j++) {
+        if(printLine.charAt(j) >= ' ')
+          text.append(printLine.charAt(j));
+      }
+
+      out.println(text);
+    }
+
+    return(true);
+  }
+
   public void close()
   {
     // stop all sound threads
@@ -36,14 +36,16 @@
  * 28.10.2017 Rel. 2.10 Added new linking between Mainframe and other components
  * 30.12.2017 Rel. 2.10 Use Graphics2D for scaling, positioning, and rendering
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
+ * 17.10.2026 Rel. 2.60 Packed point store and tile cached raster, paint() only blits tiles
  */
 
 package io;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.awt.print.*;
-import java.util.Vector;
+import java.util.Arrays;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
@@ -67,32 +69,27 @@ public class HP9862A extends IOdevice implements ActionListener, Printable
 
   double REAL_W = 15.0, REAL_H = 10.0;
   int PLOT_W = 10000, PLOT_H = 10000;
+  static final int TILE_SIZE = 256;  // edge length of raster tiles in pixels
 
   HP9862Interface hp9862Interface;
   //Image hp9862aImage;
   SoundMedia plotSound, moveSound, penDownSound, penUpSound;
   Stroke stroke;
-  Vector<PlotterPoint> points;
+  // packed point store, each point is plotted as line from the previous point
+  int[] pointX, pointY;
+  byte[] pointColor;
   int numPoints;
   int[] outByte;
   int byteCount;
-  PlotterPoint refPoint;
+  int refX, refY;
+  // backing raster of the plot area, tiles are created on first use
+  BufferedImage[][] tiles;
+  Graphics2D[][] tileGraphics;
+  double tileScaleX, tileScaleY;
   int color = 0;
   int penColor = 1;
   boolean bcdMode = false;
 
-  private class PlotterPoint
-  {
-    int x, y, color;
-
-    PlotterPoint(int x, int y, int color)
-    {
-      this.x = x;
-      this.y = y;
-      this.color = color;
-    }
-  }
-
   public HP9862A(IOinterface ioInterface)
   {
     super("HP9862A", ioInterface); // set window title
@@ -107,8 +104,6 @@ public class HP9862A extends IOdevice implements ActionListener, Printable
     NORMAL_W = 750;
     NORMAL_H = 500;
 
-    refPoint = new PlotterPoint(0, 0, 0);
-
     // set line width
     stroke = new BasicStroke(7);
 
@@ -314,10 +309,8 @@ public class HP9862A extends IOdevice implements ActionListener, Printable
     repaint();
   }
 
-  public int print(Graphics g, PageFormat pf, int page)
+  public synchronized int print(Graphics g, PageFormat pf, int page)
   {
-    PlotterPoint point, tempRef;
-
     Graphics2D g2d = (Graphics2D)g;
 
     // enable antialiasing for higher quality of plotter output
@@ -326,14 +319,12 @@ public class HP9862A extends IOdevice implements ActionListener, Printable
     g2d.scale(pf.getImageableWidth() / PLOT_W, pf.getImageableHeight() / PLOT_H);  // scale graphics to page size
 
     pf = pageFormat;
-    tempRef = new PlotterPoint(0, 0, 0);
 
     g2d.setColor(Color.WHITE);
     //g2d.fillRect(0, 0, PLOT_W, PLOT_H);
 
     for(int i = 0; i < numPoints; i++) {
-      point = (PlotterPoint)points.elementAt(i);
-      plot(g2d, point, tempRef);
+      plot(g2d, i);
     }
 
     // only one page to print
@@ -343,84 +334,198 @@ public class HP9862A extends IOdevice implements ActionListener, Printable
       return(NO_SUCH_PAGE);
   }
 
-  public void paint(Graphics g)
+  public synchronized void paint(Graphics g)
   {
-    PlotterPoint point, tempRef;
-
-    super.paint(g);
     setScale(false, false);
 
-    tempRef = new PlotterPoint(0, 0, 0);
+    // raster all points again only if the scale has changed
+    if(tiles == null || tileScaleX != widthScale * NORMAL_W / PLOT_W || tileScaleY != heightScale * NORMAL_H / PLOT_H)
+      rasterize();
+
+    int left = getInsets().left, top = getInsets().top;
+    Rectangle clip = g.getClipBounds();
 
     //boolean backgroundImage = g2d.drawImage(hp9862aImage, x, y, getWidth(), getHeight(), this);
 
-    //if(backgroundImage) {
-    g2d.setColor(Color.WHITE);
-    g2d.fillRect(0, 0, PLOT_W, PLOT_H);
+    // blit cached tiles, unused tiles are blank paper
+    for(int row = 0; row < tiles.length; row++) {
+      for(int col = 0; col < tiles[row].length; col++) {
+        int x = left + col * TILE_SIZE, y = top + row * TILE_SIZE;
 
-    for(int i = 0; i < numPoints; i++) {
-      point = (PlotterPoint)points.elementAt(i);
-      plot(g2d, point, tempRef);
+        if(clip != null && !clip.intersects(x, y, TILE_SIZE, TILE_SIZE))
+          continue;
+
+        if(tiles[row][col] != null) {
+          g.drawImage(tiles[row][col], x, y, null);
+        } else {
+          g.setColor(Color.WHITE);
+          g.fillRect(x, y, TILE_SIZE, TILE_SIZE);
+        }
+      }
     }
-    //}
   }
 
-  public void plot(Graphics2D g2d, PlotterPoint pos, PlotterPoint ref)
+  // draw line from previous point (or origin) to point i
+  public void plot(Graphics2D g2d, int i)
   {
-    if(g2d == null)
-      g2d = getG2D(getGraphics());  // get current graphics if not given by paint()
+    if(pointColor[i] != 0) {
+      g2d.setColor(getPenColor(pointColor[i]));
+      g2d.setStroke(stroke);
 
-    if(pos.color != 0) {
-      switch(pos.color) {
-      case 2:
-        g2d.setColor(Color.GREEN);
-        break;
+      if(i == 0)
+        g2d.drawLine(0, PLOT_H, pointX[i], PLOT_H - pointY[i]);
+      else
+        g2d.drawLine(pointX[i - 1], PLOT_H - pointY[i - 1], pointX[i], PLOT_H - pointY[i]);
+    }
+  }
+
+  Color getPenColor(int color)
+  {
+    switch(color) {
+    case 2:
+      return(Color.GREEN);
 
-      case 3:
-        g2d.setColor(Color.RED);
-        break;
+    case 3:
+      return(Color.RED);
 
-      case 4:
-        g2d.setColor(Color.BLUE);
-        break;
+    case 4:
+      return(Color.BLUE);
 
-      case 5:
-        g2d.setColor(Color.CYAN);
-        break;
+    case 5:
+      return(Color.CYAN);
 
-      case 6:
-        g2d.setColor(Color.MAGENTA);
-        break;
+    case 6:
+      return(Color.MAGENTA);
+
+    case 7:
+      return(Color.YELLOW);
+
+    case 8:
+      return(Color.ORANGE);
+
+    case 9:
+      return(Color.PINK);
+
+    default:
+      return(Color.BLACK);
+    }
+  }
 
-      case 7:
-        g2d.setColor(Color.YELLOW);
-        break;
+  // append point to store and raster the new line into the cached tiles
+  synchronized void addPoint(int x, int y, int color)
+  {
+    if(numPoints == pointX.length) {
+      pointX = Arrays.copyOf(pointX, 2 * numPoints);
+      pointY = Arrays.copyOf(pointY, 2 * numPoints);
+      pointColor = Arrays.copyOf(pointColor, 2 * numPoints);
+    }
 
-      case 8:
-        g2d.setColor(Color.ORANGE);
-        break;
+    pointX[numPoints] = x;
+    pointY[numPoints] = y;
+    pointColor[numPoints] = (byte)color;
+    refX = x;
+    refY = y;
+
+    // no raster before first paint() and in headless mode
+    if(tiles != null) {
+      Rectangle area = rasterPoint(numPoints);
+      if(area != null)
+        repaint(area.x + getInsets().left, area.y + getInsets().top, area.width, area.height);
+    }
 
-      case 9:
-        g2d.setColor(Color.PINK);
-        break;
+    numPoints++;
+  }
 
-      default:
-        g2d.setColor(Color.BLACK);
+  // draw line to point i into all tiles it touches, returns the pixel area or null
+  Rectangle rasterPoint(int i)
+  {
+    if(pointColor[i] == 0)
+      return(null);
+
+    int x0 = i == 0? 0 : pointX[i - 1];
+    int y0 = PLOT_H - (i == 0? 0 : pointY[i - 1]);
+    int x1 = pointX[i];
+    int y1 = PLOT_H - pointY[i];
+
+    // pixel bounds including line width and antialiasing
+    double pad = ((BasicStroke)stroke).getLineWidth() / 2;
+    int left = (int)Math.floor((Math.min(x0, x1) - pad) * tileScaleX) - 1;
+    int right = (int)Math.ceil((Math.max(x0, x1) + pad) * tileScaleX) + 1;
+    int top = (int)Math.floor((Math.min(y0, y1) - pad) * tileScaleY) - 1;
+    int bottom = (int)Math.ceil((Math.max(y0, y1) + pad) * tileScaleY) + 1;
+
+    int cols = tiles[0].length, rows = tiles.length;
+    int col0 = Math.max(0, left / TILE_SIZE), col1 = Math.min(cols - 1, right / TILE_SIZE);
+    int row0 = Math.max(0, top / TILE_SIZE), row1 = Math.min(rows - 1, bottom / TILE_SIZE);
+
+    for(int row = row0; row <= row1; row++) {
+      for(int col = col0; col <= col1; col++) {
+        plot(getTileGraphics(row, col), i);
       }
+    }
 
-      g2d.setStroke(stroke);
-      g2d.drawLine(ref.x, PLOT_H - ref.y, pos.x, PLOT_H - pos.y);
+    return(new Rectangle(left, top, right - left + 1, bottom - top + 1));
+  }
+
+  Graphics2D getTileGraphics(int row, int col)
+  {
+    if(tileGraphics[row][col] == null) {
+      BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+      Graphics2D g = tile.createGraphics();
+
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+      g.translate(-col * TILE_SIZE, -row * TILE_SIZE);  // position of tile in plot area
+      g.scale(tileScaleX, tileScaleY);
+      g.setRenderingHints(new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON));
+
+      tiles[row][col] = tile;
+      tileGraphics[row][col] = g;
+    }
+
+    return(tileGraphics[row][col]);
+  }
+
+  // rebuild tiles for actual scale and raster all points
+  void rasterize()
+  {
+    disposeTiles();
+
+    tileScaleX = widthScale * NORMAL_W / PLOT_W;
+    tileScaleY = heightScale * NORMAL_H / PLOT_H;
+
+    int cols = Math.max(1, (int)Math.ceil(widthScale * NORMAL_W / TILE_SIZE));
+    int rows = Math.max(1, (int)Math.ceil(heightScale * NORMAL_H / TILE_SIZE));
+    tiles = new BufferedImage[rows][cols];
+    tileGraphics = new Graphics2D[rows][cols];
+
+    for(int i = 0; i < numPoints; i++) {
+      rasterPoint(i);
+    }
+  }
+
+  void disposeTiles()
+  {
+    if(tileGraphics != null) {
+      for(Graphics2D[] row : tileGraphics) {
+        for(Graphics2D g : row) {
+          if(g != null)
+            g.dispose();
+        }
+      }
     }
 
-    ref.x = pos.x;
-    ref.y = pos.y;
-    ref.color = pos.color;
+    tiles = null;
+    tileGraphics = null;
   }
 
-  public void initializeBuffer()
+  public synchronized void initializeBuffer()
   {
     numPoints = 0;
-    points = new Vector<PlotterPoint>();
+    pointX = new int[1024];
+    pointY = new int[1024];
+    pointColor = new byte[1024];
+    disposeTiles();
   }
 
   public int output(int status, int value)
@@ -443,10 +548,7 @@ public class HP9862A extends IOdevice implements ActionListener, Printable
         color = 0;
       }
 
-      PlotterPoint point = new PlotterPoint(refPoint.x, refPoint.y, color);
-      points.addElement(point);
-      numPoints++;
-      plot(null, point, refPoint);
+      addPoint(refX, refY, color);
 
       // status = not ready -> delay for pen movement
       status = POWER;
@@ -485,8 +587,8 @@ public class HP9862A extends IOdevice implements ActionListener, Printable
 
         // relative movement?
         if((status & CODE) != 0) {
-          x = refPoint.x + (short)x;  // treat x as 16bit signed integer
-          y = refPoint.y + (short)y;  // treat y as 16bit signed integer
+          x = refX + (short)x;  // treat x as 16bit signed integer
+          y = refY + (short)y;  // treat y as 16bit signed integer
           if(x < 0) x = 0;
           if(y < 0) y = 0;
         }
@@ -495,20 +597,17 @@ public class HP9862A extends IOdevice implements ActionListener, Printable
           if(y < 16) penColor = y;
         } else {
           // length of plot track, converted to time in ms
-          int l = (int)Math.round(Math.hypot((double)(x - refPoint.x), (double)(y - refPoint.y)) * 0.35);
+          int l = (int)Math.round(Math.hypot((double)(x - refX), (double)(y - refY)) * 0.35);
           hp9862Interface.timerValue = l;
 
-          if((x != refPoint.x || y != refPoint.y) && !hp9862Interface.highSpeed) {
+          if((x != refX || y != refY) && !hp9862Interface.highSpeed) {
             if(l > 200)
               moveSound.loop(); // play plot sound only if real move
             //else if(l > 50)
             //plotSound.start(); // play plot sound only if real move
           }
 
-          PlotterPoint point = new PlotterPoint(x, y, color);
-          points.addElement(point);
-          numPoints++;
-          plot(null, point, refPoint);
+          addPoint(x, y, color);
         }
 
         // status = not ready -> delay for plotter movement
@@ -24,10 +24,16 @@
  * 22.12.2009 Rel. 1.42 Changed plotter movement delay and sound output
  * 03.04.2010 Rel. 1.50 Inheritance from IOinterface and initialization completely reworked
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: Device timer action moved from run() to timerExpired() for DeviceScheduler
+ * 17.10.2026 Rel. 2.60: Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import emu98.IOunit;
 
 public class HP9862Interface extends IOinterface
@@ -49,31 +55,36 @@ public class HP9862Interface extends IOinterface
     hp9862a = (HP9862A)ioDev;
   }
   
-  public void run()
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
   {
-    while(true) {
-      // sleep until interrupted by IO-instruction
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-        // restart with new timerValue
-        continue;
-      }
-
-      // put plotter in ready status after delay
-      if(delay) {
-        synchronized(ioUnit) {
-          status |= IOunit.devStatusReady | HP9862A.POWER;
-          ioUnit.CEO = false;
-          delay = false;
-          hp9862a.soundStop();
-          // set timer to idle
-          timerValue = 1000;
-        }
+    // put plotter in ready status after delay
+    if(delay) {
+      synchronized(ioUnit) {
+        status |= IOunit.devStatusReady | HP9862A.POWER;
+        ioUnit.CEO = false;
+        delay = false;
+        hp9862a.soundStop();
+        // set timer to idle
+        timerValue = 1000;
       }
     }
   }
   
+  // write plotter delay into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    super.saveState(out);
+    out.writeBoolean(delay);
+  }
+
+  // restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    super.restoreState(in);
+    delay = in.readBoolean();
+  }
+
   public boolean input()
   {
     debug = mainframe.console.getDebugMode();
@@ -114,7 +125,7 @@ public class HP9862Interface extends IOinterface
       delay = true;
       // restart timer
       timerValue = highSpeed? 0 : timerValue;
-      devThread.interrupt();
+      restartTimer();
     }
     
     return(true);
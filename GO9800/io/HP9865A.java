@@ -46,6 +46,10 @@
  * 01.01.2018 Rel. 2.10 Changed handling of statusFrame, now using repaint()
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
  * 26.05.2019 Rel. 2.30 Changed drive status indicator to graphic progress bar
+ * 17.10.2026 Rel. 2.60 Added openTapeFile(fileName) for loading without FileDialog
+ * 17.10.2026 Rel. 2.60 Tape contents held in memory with index of control words and write-back of modified range
+ * 17.10.2026 Rel. 2.60 Conversion of .asc tapes moved to MediaConverter, running in background in GUI mode
+ * 17.10.2026 Rel. 2.60 Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
@@ -54,7 +58,9 @@ package io;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.util.StringTokenizer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
@@ -95,6 +101,12 @@ public class HP9865A extends IOdevice implements ActionListener
   private SoundMedia motorStartSound, motorStopSound, motorSound;
   private SoundMedia motorSlowSound, motorFastSound, motorRewindSound;
   private RandomAccessFile tapeFile;
+  private String tapeFileName; // path of binary tape image
+  private short[] tapeWords; // complete tape contents, read from tapeFile when cassette is loaded
+  private int tapeLength; // number of words on tape
+  private int headPosition; // word position of tape head
+  private BitSet controlWords; // index of control words (file marks) for fast search
+  private int dirtyStart, dirtyEnd; // range of modified words not yet written back to tapeFile
   private int tapeCommand = STOP;  // last tape command from calculator
   private int prevCommand = STOP;
   private int driveStatus = POWER_ON | CASSETTE_OUT | WRITE_PROTECT;
@@ -253,11 +265,36 @@ public class HP9865A extends IOdevice implements ActionListener
     String fileName = fileDialog.getFile();
     String dirName = fileDialog.getDirectory();
 
-    if(fileName != null) {
+    if(fileName != null)
       fileName = dirName + fileName;
 
-      String mode = "rw";
-      driveStatus = POWER_ON;
+    return(openTapeFile(fileName));
+  }
+
+  // load cassette from file, fileName = null means no cassette
+  public boolean openTapeFile(String fileName)
+  {
+    // text-coded tapes are converted to a binary image first
+    if(MediaConverter.isText(fileName, MediaConverter.TAPE)) {
+      final boolean writeProtect = !new File(fileName).canWrite();
+
+      if(ioInterface.mainframe.headless)
+        return(openTapeImage(MediaConverter.convert(fileName, MediaConverter.TAPE), writeProtect));
+
+      // cassette is inserted when conversion in background is finished, door remains open until then
+      MediaConverter.convertAsync(fileName, MediaConverter.TAPE).thenAccept(tapeFileName -> openTapeImage(tapeFileName, writeProtect));
+      return(true);
+    }
+
+    return(openTapeImage(fileName, false));
+  }
+
+  // load binary tape image
+  private boolean openTapeImage(String fileName, boolean writeProtect)
+  {
+    if(fileName != null) {
+      String mode = writeProtect ? "r" : "rw";
+      driveStatus = writeProtect ? POWER_ON | WRITE_PROTECT : POWER_ON;
       while(true) {
         try{
           tapeFile = new RandomAccessFile(fileName, mode);
@@ -273,130 +310,10 @@ public class HP9865A extends IOdevice implements ActionListener
         }
       }
 
-      // copy ascii coded input file to binary output file
-      // input values are 16bit words 
-      if(fileName.endsWith(".asc")) {
-        RandomAccessFile outFile;
-        String line;
-        int value;
+      if(!loadTape())
+        return(false);
 
-        String outFileName = fileName + ".tape";
-        try {
-          outFile = new RandomAccessFile(outFileName, "rw");
-        } catch (FileNotFoundException e) {
-          System.err.println(e.toString());
-          return(false);
-        }
-
-        try {
-          outFile.writeShort(0);
-          outFile.writeShort(0);
-          outFile.writeShort(0);
-          outFile.writeShort(0);
-          outFile.writeShort(0);
-          outFile.writeShort(0);
-          outFile.writeShort(0);
-          outFile.writeShort(0);
-        } catch (IOException e) {
-          // nothing  
-        }
-
-        try {
-          try {
-            StringTokenizer tokenline;
-            int i;
-            int absFileSize = 0, fileSize = 0;
-
-            // read multiple files, separated by one empty line
-            do {
-              // write control byte
-              outFile.writeShort(0x13c);
-
-              // write file header
-              int checkSum = 0;
-              for(i = 1; i <= 7; i++) {
-                line = tapeFile.readLine();
-                tokenline = new StringTokenizer(line, " \t");
-                value = 0;
-                if(line != null)
-                  value = Integer.parseInt(tokenline.nextToken());
-                checkSum += value;
-                outFile.writeShort(value & 0xff); // output low byte
-                outFile.writeShort(value >> 8); // output high byte
-
-                switch(i) {
-                case 1:
-                  System.out.println(value);
-                  break;
-
-                case 2:
-                  fileSize = value;
-
-                case 4:
-                  absFileSize = value;
-                }
-              }
-
-              // 5 empty header words
-              for(i = 1; i <= 10; i++) {
-                outFile.writeShort(0);
-              }
-
-              // write check sum
-              outFile.writeShort(checkSum & 0xff);
-              outFile.writeShort(checkSum >> 8);
-
-              // write file body
-              checkSum = 0;
-              for(i = 0; (line = tapeFile.readLine()) != null && i < fileSize; i++) {
-                tokenline = new StringTokenizer(line, " \t");
-                if(tokenline.hasMoreTokens()) {
-                  value = Integer.parseInt(tokenline.nextToken());
-                  checkSum += value;
-                  outFile.writeShort(value & 0xff); // output low byte
-                  outFile.writeShort(value >> 8); // output high byte
-                }
-              }
-
-              // write check sum
-              outFile.writeShort(checkSum & 0xff);
-              outFile.writeShort(checkSum >> 8);
-
-              // fill up file
-              for( ; i <= absFileSize; i++) {
-                outFile.writeShort(0);
-                outFile.writeShort(0);
-              }
-
-              // read next file
-            } while(line != null && line.equals(""));
-
-            // write control byte for next empty file
-            outFile.writeShort(0x13c);
-
-          } catch (EOFException e) {
-            // nothing  
-          }
-
-          tapeFile.close();
-          outFile.close();
-          //return(false);
-
-          try {
-            tapeFile = new RandomAccessFile(outFileName, mode);
-          } catch (FileNotFoundException e) {
-            if(mode.equals("r")) {
-              System.err.println(e.toString());
-              return(false);
-            }
-
-            mode = "r";
-            driveStatus |= WRITE_PROTECT;
-          }
-        } catch (IOException e) {
-          // nothing  
-        }
-      }
+      tapeFileName = new File(fileName).getAbsolutePath();
 
       doorCloseSound.start();
       doorOpen = false;
@@ -416,8 +333,75 @@ public class HP9865A extends IOdevice implements ActionListener
     return(false);
   }
 
+  // read complete tape into memory and build index of control words
+  private boolean loadTape()
+  {
+    try {
+      byte[] bytes = new byte[(int)tapeFile.length() & ~1];
+      tapeFile.seek(0);
+      tapeFile.readFully(bytes);
+      tapeLength = bytes.length / 2;
+      tapeWords = new short[tapeLength + 1024]; // reserve space for appending
+      ByteBuffer.wrap(bytes).asShortBuffer().get(tapeWords, 0, tapeLength);
+    } catch (IOException e) {
+      System.err.println(e.toString());
+      closeTapeFile();
+      return(false);
+    }
+
+    controlWords = new BitSet(tapeLength);
+    for(int i = 0; i < tapeLength; i++) {
+      if((tapeWords[i] & 0x100) != 0)
+        controlWords.set(i);
+    }
+
+    headPosition = 0;
+    dirtyStart = Integer.MAX_VALUE;
+    dirtyEnd = 0;
+
+    return(true);
+  }
+
+  private void writeWord(int pos, int value)
+  {
+    if(pos >= tapeWords.length)
+      tapeWords = Arrays.copyOf(tapeWords, 2 * tapeWords.length);
+
+    tapeWords[pos] = (short)value;
+    controlWords.set(pos, (value & 0x100) != 0);
+
+    if(pos >= tapeLength)
+      tapeLength = pos + 1;
+
+    if(pos < dirtyStart)
+      dirtyStart = pos;
+    if(pos >= dirtyEnd)
+      dirtyEnd = pos + 1;
+  }
+
+  // write modified range of tape back to tapeFile
+  public void flush()
+  {
+    if(tapeFile == null || dirtyStart >= dirtyEnd)
+      return;
+
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(2 * (dirtyEnd - dirtyStart));
+      buffer.asShortBuffer().put(tapeWords, dirtyStart, dirtyEnd - dirtyStart);
+      tapeFile.seek(2L * dirtyStart);
+      tapeFile.write(buffer.array());
+    } catch (IOException e) {
+      System.err.println(e.toString());
+    }
+
+    dirtyStart = Integer.MAX_VALUE;
+    dirtyEnd = 0;
+  }
+
   public boolean closeTapeFile()
   {
+    flush();
+
     if(tapeFile != null) {
       try {
         tapeFile.close();
@@ -425,6 +409,8 @@ public class HP9865A extends IOdevice implements ActionListener
       } catch (IOException e) { }
     }
 
+    tapeFileName = null;
+
     stopTape();
     hp9865Interface.status = driveStatus = POWER_ON | CASSETTE_OUT | WRITE_PROTECT;
     cassLoaded = false;
@@ -556,10 +542,8 @@ public class HP9865A extends IOdevice implements ActionListener
         g2d.setColor(Color.GREEN);
     }
 
-    try {
-			tapePosition = (int)(maxPosition * tapeFile.getFilePointer() / tapeFile.length());
-		} catch (IOException e) {
-		}
+    if(tapeLength != 0)
+      tapePosition = (int)((long)maxPosition * headPosition / tapeLength);
     
     g2d.drawRect(xTapeStatus, yTapeStatus, maxPosition, 10);
     g2d.fillRect(xTapeStatus, yTapeStatus, tapePosition, 10);
@@ -587,6 +571,52 @@ public class HP9865A extends IOdevice implements ActionListener
     //}
   }
 
+  // write cassette file, head position and drive status into machine snapshot
+  // the tape contents are not part of the snapshot, they are written back to the cassette file
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    flush();
+
+    out.writeBoolean(tapeFileName != null);
+    if(tapeFileName != null)
+      out.writeUTF(tapeFileName);
+
+    out.writeInt(headPosition);
+    out.writeInt(driveStatus);
+    out.writeInt(tapeCommand);
+    out.writeInt(prevCommand);
+    out.writeBoolean(runFlag);
+    out.writeBoolean(rewindFlag);
+    out.writeBoolean(inByteReady);
+    out.writeBoolean(outByteReady);
+    out.writeInt(hp9865Interface.tapeValue);
+  }
+
+  // reload cassette and restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    String fileName = in.readBoolean() ? in.readUTF() : null;
+    int headPosition = in.readInt();
+    int driveStatus = in.readInt();
+
+    closeTapeFile();
+    if(fileName != null && !openTapeImage(fileName, (driveStatus & WRITE_PROTECT) != 0)) {
+      System.err.println("HP9865A: Cassette " + fileName + " not restored");
+      return;
+    }
+
+    this.headPosition = Math.min(headPosition, tapeLength);
+    this.driveStatus = driveStatus;
+    tapeCommand = in.readInt();
+    prevCommand = in.readInt();
+    runFlag = in.readBoolean();
+    rewindFlag = in.readBoolean();
+    inByteReady = in.readBoolean();
+    outByteReady = in.readBoolean();
+    hp9865Interface.tapeValue = in.readInt();
+    repaint();
+  }
+
   public void setStatusPanel(JPanel panel, int x, int y)
   {
     tapeStatusPanel = panel;
@@ -599,7 +629,7 @@ public class HP9865A extends IOdevice implements ActionListener
    */
   public int executeCommand()
   {
-    long pos;
+    int pos;
     int ioByte;
 
     if(!runFlag)
@@ -624,101 +654,109 @@ public class HP9865A extends IOdevice implements ActionListener
         return(driveStatus);  // no
     }
 
-    try {
-      pos = tapeFile.getFilePointer();
+    pos = headPosition;
 
-      if((tapeCommand & REVERSE) != 0) {
-        pos -= 2;
+    if((tapeCommand & REVERSE) != 0) {
+      pos--;
 
-        if(pos < 0) {
-          if(debug)
-            ioInterface.mainframe.console.append("HP9865A Begin of tape\n");
+      if(pos < 0) {
+        if(debug)
+          ioInterface.mainframe.console.append("HP9865A Begin of tape\n");
 
-          // generate SRQ only in control mode
-          if((tapeCommand & CONTROL) != 0) {
-            hp9865Interface.requestInterrupt(); 
-          }
+        // generate SRQ only in control mode
+        if((tapeCommand & CONTROL) != 0) {
+          hp9865Interface.requestInterrupt(); 
+        }
 
-          stopTape();
+        stopTape();
 
-          // return CLEAR_LEADER only once
-          driveStatus |= CLEAR_LEADER;
-          return(driveStatus);
-        } else
+        // return CLEAR_LEADER only once
+        driveStatus |= CLEAR_LEADER;
+        return(driveStatus);
+      }
+    }
 
-          tapeFile.seek(pos);
+    if((tapeCommand & WRITE) != 0) {
+      if((driveStatus & WRITE_PROTECT) != 0) {
+        // write error, "eject" tape
+        System.err.println("HP9865A: Cassette is write protected");
+        closeTapeFile();
+
+        driveStatus = CASSETTE_OUT | WRITE_PROTECT | POWER_ON;
+        return(driveStatus);
       }
 
-      if((tapeCommand & WRITE) != 0) {
-        ioByte = hp9865Interface.tapeValue;
+      ioByte = hp9865Interface.tapeValue;
 
-        // set control bit
-        if((tapeCommand & CONTROL) != 0)
-          ioByte |= 0x100;
+      // set control bit
+      if((tapeCommand & CONTROL) != 0)
+        ioByte |= 0x100;
 
-        tapeFile.writeShort(ioByte);
-        outByteReady = false;
-        // clear CEO when byte is written
-        ioInterface.ioUnit.CEO = false;
+      writeWord(pos, ioByte);
+      outByteReady = false;
+      // clear CEO when byte is written
+      ioInterface.ioUnit.CEO = false;
 
-        if(debug)
-          ioInterface.mainframe.console.append("HP9865A write " + pos + ": " + Integer.toHexString(ioByte) + "\n");
+      if(debug)
+        ioInterface.mainframe.console.append("HP9865A write " + 2 * pos + ": " + Integer.toHexString(ioByte) + "\n");
+
+    } else { // READ
+
+      // in forward control mode skip all data words up to the next control word
+      // reverse search is kept word by word, as the calculator backs up by timed reverse movements
+      if((tapeCommand & (CONTROL | REVERSE)) == CONTROL && pos < tapeLength && !controlWords.get(pos)) {
+        pos = controlWords.nextSetBit(pos);
+        if(pos < 0 || pos >= tapeLength)
+          pos = tapeLength;
+      }
 
-      } else { // READ
+      if(pos >= tapeLength) {
+        headPosition = tapeLength;
 
-        ioByte = tapeFile.readShort();
+        // at EOF set status to end-of-tape, tape will be stopped by mainframe command
         if(debug)
-          ioInterface.mainframe.console.append("HP9865A  read " + pos + ": " + Integer.toHexString(ioByte) + "\n");
+          ioInterface.mainframe.console.append("HP9865A End of tape\n");
 
-        // in control mode read until control byte found
-        if(((tapeCommand & CONTROL) != 0) && ((ioByte & 0x100) == 0)) {
-          inByteReady = false;
-        } else {
-          hp9865Interface.tapeValue = ioByte & 0xff;
-          inByteReady = true;
-          // generate SRQ only in control mode and when control char found
-          if(((tapeCommand & CONTROL) != 0) && ((ioByte & 0x100) != 0)) {
-            hp9865Interface.requestInterrupt();
-          }
+        // generate SRQ only in control mode
+        if((tapeCommand & CONTROL) != 0) {
+          hp9865Interface.requestInterrupt();
         }
-      }
 
-      if((tapeCommand & REVERSE) != 0) {
-        tapeFile.seek(pos);
-      }
+        // clear CEO required
+        ioInterface.mainframe.ioUnit.CEO = false;
 
-      return(driveStatus);
+        // return CLEAR_LEADER only once
+        driveStatus |= CLEAR_LEADER;
+        return(driveStatus);
+      }
 
-    } catch (EOFException e) {
-      // at EOF set status to end-of-tape, tape will be stopped by mainframe command
+      ioByte = tapeWords[pos];
       if(debug)
-        ioInterface.mainframe.console.append("HP9865A End of tape\n");
+        ioInterface.mainframe.console.append("HP9865A  read " + 2 * pos + ": " + Integer.toHexString(ioByte) + "\n");
 
-      // generate SRQ only in control mode
-      if((tapeCommand & CONTROL) != 0) {
-        hp9865Interface.requestInterrupt();
+      // in control mode read until control byte found
+      if(((tapeCommand & CONTROL) != 0) && ((ioByte & 0x100) == 0)) {
+        inByteReady = false;
+      } else {
+        hp9865Interface.tapeValue = ioByte & 0xff;
+        inByteReady = true;
+        // generate SRQ only in control mode and when control char found
+        if(((tapeCommand & CONTROL) != 0) && ((ioByte & 0x100) != 0)) {
+          hp9865Interface.requestInterrupt();
+        }
       }
-
-      // clear CEO required
-      ioInterface.mainframe.ioUnit.CEO = false;
-
-      // return CLEAR_LEADER only once
-      driveStatus |= CLEAR_LEADER;
-      return(driveStatus);
-
-    } catch (IOException e) {
-      // read error, close file and "eject" tape
-      System.err.println(e.toString());
     }
 
-    closeTapeFile();
+    headPosition = (tapeCommand & REVERSE) != 0 ? pos : pos + 1;
 
-    driveStatus = CASSETTE_OUT | WRITE_PROTECT | POWER_ON;
     return(driveStatus);
   }
 
   public void stopTape()
   {
+    // write back tape contents when motor stops
+    flush();
+
     // stop motor and set timer to idle value
     if(motorSound != null) {
       motorSound.stop();
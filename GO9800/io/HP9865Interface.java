@@ -31,6 +31,7 @@
  * 03.04.2010 Rel. 1.50 Inheritance from IOinterface and initialization completely reworked
  * 08.11.2014 Rel. 1.61 Timing problem on some hosts fixed (too small SLOW_TIMER may result in ERROR 59)
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: Device timer action moved from run() to timerExpired() for DeviceScheduler
  */
 
 package io;
@@ -63,39 +64,30 @@ public class HP9865Interface extends IOinterface
     hp9865a = (HP9865A)ioDev;
   }
 
-  public void run()
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
   {
-    while(true) {
-      // sleep until interrupted by IO-instruction
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-        // restart timer with (changed) timerValue
-        continue;
-      }
+    // asynchronous execution of tape command
+    status = hp9865a.executeCommand();
+
+    // don't put driveStatus on bus here!
+    // this may destroy actual tape command
+
+    synchronized(ioUnit) {
+      if(ioUnit.getSelectCode() == selectCode) {
+        if(ioUnit.CEO) {
+          // CFI set?
+          if(hp9865a.inByteReady) {
+            // load input value to IO-register and keep status!!
+            ioUnit.setData(tapeValue);
+            hp9865a.inByteReady = false;
 
-      // asynchronous execution of tape command
-      status = hp9865a.executeCommand();
-
-      // don't put driveStatus on bus here!
-      // this may destroy actual tape command
-
-      synchronized(ioUnit) {
-        if(ioUnit.getSelectCode() == selectCode) {
-          if(ioUnit.CEO) {
-            // CFI set?
-            if(hp9865a.inByteReady) {
-              // load input value to IO-register and keep status!!
-              ioUnit.setData(tapeValue);
-              hp9865a.inByteReady = false;
-
-              // clear CEO by CFI
-              ioUnit.CEO = false;
-            } else {
-              // get IO data for write command
-              tapeValue = ioUnit.getData();
-              hp9865a.outByteReady = true;
-            }
+            // clear CEO by CFI
+            ioUnit.CEO = false;
+          } else {
+            // get IO data for write command
+            tapeValue = ioUnit.getData();
+            hp9865a.outByteReady = true;
           }
         }
       }
@@ -23,6 +23,9 @@
  * 20.11.2011 Rel. 1.51 SHIFT+DELETE key resizes window to default
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
+ * 17.10.2026 Rel. 2.60 Added writeOutput() for batch runs
+ * 17.10.2026 Rel. 2.60 Lines stored in PrintLineStore, rendering with glyph atlas into scrolling page strip (PrintStrip)
+ * 17.10.2026 Rel. 2.60 Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
@@ -30,7 +33,10 @@ package io;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.print.*;
-import java.util.Vector;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -177,13 +183,13 @@ public class HP9866A extends IOdevice implements Printable, ActionListener
 	// HP9866A/B print width: 8" (80 chars)
 	double REAL_W = 8.0, REAL_H = 5.0;
 
-	Image[] printMatrix;
+	PrintStrip printStrip;
 
 	private static final long serialVersionUID = 1L;
 	HP9866Interface hp9866Interface;
 	//Image hp9866aImage;
 	SoundMedia fanSound, printSound;
-	Vector<StringBuffer> printBuffer;
+	PrintLineStore printBuffer = new PrintLineStore();
 	StringBuffer lineBuffer;
 	private int printDotHeight = 1, printDotWidth = 1;
 	private Color printColor, paperColor;
@@ -203,6 +209,9 @@ public class HP9866A extends IOdevice implements Printable, ActionListener
 		printColor = Color.BLUE;
 		page = 0;
 
+		printStrip = new PrintStrip(printMatrixValues, numChars, false, printColor, paperColor);
+		makeFont(printDotHeight);
+
 		initializeBuffer();
 
 		// set Printable
@@ -451,37 +460,12 @@ public class HP9866A extends IOdevice implements Printable, ActionListener
 
 	private void makeFont(int printDotHeight)
 	{
-		Graphics printGraphics;
-
-		// make images for character matrices
-		for(int i = 0; i < numChars ; i++) {
-			printMatrix[i] = createImage(5 * printDotHeight, 7 * printDotHeight);
-			printGraphics = printMatrix[i].getGraphics();
-			printGraphics.setColor(paperColor);
-			printGraphics.fillRect(0, 0, 5 * printDotHeight, 7 * printDotHeight);
-
-			printGraphics.setColor(printColor);
-			for(int x = 0; x < 5; x++) {
-				int printColumn = printMatrixValues[i][x];
-
-				for(int y = 6; y >= 0; y--) {
-					if((printColumn & 1) != 0) {
-						if(printDotWidth < 3)
-							printGraphics.fillRect(x * printDotHeight, y * printDotHeight, printDotWidth, printDotHeight);
-						else
-							printGraphics.fillOval(x * printDotHeight, y * printDotHeight, printDotWidth, printDotHeight);
-					}
-
-					printColumn >>= 1;
-				}
-			}
-		}
+		// make glyph atlas for actual dot size
+		printStrip.makeFont(printDotHeight, printDotWidth);
 	}
 
 	public int print(Graphics g, PageFormat pf, int page)
 	{
-		String printLine;
-		int charCode;
 		double scale;
 
 		Graphics2D g2d = (Graphics2D)g;
@@ -511,19 +495,13 @@ public class HP9866A extends IOdevice implements Printable, ActionListener
 		g2d.setColor(printColor);
 
 		for(int i = 0; i < numLines; i++) {
-			printLine = printBuffer.elementAt(i).toString();
-
 			// is print y-position in visible area? If no: skip line
 			if(y >= yTop) {
 				// is print y-position below lowest visible dot row? If yes: page is done
 				if(y >= yBottom) 
 					break; 
 
-				for(int j = 0; j < printLine.length(); j++) {
-					charCode = (int)printLine.charAt(j) & 0x7f;
-					if(j < 80)
-						g2d.drawImage(printMatrix[charCode], x + j * (7 * printDotHeight), y, 5 * printDotHeight, 7 * printDotHeight, this);
-				}
+				printStrip.drawLine(g2d, printBuffer, i, x, y);
 			}
 			y += 10 * printDotHeight;  // advance one character line (10 dot rows)
 		}
@@ -534,44 +512,15 @@ public class HP9866A extends IOdevice implements Printable, ActionListener
 
 	public void paint(Graphics g)
 	{
-		String printLine;
-		int charCode;
-
-		if(printMatrix == null) {
-			// create LED matrix images once
-			printMatrix = new Image[128];
-
-			makeFont(printDotHeight);
-		}
-
 		super.paint(g);
 		setScale(false, true);
 		int unscaledHeight = (int)((getHeight() - getInsets().top - getInsets().bottom) / heightScale);
 
 		int x = 4;    // leftmost print positon
-		int yTop = 0; // topmost print dot position
 		int yBottom = unscaledHeight - 8;  // lowest print dot positon
-		int windowDotRows = yBottom - yTop;  // # dot rows in output area
-		int y = yBottom + page * windowDotRows;  // y-position of actual displayed page
-
-		g2d.setColor(Color.WHITE);
-		g2d.fillRect(0, 0, NORMAL_W, unscaledHeight);
-
-		g2d.setColor(printColor);
-
-		for(int i = numLines - 1; i >= 0; i--) {
-			printLine = printBuffer.elementAt(i).toString();
-
-			y -= 10 * printDotHeight;  // advance one character line (10 dot rows)
-			if(y > yBottom) continue;  // is print y-position below lowest visible dot row? If yes: try next line
-			if(y < yTop - 10 * printDotHeight) break;  // is print y-position above highest visible dot row? If yes: we are done
 
-			for(int j = 0; j < printLine.length(); j++) {
-				charCode = (int)printLine.charAt(j) & 0x7f;
-				if(j < 80)
-					g2d.drawImage(printMatrix[charCode], x + j * (7 * printDotHeight), y, 5 * printDotHeight, 7 * printDotHeight, this);
-			}
-		}
+		// only new lines are rendered into the strip while printing
+		g2d.drawImage(printStrip.render(printBuffer, NORMAL_W, Math.max(1, unscaledHeight), page, x, yBottom), 0, 0, null);
 	}
 
 	public void initializeBuffer()
@@ -579,7 +528,8 @@ public class HP9866A extends IOdevice implements Printable, ActionListener
 		numLines = 0;
 		numDotRows = 0;
 		lineBuffer = new StringBuffer();
-		printBuffer = new Vector<StringBuffer>();
+		printBuffer.clear();
+		printStrip.invalidate();
 	}
 
 	public int output(int status, int value)
@@ -595,7 +545,7 @@ public class HP9866A extends IOdevice implements Printable, ActionListener
 			hp9866Interface.timerValue = 270;
 
 			numLines++;
-			printBuffer.addElement(lineBuffer);
+			printBuffer.add(lineBuffer);
 			lineBuffer = new StringBuffer();
 			setVisible(true);
 			repaint();
@@ -607,6 +557,46 @@ public class HP9866A extends IOdevice implements Printable, ActionListener
 		return(IOunit.devStatusReady);
 	}
 
+	// write printed lines and actual line into machine snapshot
+	public void saveState(DataOutputStream out) throws IOException
+	{
+		out.writeInt(numDotRows);
+		out.writeUTF(lineBuffer.toString());
+		printBuffer.write(out);
+	}
+
+	// restore printed lines written by saveState()
+	public void restoreState(DataInputStream in) throws IOException
+	{
+		initializeBuffer();
+		numDotRows = in.readInt();
+		lineBuffer.append(in.readUTF());
+		printBuffer.read(in);
+		numLines = printBuffer.size();
+		repaint();
+	}
+
+	// write printed lines without control characters
+	public boolean writeOutput(PrintStream out)
+	{
+		String printLine;
+		StringBuffer text = new StringBuffer();
+
+		for(int i = 0; i < numLines; i++) {
+			printLine = printBuffer.getText(i);
+			text.setLength(0);
+
+			for(int j = 0; j < printLine.length(); j++) {
+				if(printLine.charAt(j) >= ' ')
+					text.append(printLine.charAt(j));
+			}
+
+			out.println(text);
+		}
+
+		return(true);
+	}
+
 	public void close()
 	{
 		// stop all sound threads
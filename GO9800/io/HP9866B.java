@@ -23,6 +23,9 @@
  * 20.11.2011 Rel. 1.51 SHIFT+DELETE key resizes window to default
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
+ * 17.10.2026 Rel. 2.60 Added writeOutput() for batch runs
+ * 17.10.2026 Rel. 2.60 Lines stored in PrintLineStore, rendering with glyph atlas into scrolling page strip (PrintStrip)
+ * 17.10.2026 Rel. 2.60 Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
@@ -30,7 +33,10 @@ package io;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.print.*;
-import java.util.Vector;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -176,13 +182,12 @@ public class HP9866B extends IOdevice implements Printable, ActionListener
   // HP9866A/B print width: 8" (80 chars)
   double REAL_W = 8.0, REAL_H = 5.0;
 
-  Image[] printMatrix;
-  Image printDot;
+  PrintStrip printStrip;
 
   private static final long serialVersionUID = 1L;
   HP9866Interface hp9866Interface;
   SoundMedia fanSound, printSound;
-  Vector<StringBuffer> printBuffer;
+  PrintLineStore printBuffer = new PrintLineStore();
   StringBuffer lineBuffer;
   private int printDotHeight = 1, printDotWidth = 1;
   private Color printColor, paperColor;
@@ -202,6 +207,9 @@ public class HP9866B extends IOdevice implements Printable, ActionListener
     paperColor = Color.WHITE;
     printColor = Color.BLUE;
 
+    printStrip = new PrintStrip(printMatrixValues, numChars, true, printColor, paperColor);
+    makeFont(printDotHeight);
+
     initializeBuffer();
     page = 0;
 
@@ -451,46 +459,12 @@ public class HP9866B extends IOdevice implements Printable, ActionListener
 
   private void makeFont(int printDotHeight)
   {
-    Graphics printGraphics;
-
-    // make image for one graphics dot
-    printDot = createImage(printDotHeight, printDotHeight);
-    printGraphics = printDot.getGraphics();
-    printGraphics.setColor(printColor);
-    if(printDotWidth < 3)
-      printGraphics.fillRect(0, 0, printDotWidth, printDotHeight);
-    else
-      printGraphics.fillOval(0, 0, printDotWidth, printDotHeight);
-
-    // make images for character matrices
-    for(int i = 0; i < numChars ; i++) {
-      printMatrix[i] = createImage(5 * printDotHeight, 7 * printDotHeight);
-      printGraphics = printMatrix[i].getGraphics();
-      printGraphics.setColor(paperColor);
-      printGraphics.fillRect(0, 0, 5 * printDotHeight, 7 * printDotHeight);
-
-      printGraphics.setColor(printColor);
-      for(int x = 0; x < 5; x++) {
-        int printColumn = printMatrixValues[i][x];
-
-        for(int y = 6; y >= 0; y--) {
-          if((printColumn & 1) != 0) {
-            if(printDotWidth < 3)
-              printGraphics.fillRect(x * printDotHeight, y * printDotHeight, printDotWidth, printDotHeight);
-            else
-              printGraphics.fillOval(x * printDotHeight, y * printDotHeight, printDotWidth, printDotHeight);
-          }
-
-          printColumn >>= 1;
-        }
-      }
-    }
+    // make glyph atlas for actual dot size
+    printStrip.makeFont(printDotHeight, printDotWidth);
   }
 
   public int print(Graphics g, PageFormat pf, int page)
   {
-    String printLine;
-    int charCode, charPos;
     double scale;
 
     Graphics2D g2d = (Graphics2D)g;
@@ -520,51 +494,20 @@ public class HP9866B extends IOdevice implements Printable, ActionListener
     g2d.setColor(printColor);
 
     for(int i = 0; i < numLines; i++) {
-      printLine = printBuffer.elementAt(i).toString();
+      // is print y-position in visible area? If no: skip line
+      if(y >= yTop) {
+        // is print y-position below lowest visible dot row? If yes: page is done
+        if(y >= yBottom) 
+          break; 
+
+        printStrip.drawLine(g2d, printBuffer, i, x, y);
+      }
 
       // graphics mode (line contains DC1)?
-      if(printLine.indexOf(17) >= 0) {
-        // is print y-position in visible area? If no: skip line
-        if(y >= yTop) {
-          // is print y-position below lowest visible dot row? If yes: page is done
-          if(y >= yBottom) 
-            break; 
-
-          charPos = 0;
-
-          for(int j = 0; j < printLine.length(); j++) {
-            charCode = (int)printLine.charAt(j);
-            switch(charCode) {
-            case 17: continue;  // ignore DC1
-            case 10:
-            case 13: break;  // line end
-            default:
-              // print 5 dot columns
-              for(int c = 0; c < 5; c++) {
-                if((charCode & (0x10 >> c)) != 0 && charPos < 80) {
-                  g2d.drawImage(printDot, x + (charPos * 7 + c) * printDotHeight, y, printDotHeight, printDotHeight, this);
-                }
-              }
-              charPos++;
-            }
-          }
-        }
+      if(printStrip.isGraphicsLine(printBuffer, i))
         y += printDotHeight;  // advance one dot row
-      } else { // text mode
-        // is print y-position in visible area? If no: skip line
-        if(y >= yTop) {
-          // is print y-position below lowest visible dot row? If yes: page is done
-          if(y >= yBottom) 
-            break; 
-
-          for(int j = 0; j < printLine.length(); j++) {
-            charCode = (int)printLine.charAt(j) & 0x7f;
-            if(j < 80)
-              g2d.drawImage(printMatrix[charCode], x + j * (7 * printDotHeight), y, 5 * printDotHeight, 7 * printDotHeight, this);
-          }
-        }
+      else
         y += 10 * printDotHeight;  // advance one character line (10 dot rows)
-      }
     }
 
     return(PAGE_EXISTS);
@@ -573,70 +516,15 @@ public class HP9866B extends IOdevice implements Printable, ActionListener
 
   public void paint(Graphics g)
   {
-    String printLine;
-    int charCode, charPos;
-
-    if(printMatrix == null) {
-      // create LED matrix images once
-      printMatrix = new Image[128];
-
-      makeFont(printDotHeight);
-    }
-
     super.paint(g);
     setScale(false, true);
     unscaledHeight = (int)((getHeight() - getInsets().top - getInsets().bottom) / heightScale);
 
     int x = 4;    // leftmost print positon
-    int yTop = 0; // topmost print dot position
     int yBottom = unscaledHeight - 8;  // lowest print dot positon
-    int windowDotRows = yBottom - yTop;  // # dot rows in output area
-    int y = yBottom + page * windowDotRows;  // y-position of actual displayed page
-
-    g2d.setColor(Color.WHITE);
-    g2d.fillRect(0, 0, NORMAL_W, unscaledHeight);
-
-    g2d.setColor(printColor);
 
-    for(int i = numLines - 1; i >= 0; i--) {
-      printLine = printBuffer.elementAt(i).toString();
-
-      // graphics mode (line contains DC1)?
-      if(printLine.indexOf(17) >= 0) {
-        y -= printDotHeight;  // advance one dot row
-        if(y > yBottom) continue;  // is print y-position below lowest visible dot row? If yes: try next line
-        if(y < yTop) break;  // is print y-positon above highest visible dot row? If yes: we are done
-
-        charPos = 0;
-
-        for(int j = 0; j < printLine.length(); j++) {
-          charCode = (int)printLine.charAt(j);
-          switch(charCode) {
-          case 17: continue;  // ignore DC1
-          case 10:
-          case 13: break;  // line end
-          default:
-            // print 5 dot columns
-            for(int c = 0; c < 5; c++) {
-              if((charCode & (0x10 >> c)) != 0 && charPos < 80) {
-                g2d.drawImage(printDot, x + (charPos * 7 + c) * printDotHeight, y, printDotHeight, printDotHeight, this);
-              }
-            }
-            charPos++;
-          }
-        }
-      } else { // text mode
-        y -= 10 * printDotHeight;  // advance one character line (10 dot rows)
-        if(y > yBottom) continue;  // is print y-position below lowest visible dot row? If yes: try next line
-        if(y < yTop - 10 * printDotHeight) break;  // is print y-position above highest visible dot row? If yes: we are done
-
-        for(int j = 0; j < printLine.length(); j++) {
-          charCode = (int)printLine.charAt(j) & 0x7f;
-          if(j < 80)
-            g2d.drawImage(printMatrix[charCode], x + j * (7 * printDotHeight), y, 5 * printDotHeight, 7 * printDotHeight, this);
-        }
-      }
-    }
+    // only new lines are rendered into the strip while printing
+    g2d.drawImage(printStrip.render(printBuffer, NORMAL_W, Math.max(1, unscaledHeight), page, x, yBottom), 0, 0, null);
   }
 
   public void initializeBuffer()
@@ -644,7 +532,8 @@ public class HP9866B extends IOdevice implements Printable, ActionListener
     numLines = 0;
     numDotRows = 0;
     lineBuffer = new StringBuffer();
-    printBuffer = new Vector<StringBuffer>();
+    printBuffer.clear();
+    printStrip.invalidate();
   }
 
   public int output(int status, int value)
@@ -667,7 +556,7 @@ public class HP9866B extends IOdevice implements Printable, ActionListener
       }
 
       numLines++;
-      printBuffer.addElement(lineBuffer);
+      printBuffer.add(lineBuffer);
       lineBuffer = new StringBuffer();
       repaint();
 
@@ -679,6 +568,46 @@ public class HP9866B extends IOdevice implements Printable, ActionListener
   }
 
 
+  // write printed lines and actual line into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    out.writeInt(numDotRows);
+    out.writeUTF(lineBuffer.toString());
+    printBuffer.write(out);
+  }
+
+  // restore printed lines written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    initializeBuffer();
+    numDotRows = in.readInt();
+    lineBuffer.append(in.readUTF());
+    printBuffer.read(in);
+    numLines = printBuffer.size();
+    repaint();
+  }
+
+  // write printed lines without control characters
+  public boolean writeOutput(PrintStream out)
+  {
+    String printLine;
+    StringBuffer text = new StringBuffer();
+
+    for(int i = 0; i < numLines; i++) {
+      printLine = printBuffer.getText(i);
+      text.setLength(0);
+
+      for(int j = 0; j < printLine.length(); j++) {
+        if(printLine.charAt(j) >= ' ')
+          text.append(printLine.charAt(j));
+      }
+
+      out.println(text);
+    }
+
+    return(true);
+  }
+
   public void close()
   {
     // stop all sound threads
@@ -28,10 +28,16 @@
  * 10.01.2009 Rel. 1.33 Added speed toggle
  * 03.04.2010 Rel. 1.50 Inheritance from IOinterface and initialization completely reworked
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: Device timer action moved from run() to timerExpired() for DeviceScheduler
+ * 17.10.2026 Rel. 2.60: Added saveState() and restoreState() for machine snapshots
 */
 
 package io;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import emu98.IOunit;
 
 public class HP9866Interface extends IOinterface
@@ -52,29 +58,35 @@ public class HP9866Interface extends IOinterface
     hp9866 = ioDev;
   }
   
-  public void run()
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
   {
-    while(true) {
-      // sleep until interrupted by IO-instruction
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-        continue;
-      }
-      
-      // put printer in ready status after delay of 270ms
-      synchronized(ioUnit) {
-        if(delay) {
-          status |= IOunit.devStatusReady;
-          ioUnit.CEO = false; // reset CEO for HP9810A Typewriter ROM
-          delay = false;
-        }
+    // put printer in ready status after delay of 270ms
+    synchronized(ioUnit) {
+      if(delay) {
+        status |= IOunit.devStatusReady;
+        ioUnit.CEO = false; // reset CEO for HP9810A Typewriter ROM
+        delay = false;
       }
-      
-      timerValue = 1000;
     }
+    
+    timerValue = 1000;
   }
   
+  // write printer delay into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    super.saveState(out);
+    out.writeBoolean(delay);
+  }
+
+  // restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    super.restoreState(in);
+    delay = in.readBoolean();
+  }
+
   public boolean input()
   {
     debug = mainframe.console.getDebugMode();
@@ -101,7 +113,7 @@ public class HP9866Interface extends IOinterface
       status = hp9866.output(ioUnit.getStatus(), ioUnit.getData());
       // restart timer for printer status
       timerValue = highSpeed? 0 : timerValue;
-      devThread.interrupt(); // trigger run() method
+      restartTimer(); // timerExpired() sets ready status after delay
 
       if(status == 0) {
         delay = true;
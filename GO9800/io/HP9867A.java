@@ -342,7 +342,7 @@ public class HP9867A extends IOdevice
       for(address = 0; address < 0400; address++) {
         if((mode & 1) != 0) {
           // read mode
-          ioInterface.mainframe.memory[077000 + address].setValue(diskFile.readShort());
+          ioInterface.mainframe.memory.setValue(077000 + address, diskFile.readShort());
         } else {
           // write mode
           // is drive write protected?
@@ -354,7 +354,7 @@ public class HP9867A extends IOdevice
               return(HP11305A.POWER_ON);
           }
 
-          diskFile.writeShort(ioInterface.mainframe.memory[077000 + address].getValue());
+          diskFile.writeShort(ioInterface.mainframe.memory.getValue(077000 + address));
         }
       }
     } catch (IOException e) {
@@ -27,6 +27,11 @@
  * 28.10.2017 Rel. 2.10 Added new linking between Mainframe and other components
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
  * 04.06.2019 Rel. 2.30 Changed to support of HP9867B only 
+ * 17.10.2026 Rel. 2.60 Added openDiskFile(fileName) for loading without FileDialog
+ * 17.10.2026 Rel. 2.60 Changed cartridge access to memory-mapped file with bulk sector transfers, write-back by flush() or unload
+ * 17.10.2026 Rel. 2.60 Replaced flat 10ms sleep by drive model with seek, rotational latency and transfer time
+ * 17.10.2026 Rel. 2.60 Added saveState() and restoreState() for machine snapshots
+ * 17.10.2026 Rel. 2.60 Added accessible(), failing commands have no access time
  */
 
 package io;
@@ -34,6 +39,9 @@ package io;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -94,7 +102,14 @@ public class HP9867B extends IOdevice implements ActionListener
   boolean driveProtectU = false;
   private boolean highSpeed;
   boolean backgroundImage = false;
-  static int time_10ms = 10;
+
+  // mechanical model of drive, both disks share one head positioner, times in microseconds
+  static final int REVOLUTION_TIME = 25000; // 2400 rpm
+  static final int SECTOR_TIME = REVOLUTION_TIME / 24;
+  static final int SEEK_SETTLE_TIME = 5000; // minimum seek time incl. head settling
+  static final int SEEK_CYLINDER_TIME = 250; // additional seek time per cylinder
+  int currentCylinder = 0;
+  long accesses, seeks, seekTime, latencyTime; // statistics
 
   public HP9867B(int drive, IOinterface ioInterface)
   {
@@ -241,6 +256,73 @@ public class HP9867B extends IOdevice implements ActionListener
   }
 
 
+  // time for seek, rotational latency and transfer of one record (2 sectors) when started at time now
+  public int accessTime(int cylinder, int sector, long now)
+  {
+    int time = 0, latency;
+
+    if(highSpeed || cylinder > 202 || sector > 22)
+      return(0);
+
+    if(cylinder != currentCylinder) {
+      time = SEEK_SETTLE_TIME + Math.abs(cylinder - currentCylinder) * SEEK_CYLINDER_TIME;
+      currentCylinder = cylinder;
+      seeks++;
+      seekTime += time;
+    }
+
+    // wait until start of sector passes the head
+    latency = (int)((sector * SECTOR_TIME - (now + time) % REVOLUTION_TIME + REVOLUTION_TIME) % REVOLUTION_TIME);
+    latencyTime += latency;
+    accesses++;
+
+    return(time + latency + 2 * SECTOR_TIME);
+  }
+
+  public String getStatistics()
+  {
+    long busyTime = seekTime + latencyTime + accesses * 2 * SECTOR_TIME;
+
+    return(accesses + " records, " + seeks + " seeks, busy " + busyTime / 1000 + "ms (seek " + seekTime / 1000 + "ms, latency " + latencyTime / 1000 + "ms)");
+  }
+
+  // write head position, drive status and cartridge files into machine snapshot
+  // the cartridge contents are not part of the snapshot, they are written back to the cartridge files
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    out.writeInt(currentCylinder);
+    out.writeBoolean(doorUnlocked);
+    out.writeBoolean(driveReady);
+
+    for(int i = 0; i < 2; i++) {
+      disks[i].flush();
+      out.writeBoolean(disks[i].fileName != null);
+      if(disks[i].fileName != null)
+        out.writeUTF(disks[i].fileName);
+    }
+  }
+
+  // reload cartridges and restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    currentCylinder = in.readInt();
+    boolean doorUnlocked = in.readBoolean();
+    boolean driveReady = in.readBoolean();
+
+    for(int i = 0; i < 2; i++) {
+      String fileName = in.readBoolean() ? in.readUTF() : null;
+
+      if(fileName == null)
+        disks[i].closeDiskFile();
+      else if(!fileName.equals(disks[i].fileName) && !disks[i].openDiskFile(fileName))
+        System.err.println("HP9867B: Cartridge " + fileName + " not restored");
+    }
+
+    this.doorUnlocked = doorUnlocked;
+    this.driveReady = driveReady;
+    repaint();
+  }
+
   class windowListener extends WindowAdapter
   {
     public void windowClosing(WindowEvent event)
@@ -251,7 +333,13 @@ public class HP9867B extends IOdevice implements ActionListener
   
   public class Disk
   {
+  	static final int DISC_SIZE = 2 * 203 * 24 * 256; // size of cartridge file in bytes
+
   	RandomAccessFile diskFile;
+  	MappedByteBuffer diskImage; // cartridge file mapped into memory
+  	ShortBuffer diskWords; // 16-bit word view of diskImage
+  	boolean modified; // true if sectors were written since last flush()
+  	String fileName; // path of cartridge file, null if no cartridge loaded
   	int unit;
 
   	public Disk(int unit)
@@ -259,11 +347,39 @@ public class HP9867B extends IOdevice implements ActionListener
   		this.unit = unit;
   		// load standard disc file
   		try{
-  			diskFile = new RandomAccessFile("applications/HP9830/HP9880-UNIT" + Integer.toString(unit) + ".disc", "rw");
+  			fileName = "applications/HP9830/HP9880-UNIT" + Integer.toString(unit) + ".disc";
+  			diskFile = new RandomAccessFile(fileName, "rw");
+  			fileName = new File(fileName).getAbsolutePath();
+  			mapDiskFile();
   		} catch (FileNotFoundException e) {
+  			fileName = null;
   		}  		
   	}
 
+  	// map complete cartridge file into memory, sectors are then transferred without file I/O
+  	private boolean mapDiskFile()
+  	{
+  		try {
+  			diskImage = diskFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.max(DISC_SIZE, diskFile.length()));
+  			diskWords = diskImage.asShortBuffer();
+  		} catch (IOException e) {
+  			System.err.println(e.toString());
+  			closeDiskFile();
+  			return(false);
+  		}
+
+  		return(true);
+  	}
+
+  	// write modified sectors back to cartridge file
+  	public void flush()
+  	{
+  		if(diskImage != null && modified) {
+  			diskImage.force();
+  			modified = false;
+  		}
+  	}
+
   	public boolean openDiskFile()
   	{
   		int l = getInsets().left;
@@ -278,9 +394,18 @@ public class HP9867B extends IOdevice implements ActionListener
   		String fileName = fileDialog.getFile();
   		String dirName = fileDialog.getDirectory();
 
-  		if(fileName != null) {
+  		if(fileName != null)
   			fileName = dirName + fileName;
 
+  		return(openDiskFile(fileName));
+  	}
+
+  	// load cartridge from file, fileName = null means no cartridge
+  	public boolean openDiskFile(String fileName)
+  	{
+  		if(fileName != null) {
+  			closeDiskFile();
+
   			try{
   				diskFile = new RandomAccessFile(fileName, "rw");
   			} catch (FileNotFoundException e) {
@@ -288,6 +413,11 @@ public class HP9867B extends IOdevice implements ActionListener
   				return(false);
   			}
 
+  			this.fileName = new File(fileName).getAbsolutePath();
+
+  			if(!mapDiskFile())
+  				return(false);
+
   			driveReady = true;
   			doorUnlocked = false;
   			repaint();
@@ -304,6 +434,11 @@ public class HP9867B extends IOdevice implements ActionListener
 
   	public boolean closeDiskFile()
   	{
+  		flush();
+  		diskImage = null;
+  		diskWords = null;
+  		fileName = null;
+
   		if(diskFile != null) {
   			try {
   				diskFile.close();
@@ -314,15 +449,25 @@ public class HP9867B extends IOdevice implements ActionListener
   		return(false);
   	}
   	
+    // true if a record can be transferred, i.e. output() will not return an error status
+    public boolean accessible(int head, int cylinder, int sector)
+    {
+      return(diskWords != null && !doorUnlocked && driveReady && validAddress(head, cylinder, sector));
+    }
+
+    private boolean validAddress(int head, int cylinder, int sector)
+    {
+      return(head <= 1 && cylinder <= 202 && sector <= 22 && (sector & 1) == 0);
+    }
+
     public int output(int head, int cylinder, int sector, int mode)
     {
-      int address;
       int record;
 
-      if(diskFile == null || doorUnlocked || !driveReady)
+      if(diskWords == null || doorUnlocked || !driveReady)
         return(HP11305A.POWER_ON | HP11305A.DRIVE_UNSAFE_ERROR);
 
-      if((head > 1) || (cylinder > 202) || (sector > 22) || ((sector & 1) != 0))
+      if(!validAddress(head, cylinder, sector))
         return(HP11305A.POWER_ON | HP11305A.ADDRESS_ERROR);
 
       record = (head * 203  + cylinder) * 24 + sector;
@@ -332,37 +477,26 @@ public class HP9867B extends IOdevice implements ActionListener
       repaint();
       //repaint(STATUS_X, STATUS_Y - 15, 50, 20);
 
-      try {
-        diskFile.seek(256 * record);
-
-        // sleep 10ms for approx. realistic timing
-        if(!highSpeed) {
-          try {
-            Thread.sleep(time_10ms);
-          } catch (InterruptedException e) { }
+      // HP9867A is connected to extended memory in IOinterface (HP11273A) via HP11305A
+      // sector of 256 words is copied as one block, record number counts in units of 128 words
+      diskWords.position(128 * record);
+
+      if((mode & 1) != 0) {
+        // read mode
+        mainframe.memory.setValues(077000, diskWords, 0400);
+      } else {
+        // write mode
+        // is drive write protected?
+        if((unit & 1) == 0) {
+          if(driveProtectU)
+            return(HP11305A.POWER_ON | HP11305A.ADDRESS_ERROR);
+        } else {
+          if(driveProtectL)
+            return(HP11305A.POWER_ON | HP11305A.ADDRESS_ERROR);
         }
 
-        // HP9867A is connected to extended memory in IOinterface (HP11273A) via HP11305A
-        for(address = 0; address < 0400; address++) {
-          if((mode & 1) != 0) {
-            // read mode
-            mainframe.memory[077000 + address].setValue(diskFile.readShort());
-          } else {
-            // write mode
-            // is drive write protected?
-            if((unit & 1) == 0) {
-              if(driveProtectU)
-                return(HP11305A.POWER_ON | HP11305A.ADDRESS_ERROR);
-            } else {
-              if(driveProtectL)
-                return(HP11305A.POWER_ON | HP11305A.ADDRESS_ERROR);
-            }
-
-            diskFile.writeShort(mainframe.memory[077000 + address].getValue());
-          }
-        }
-      } catch (IOException e) {
-        return(HP11305A.POWER_ON | HP11305A.ADDRESS_ERROR);
+        mainframe.memory.getValues(077000, diskWords, 0400);
+        modified = true;
       }
 
       return(HP11305A.POWER_ON);
@@ -521,6 +655,9 @@ public class HP9867B extends IOdevice implements ActionListener
   
   public void close()
   {
+  	for(int i = 0; i < 2; i++)
+  		disks[i].closeDiskFile();
+
  		if(drivePowerImageMedia != null)
  			drivePowerImageMedia.close();
 
@@ -19,6 +19,7 @@
 
 /*
  * 27.05.2019 Class created 
+ * 17.10.2026 Rel. 2.60 Device timer action moved from run() to timerExpired() for DeviceScheduler
 */
 
 package io;
@@ -33,16 +34,10 @@ public class HP9868Interface extends IOinterface
     super(selectCode, "HP9868Interface", hp9800Mainframe);
   }
   
-  public void run()  {
-    while(true) {
-      // sleep until interrupted by IO-instruction
-      try {
-        Thread.sleep(timerValue);
-      } catch(InterruptedException e) {
-      }
-      
-      // do nothing
-    }
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
+  {
+    // do nothing
   }
   
   protected void requestInterrupt()
@@ -24,6 +24,8 @@
  * 25.10.2017 Rel. 2.10 Added method close() to stop thread
  * 28.10.2017 Rel. 2.10 Added new linking between Mainframe and other components
  * 02.01.2018 Rel. 2.10 Added use of class DeviceWindow
+ * 17.10.2026 Rel. 2.60 Added headless mode without device window, added method writeOutput()
+ * 17.10.2026 Rel. 2.60 Added saveState() and restoreState() for machine snapshots
  */
 
 package io;
@@ -32,6 +34,10 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.print.PageFormat;
 import java.awt.print.PrinterJob;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 
 import javax.swing.JFrame;
 import javax.swing.JMenuBar;
@@ -172,6 +178,9 @@ public class IOdevice extends JPanel implements KeyListener, MouseListener
   // set standard size of device panel
   public void setNormalSize()
   {
+    if(GraphicsEnvironment.isHeadless())
+      return; // there is no screen
+
     Dimension normalSize;
     Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
     
@@ -316,6 +325,22 @@ public class IOdevice extends JPanel implements KeyListener, MouseListener
     return(status);
   }
 
+  // write print output as text, returns false if device has no print output
+  public boolean writeOutput(PrintStream out)
+  {
+    return(false);
+  }
+
+  // write state of device (media position, print buffer) into machine snapshot, nothing by default
+  public void saveState(DataOutputStream out) throws IOException
+  {
+  }
+
+  // restore state written by saveState()
+  public void restoreState(DataInputStream in) throws IOException
+  {
+  }
+
   public void soundStop()
   {
   }
@@ -330,8 +355,8 @@ public class IOdevice extends JPanel implements KeyListener, MouseListener
   	
     setVisible(false);  // close panel
 
-    if(createWindow)
-      deviceWindow.dispose();  // close window
+    if(createWindow && deviceWindow != null)
+      deviceWindow.dispose();  // close window (not present in headless mode)
     
     if(deviceImageMedia != null)
     	deviceImageMedia.close();
@@ -33,10 +33,20 @@
  * 01.08.2016 Rel. 2.00 Changed to reference ioUnit instead of ioRegister
  * 25.10.2017 Rel. 2.03 Changed static access to ioUnit, removed deprecated use of ioRegister
  * 28.10.2017 Rel. 2.10: Added new linking between Mainframe and other components
+ * 17.10.2026 Rel. 2.60: Device timer body moved to timerExpired(), executed by device thread or by DeviceScheduler,
+ *                       added restartTimer() instead of direct devThread.interrupt()
+ * 17.10.2026 Rel. 2.60: Update select code table of IOunit.Bus when interface is added or removed
+ * 17.10.2026 Rel. 2.60: Added saveState() and restoreState() for machine snapshots
+ * 17.10.2026 Rel. 2.60: Remaining time of pending timer saved in machine snapshots
  */
 
 package io;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import emu98.DeviceScheduler;
 import emu98.IOunit;
 
 public class IOinterface implements Runnable
@@ -55,6 +65,7 @@ public class IOinterface implements Runnable
   
   protected int status = IOunit.devStatusReady;
   protected int timerValue = 1000;
+  protected DeviceScheduler scheduler = null; // timer executed by emulator thread instead of devThread
   
   public IOinterface()
   {
@@ -69,14 +80,17 @@ public class IOinterface implements Runnable
     mainframe.ioInterfaces.add(this); // connect to ioBus
     
     devThread = (name == null) ? new Thread(this) : new Thread(this, name);
+    if(mainframe.deviceScheduling)
+      scheduler = ioUnit.scheduler;
 
     this.selectCode = selectCode;
     srqBits = 1 << (selectCode - 1);
     serviceRequested = false;
+    ioUnit.bus.updateDevices();
     
     // start only named threads
     if(name != null)
-      devThread.start();
+      startTimer();
   }
   
   public IOinterface(int selectCode, HP9800Mainframe hp9800Mainframe)
@@ -94,6 +108,8 @@ public class IOinterface implements Runnable
   	
 
     devThread = (name == null) ? new Thread(this) : new Thread(this, name);
+    if(mainframe.deviceScheduling)
+      scheduler = ioUnit.scheduler;
 
     this.selectCode = selectCode.intValue();
     if(selectCode == 0) { // device without select code (HP9868A)
@@ -102,6 +118,7 @@ public class IOinterface implements Runnable
     else
     	srqBits = 1 << (this.selectCode - 1);
     serviceRequested = false;
+    ioUnit.bus.updateDevices();
   }
 
   public IOinterface(Integer selectCode, HP9800Mainframe hp9800Mainframe)
@@ -118,31 +135,92 @@ public class IOinterface implements Runnable
   {
     // start only explicid named threads
     if(!devThread.getName().startsWith("Thread"))
+      startTimer();
+  }
+
+  // start device thread or register timer in DeviceScheduler
+  private void startTimer()
+  {
+    if(scheduler != null)
+      scheduler.schedule(this, timerValue);
+    else
       devThread.start();
   }
-  
+
+  // restart timer with (changed) timerValue
+  public void restartTimer()
+  {
+    if(scheduler != null)
+      scheduler.schedule(this, timerValue);
+    else if(devThread != null)
+      devThread.interrupt();
+  }
+
+  public int getTimerValue()
+  {
+    return(timerValue);
+  }
+
+  // write interface registers and remaining time of timer in emulated time into machine snapshot
+  public void saveState(DataOutputStream out) throws IOException
+  {
+    out.writeInt(status);
+    out.writeInt(timerValue);
+    out.writeBoolean(serviceRequested);
+    out.writeLong(scheduler != null ? scheduler.remainingCycles(this) : -1);
+  }
+
+  // restore interface registers and timer written by saveState(), scheduler time must be restored before
+  public void restoreState(DataInputStream in) throws IOException
+  {
+    int prevTimerValue = timerValue;
+
+    status = in.readInt();
+    timerValue = in.readInt();
+    serviceRequested = in.readBoolean();
+    long remainingCycles = in.readLong();
+
+    if(scheduler != null) {
+      // continue timer with remaining time, e.g. completion of an asynchronous disc transfer
+      if(remainingCycles >= 0)
+        scheduler.scheduleCycles(this, remainingCycles);
+      else
+        scheduler.cancel(this);
+    } else if(timerValue != prevTimerValue) {
+      restartTimer();
+    }
+  }
+
   public void run()  {
     while(true) {
       // sleep until interrupted by IO-instruction
       try {
         Thread.sleep(timerValue);
       } catch(InterruptedException e) {
+        // restart timer with (changed) timerValue
+        continue;
       }
 
-      synchronized(ioUnit) {
-        // selectCode of this device on ioBus?
-        if(ioUnit.getSelectCode() == selectCode) {
-          // set or get ioUnit.value;
-          if(ioUnit.CEO) {
-            ioUnit.CEO = output();
-          }
-
-          if(ioUnit.CEO) {
-            ioUnit.CEO = input();
-          } else {
-            // put status on IO bus (S0=1)
-            ioUnit.bus.din = IOunit.devStatusReady;
-          }
+      timerExpired();
+    }
+  }
+
+  // device timer action, executed by device thread or by emulator thread
+  public void timerExpired()
+  {
+    synchronized(ioUnit) {
+      // selectCode of this device on ioBus?
+      if(ioUnit.getSelectCode() == selectCode) {
+        // set or get ioUnit.value;
+        if(ioUnit.CEO) {
+          ioUnit.CEO = output();
+        }
+
+        if(ioUnit.CEO) {
+          ioUnit.CEO = input();
+        } else {
+          // put status on IO bus (S0=1)
+          ioUnit.bus.din = IOunit.devStatusReady;
         }
       }
     }
@@ -150,13 +228,16 @@ public class IOinterface implements Runnable
   
   public void stop()
   {
-  	if(devThread != null)
+    if(scheduler != null)
+      scheduler.cancel(this);
+    else if(devThread != null)
   	{
   		devThread.stop();
   		devThread = null;
   	}
   	
     mainframe.ioInterfaces.removeElement(this);  // remove device interface object from IObus
+    ioUnit.bus.updateDevices();
     
     if(labelImageMedia != null) // dispose interface label
     	labelImageMedia.close();
@@ -24,20 +24,30 @@
  * 10.11.2017 Rel. 2.10 Added methods getScaledImage() and getProcessedImage() 
  * 19.12.2017 Rel. 2.10 Added MediaTracker to control image processing. This requires class extension of JComponent or the like
  * 21.12.2017 Rel. 2.10 Added use of ImageController
+ * 17.10.2026 Rel. 2.60 No image loading in headless mode
+ * 17.10.2026 Rel. 2.60 Image loaded on first use in one pass, decoded by ImageIO from the buffer, cache of decoded images
  */
 
 package io;
 
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.MediaTracker;
-import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 import java.awt.image.VolatileImage;
 import java.awt.image.RescaleOp;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Hashtable;
 
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStreamImpl;
 import javax.swing.JComponent;
 
 public class ImageMedia extends JComponent
@@ -47,54 +57,145 @@ public class ImageMedia extends JComponent
   private ImageController controller;
   private MediaTracker tracker;
   private int width = -1, height = -1;
+  private String imageFile;
+  private boolean loaded = false;
+
+  // decoded images of all machines loaded in this JVM, released by the garbage collector if memory gets low
+  private static Hashtable<String, SoftReference<Image>> imageCache = new Hashtable<String, SoftReference<Image>>();
 
   public ImageMedia(String imageFile, ImageController controller)
   {
   	this.controller = controller;
+  	this.imageFile = imageFile;
   	
   	tracker = new MediaTracker(this);
-
-  	InputStream imageStream = getClass().getResourceAsStream("/" + imageFile);
-    try
-    {
-      if (imageStream != null) {
-        byte[] buffer = new byte[0];
-        byte[] tmpbuf = new byte[1024];
-        while (true) {
-          int len = imageStream.read(tmpbuf);
-          if (len <= 0)
-            break;
-
-          byte[] newbuf = new byte[buffer.length + len];
-          System.arraycopy(buffer, 0, newbuf, 0, buffer.length);
-          System.arraycopy(tmpbuf, 0, newbuf, buffer.length, len);
-          buffer = newbuf;
-        }
-
-        //create image
-        scaledImage = image = Toolkit.getDefaultToolkit().createImage(buffer);
-        tracker.addImage(image, 0);
-        try {
-          tracker.waitForID(0);
-        } catch (InterruptedException e) { }
-        
-        imageStream.close();
-        if(controller != null)
-        	controller.add(image);
-      }
-    } catch (IOException e)
-    {
-      // nothing
-    }
   }
 
+  // load image on first use
   public Image getImage()
   {
+  	if(!loaded) {
+  		loaded = true;
+
+    	// images are never displayed in headless mode
+    	if(GraphicsEnvironment.isHeadless())
+    		return(null);
+
+  		SoftReference<Image> cachedImage = imageCache.get(imageFile);
+  		if(cachedImage != null)
+  			image = cachedImage.get();
+
+  		if(image == null) {
+  			image = loadImage(imageFile);
+  			if(image != null)
+  				imageCache.put(imageFile, new SoftReference<Image>(image));
+  		}
+
+  		scaledImage = image;
+  		if(image != null && controller != null)
+  			controller.add(image);
+  	}
+
     return(image);
   }
+
+  // read resource in one pass and decode it directly from the buffer
+  private Image loadImage(String imageFile)
+  {
+  	URL imageURL = getClass().getResource("/" + imageFile);
+  	byte[] buffer;
+
+  	if(imageURL == null)
+  		return(null);
+
+    try {
+    	URLConnection connection = imageURL.openConnection();
+    	InputStream imageStream = connection.getInputStream();
+    	int length = connection.getContentLength();  // size of file or JAR entry
+
+    	try {
+    		if(length >= 0) {
+    			buffer = new byte[length];
+    			int pos = 0, len;
+    			while(pos < length && (len = imageStream.read(buffer, pos, length - pos)) > 0)
+    				pos += len;
+    		} else {
+    			ByteArrayOutputStream out = new ByteArrayOutputStream(65536);
+    			byte[] tmpbuf = new byte[65536];
+    			int len;
+    			while((len = imageStream.read(tmpbuf)) > 0)
+    				out.write(tmpbuf, 0, len);
+    			buffer = out.toByteArray();
+    		}
+    	} finally {
+    		imageStream.close();
+    	}
+
+    	BufferedImage decodedImage = ImageIO.read(new ByteArrayImageInputStream(buffer));
+    	if(decodedImage == null)
+    		return(null);
+
+    	// convert gray and byte images to int RGB for fast drawing
+    	int type = decodedImage.getColorModel().hasAlpha()? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    	if(decodedImage.getType() != type) {
+    		BufferedImage rgbImage = new BufferedImage(decodedImage.getWidth(), decodedImage.getHeight(), type);
+    		Graphics2D g = rgbImage.createGraphics();
+    		g.setComposite(AlphaComposite.Src);
+    		g.drawImage(decodedImage, 0, 0, null);
+    		g.dispose();
+    		decodedImage = rgbImage;
+    	}
+
+    	return(decodedImage);
+    } catch (IOException e) {
+    	System.err.println(imageFile + ": " + e.toString());
+    }
+
+    return(null);
+  }
+
+  // ImageInputStream reading from byte array without intermediate cache
+  private static class ByteArrayImageInputStream extends ImageInputStreamImpl
+  {
+  	private byte[] buffer;
+
+  	ByteArrayImageInputStream(byte[] buffer)
+  	{
+  		this.buffer = buffer;
+  	}
+
+  	public int read()
+  	{
+  		bitOffset = 0;
+  		if(streamPos >= buffer.length)
+  			return(-1);
+
+  		return(buffer[(int)streamPos++] & 0xff);
+  	}
+
+  	public int read(byte[] b, int off, int len)
+  	{
+  		bitOffset = 0;
+  		if(streamPos >= buffer.length)
+  			return(-1);
+
+  		len = Math.min(len, buffer.length - (int)streamPos);
+  		System.arraycopy(buffer, (int)streamPos, b, off, len);
+  		streamPos += len;
+
+  		return(len);
+  	}
+
+  	public long length()
+  	{
+  		return(buffer.length);
+  	}
+  }
   
   public Image getScaledImage(int width, int height)
   {
+  	getImage();
+
   	// generate new scaled image only if size request has changed
   	if(scaledImage == null || width != this.width || height != this.height) {
   		if(scaledImage != null && controller != null) {
@@ -132,6 +233,8 @@ public class ImageMedia extends JComponent
   	float[] factors;  // contrast factors (RGBA)
   	float[] offsets;  // brightness offsets (RGBA)
     
+  	getImage();
+
   	// generate new processed image only if scaledImage is ready
   	if((scaledImage != null) && (scaledImage.getWidth(null) > 0)) {
     	// generate new processed image only if there is no valid present or size has changed
@@ -0,0 +1,253 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: conversion of text-coded tape and card images with cache of converted images
+ */
+
+package io;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Converts text-coded media files (.asc, .hex) to the binary images used by HP9865A (.tape)
+ * and the magnetic card reader (.mcard). The binary image is written next to the source file, as before.
+ * Converted images are kept in a cache directory under the SHA-1 hash of the source file,
+ * so repeated loading of the same source is only a file copy.
+ * Conversions may run in a background thread, so that neither the emulator nor the AWT thread is blocked.
+ */
+public class MediaConverter
+{
+  public static final String TAPE = ".tape";
+  public static final String MCARD = ".mcard";
+  private static final int EMPTY = Integer.MIN_VALUE; // text line without number
+
+  private static File cacheDir = new File(System.getProperty("go9800.cache", System.getProperty("java.io.tmpdir") + File.separator + "GO9800-cache"));
+  private static ExecutorService converterThread;
+
+  // true if fileName is a text-coded image which has to be converted to given binary type
+  public static boolean isText(String fileName, String type)
+  {
+    if(fileName == null)
+      return(false);
+
+    if(fileName.endsWith(".asc"))
+      return(true);
+
+    return(type.equals(MCARD) && fileName.endsWith(".hex"));
+  }
+
+  // convert in background thread, result is name of binary image or null on error
+  public static synchronized CompletableFuture<String> convertAsync(final String fileName, final String type)
+  {
+    if(converterThread == null) {
+      converterThread = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "MediaConverter");
+        thread.setDaemon(true);
+        return(thread);
+      });
+    }
+
+    return(CompletableFuture.supplyAsync(() -> convert(fileName, type), converterThread));
+  }
+
+  // convert text-coded image to binary image fileName + type, returns name of binary image or null on error
+  public static String convert(String fileName, String type)
+  {
+    String outFileName = fileName + type;
+
+    try {
+      File cacheFile = new File(cacheDir, hash(fileName) + type);
+
+      if(!cacheFile.exists()) {
+        // convert to temporary file first, so that concurrent or aborted conversions leave no incomplete image in cache
+        cacheDir.mkdirs();
+        File tmpFile = File.createTempFile("convert", type, cacheDir);
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), "ISO-8859-1"));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+
+        try {
+          if(type.equals(TAPE))
+            convertTape(in, out);
+          else
+            convertCard(in, out, fileName.endsWith(".hex"));
+        } catch (NumberFormatException e) {
+          // syntax error in source file
+          System.err.println(fileName + ": " + e.toString());
+          tmpFile.delete();
+          return(null);
+        } finally {
+          in.close();
+          out.close();
+        }
+
+        Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      Files.copy(cacheFile.toPath(), new File(outFileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.err.println(e.toString());
+      return(null);
+    }
+
+    return(outFileName);
+  }
+
+  // SHA-1 of file contents as hex string
+  static String hash(String fileName) throws IOException
+  {
+    MessageDigest digest;
+
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e.toString());
+    }
+
+    InputStream in = new FileInputStream(fileName);
+    byte[] buffer = new byte[65536];
+    int len;
+
+    try {
+      while((len = in.read(buffer)) > 0)
+        digest.update(buffer, 0, len);
+    } finally {
+      in.close();
+    }
+
+    StringBuilder hex = new StringBuilder();
+    for(byte b : digest.digest())
+      hex.append(String.format("%02x", b));
+
+    return(hex.toString());
+  }
+
+  // first number of text line or EMPTY if line contains no number
+  private static int parseLine(String line, int radix)
+  {
+    if(line == null)
+      return(EMPTY);
+
+    line = line.trim();
+    if(line.length() == 0)
+      return(EMPTY);
+
+    int end = 0;
+    while(end < line.length() && line.charAt(end) != ' ' && line.charAt(end) != '\t')
+      end++;
+
+    return(Integer.parseInt(line.substring(0, end), radix));
+  }
+
+  // tape: multiple files of 16bit words, separated by one empty line
+  // each file consists of 7 header words followed by the file body
+  private static void convertTape(BufferedReader in, DataOutputStream out) throws IOException
+  {
+    String line;
+    int value, i;
+    int absFileSize = 0, fileSize = 0;
+
+    // leader
+    for(i = 0; i < 8; i++)
+      out.writeShort(0);
+
+    do {
+      // write control byte
+      out.writeShort(0x13c);
+
+      // write file header
+      int checkSum = 0;
+      for(i = 1; i <= 7; i++) {
+        line = in.readLine();
+        value = parseLine(line, 10);
+        if(value == EMPTY)
+          value = 0;
+        checkSum += value;
+        out.writeShort(value & 0xff); // output low byte
+        out.writeShort(value >> 8); // output high byte
+
+        switch(i) {
+        case 2:
+          fileSize = value;
+
+        case 4:
+          absFileSize = value;
+        }
+      }
+
+      // 5 empty header words
+      for(i = 1; i <= 10; i++) {
+        out.writeShort(0);
+      }
+
+      // write check sum
+      out.writeShort(checkSum & 0xff);
+      out.writeShort(checkSum >> 8);
+
+      // write file body
+      checkSum = 0;
+      for(i = 0; (line = in.readLine()) != null && i < fileSize; i++) {
+        value = parseLine(line, 10);
+        if(value != EMPTY) {
+          checkSum += value;
+          out.writeShort(value & 0xff); // output low byte
+          out.writeShort(value >> 8); // output high byte
+        }
+      }
+
+      // write check sum
+      out.writeShort(checkSum & 0xff);
+      out.writeShort(checkSum >> 8);
+
+      // fill up file
+      for( ; i <= absFileSize; i++) {
+        out.writeShort(0);
+        out.writeShort(0);
+      }
+
+      // read next file
+    } while(line != null && line.equals(""));
+
+    // write control byte for next empty file
+    out.writeShort(0x13c);
+  }
+
+  // magnetic card: 3bit values (.asc) or 6bit values in hex (.hex), one per line
+  private static void convertCard(BufferedReader in, DataOutputStream out, boolean hex) throws IOException
+  {
+    String line;
+    int value;
+
+    while((line = in.readLine()) != null) {
+      value = parseLine(line, hex ? 16 : 10);
+      if(value != EMPTY) {
+        out.writeByte(value & 0x7);
+        if(hex)
+          out.writeByte((value >> 3) & 0x7);
+      }
+    }
+  }
+}
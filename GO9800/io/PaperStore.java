@@ -0,0 +1,189 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: compact storage of thermal printer paper with spill file
+ */
+
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/*
+ * Paper of the internal thermal printer.
+ * Each dot row consists of 16 characters with 5 dots. A row is packed into 2 long values,
+ * characters 0-11 in the first and characters 12-15 in the second value.
+ * Rows are kept in chunks of CHUNK_ROWS rows, only the newest MAX_CHUNKS chunks are held in memory.
+ * Older chunks are written to a temporary spill file, from which they are read back when needed
+ * (paging back, hardcopy, batch output). Without spill file older rows are discarded.
+ */
+public class PaperStore
+{
+  static final int CHUNK_ROWS = 1024;
+  static final int MAX_CHUNKS = 64; // 64k dot rows in memory = 1MB
+
+  private long[][] chunks = new long[MAX_CHUNKS][]; // ring of chunks in memory
+  private int numRows; // number of printed rows
+  private int firstRow; // oldest row still available
+  private int firstChunk; // oldest chunk held in memory
+  private boolean spill; // true if old chunks are written to spillFile
+  private RandomAccessFile spillFile;
+  private File spillFileName;
+  private long[] spilledChunk = new long[2 * CHUNK_ROWS]; // last chunk read back from spillFile
+  private int spilledChunkNumber = -1;
+  private byte[] chunkBytes = new byte[16 * CHUNK_ROWS];
+
+  public PaperStore(boolean spill)
+  {
+    this.spill = spill;
+  }
+
+  // append dot row of 16 characters
+  public synchronized void add(byte[] row)
+  {
+    int chunk = numRows / CHUNK_ROWS;
+
+    if(chunk - firstChunk == MAX_CHUNKS)
+      evict();
+
+    long[] data = chunks[chunk % MAX_CHUNKS];
+    if(data == null)
+      data = chunks[chunk % MAX_CHUNKS] = new long[2 * CHUNK_ROWS];
+
+    int i = 2 * (numRows % CHUNK_ROWS);
+    data[i] = pack(row, 0, 12);
+    data[i + 1] = pack(row, 12, 16);
+    numRows++;
+  }
+
+  // get dot row, returns false if row is not available
+  public synchronized boolean get(int row, byte[] dots)
+  {
+    long[] data;
+
+    if(row < firstRow || row >= numRows)
+      return(false);
+
+    int chunk = row / CHUNK_ROWS;
+    if(chunk >= firstChunk)
+      data = chunks[chunk % MAX_CHUNKS];
+    else
+      data = readChunk(chunk);
+
+    if(data == null)
+      return(false);
+
+    int i = 2 * (row % CHUNK_ROWS);
+    unpack(data[i], dots, 0, 12);
+    unpack(data[i + 1], dots, 12, 16);
+
+    return(true);
+  }
+
+  public synchronized int size()
+  {
+    return(numRows);
+  }
+
+  public synchronized void clear()
+  {
+    numRows = firstRow = firstChunk = 0;
+    spilledChunkNumber = -1;
+    closeSpillFile();
+  }
+
+  // remove oldest chunk from memory
+  private void evict()
+  {
+    long[] data = chunks[firstChunk % MAX_CHUNKS];
+
+    if(spill) {
+      try {
+        if(spillFile == null) {
+          spillFileName = File.createTempFile("GO9800paper", ".tmp");
+          spillFileName.deleteOnExit();
+          spillFile = new RandomAccessFile(spillFileName, "rw");
+        }
+
+        ByteBuffer.wrap(chunkBytes).asLongBuffer().put(data);
+        spillFile.seek((long)firstChunk * chunkBytes.length);
+        spillFile.write(chunkBytes);
+      } catch (IOException e) {
+        System.err.println(e.toString());
+        closeSpillFile(); // discard all spilled rows
+        spill = false;
+      }
+    }
+
+    firstChunk++;
+    if(!spill)
+      firstRow = firstChunk * CHUNK_ROWS;
+  }
+
+  private long[] readChunk(int chunk)
+  {
+    if(chunk != spilledChunkNumber) {
+      try {
+        spillFile.seek((long)chunk * chunkBytes.length);
+        spillFile.readFully(chunkBytes);
+      } catch (IOException e) {
+        System.err.println(e.toString());
+        return(null);
+      }
+
+      ByteBuffer.wrap(chunkBytes).asLongBuffer().get(spilledChunk);
+      spilledChunkNumber = chunk;
+    }
+
+    return(spilledChunk);
+  }
+
+  private void closeSpillFile()
+  {
+    if(spillFile != null) {
+      try {
+        spillFile.close();
+      } catch (IOException e) { }
+
+      spillFileName.delete();
+      spillFile = null;
+    }
+  }
+
+  private static long pack(byte[] row, int from, int to)
+  {
+    long value = 0;
+
+    for(int j = to - 1; j >= from; j--)
+      value = (value << 5) | (row[j] & 0x1f);
+
+    return(value);
+  }
+
+  private static void unpack(long value, byte[] row, int from, int to)
+  {
+    for(int j = from; j < to; j++) {
+      row[j] = (byte)(value & 0x1f);
+      value >>= 5;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: packed line storage for line printers
+ * 17.10.2026 Rel. 2.60 Added write() and read() for machine snapshots
+ */
+
+package io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Printed lines of a line printer or typewriter.
+ * All characters are kept as bytes in one array, a line is addressed by its start offset.
+ * This avoids one StringBuffer object per printed line for long listings.
+ */
+public class PrintLineStore
+{
+  private byte[] data = new byte[8192];
+  private int[] lineStart = new int[256]; // start offset of each line, lineStart[numLines] is end of data
+  private int numLines;
+
+  // append line, characters are stored as 8 bit values
+  public synchronized void add(CharSequence line)
+  {
+    int start = lineStart[numLines];
+    int length = line.length();
+
+    if(start + length > data.length)
+      data = Arrays.copyOf(data, Math.max(2 * data.length, start + length));
+
+    if(numLines + 2 > lineStart.length)
+      lineStart = Arrays.copyOf(lineStart, 2 * lineStart.length);
+
+    for(int i = 0; i < length; i++)
+      data[start + i] = (byte)line.charAt(i);
+
+    lineStart[++numLines] = start + length;
+  }
+
+  public synchronized int size()
+  {
+    return(numLines);
+  }
+
+  public synchronized void clear()
+  {
+    numLines = 0;
+  }
+
+  public synchronized int length(int line)
+  {
+    return(lineStart[line + 1] - lineStart[line]);
+  }
+
+  public synchronized int charAt(int line, int index)
+  {
+    return(data[lineStart[line] + index] & 0xff);
+  }
+
+  // position of first character c in line or -1
+  public synchronized int indexOf(int line, int c)
+  {
+    for(int i = lineStart[line]; i < lineStart[line + 1]; i++) {
+      if((data[i] & 0xff) == c)
+        return(i - lineStart[line]);
+    }
+
+    return(-1);
+  }
+
+  // write all lines into machine snapshot
+  public synchronized void write(DataOutputStream out) throws IOException
+  {
+    out.writeInt(numLines);
+    out.writeInt(lineStart[numLines]);
+    for(int i = 1; i <= numLines; i++)
+      out.writeInt(lineStart[i]);
+    out.write(data, 0, lineStart[numLines]);
+  }
+
+  // replace all lines by lines written with write()
+  public synchronized void read(DataInputStream in) throws IOException
+  {
+    numLines = in.readInt();
+    int length = in.readInt();
+
+    if(numLines + 1 > lineStart.length)
+      lineStart = new int[Math.max(2 * lineStart.length, numLines + 1)];
+    if(length > data.length)
+      data = new byte[Math.max(2 * data.length, length)];
+
+    lineStart[0] = 0;
+    for(int i = 1; i <= numLines; i++)
+      lineStart[i] = in.readInt();
+    in.readFully(data, 0, length);
+  }
+
+  public synchronized String getText(int line)
+  {
+    StringBuffer text = new StringBuffer(length(line));
+
+    for(int i = lineStart[line]; i < lineStart[line + 1]; i++)
+      text.append((char)(data[i] & 0xff));
+
+    return(text.toString());
+  }
+}
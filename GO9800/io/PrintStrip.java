@@ -0,0 +1,205 @@
+/*
+ * HP9800 Emulator
+ * Copyright (C) 2006-2018 Achim Buerger
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+/*
+ * 17.10.2026 Rel. 2.60 Class created: glyph atlas and scrolling page strip for HP9866A/B
+ */
+
+package io;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/*
+ * Rendering of the HP9866A/B dot matrix line printers.
+ * All character matrices are drawn once into a glyph atlas for the actual dot size.
+ * The visible part of the paper is kept in a strip image. While printing on the last page
+ * the strip is scrolled up and only new lines are rendered, so the paint time does not
+ * depend on the number of printed lines.
+ */
+public class PrintStrip
+{
+  static final int DC1 = 17;  // graphics mode
+
+  private int[][] matrix;
+  private int numChars;
+  private boolean graphics;  // lines containing DC1 are printed as dot rows
+  private Color printColor, paperColor;
+  private int dotHeight = 1;
+  private BufferedImage atlas, dot;
+  private BufferedImage strip;  // visible part of paper
+  private int stripLines = -1, stripPage;  // number of lines and page of rendered strip
+
+  public PrintStrip(int[][] matrix, int numChars, boolean graphics, Color printColor, Color paperColor)
+  {
+    this.matrix = matrix;
+    this.numChars = numChars;
+    this.graphics = graphics;
+    this.printColor = printColor;
+    this.paperColor = paperColor;
+  }
+
+  // make glyph atlas with character matrices and image for one graphics dot
+  public void makeFont(int dotHeight, int dotWidth)
+  {
+    Graphics printGraphics;
+
+    this.dotHeight = dotHeight;
+
+    dot = new BufferedImage(dotHeight, dotHeight, BufferedImage.TYPE_INT_ARGB);
+    printGraphics = dot.getGraphics();
+    printGraphics.setColor(printColor);
+    if(dotWidth < 3)
+      printGraphics.fillRect(0, 0, dotWidth, dotHeight);
+    else
+      printGraphics.fillOval(0, 0, dotWidth, dotHeight);
+    printGraphics.dispose();
+
+    atlas = new BufferedImage(numChars * 5 * dotHeight, 7 * dotHeight, BufferedImage.TYPE_INT_RGB);
+    printGraphics = atlas.getGraphics();
+    printGraphics.setColor(paperColor);
+    printGraphics.fillRect(0, 0, atlas.getWidth(), atlas.getHeight());
+
+    printGraphics.setColor(printColor);
+    for(int i = 0; i < numChars ; i++) {
+      for(int x = 0; x < 5; x++) {
+        int printColumn = matrix[i][x];
+
+        for(int y = 6; y >= 0; y--) {
+          if((printColumn & 1) != 0) {
+            if(dotWidth < 3)
+              printGraphics.fillRect((i * 5 + x) * dotHeight, y * dotHeight, dotWidth, dotHeight);
+            else
+              printGraphics.fillOval((i * 5 + x) * dotHeight, y * dotHeight, dotWidth, dotHeight);
+          }
+
+          printColumn >>= 1;
+        }
+      }
+    }
+    printGraphics.dispose();
+
+    invalidate();
+  }
+
+  // force complete rendering of strip with next render()
+  public void invalidate()
+  {
+    stripLines = -1;
+  }
+
+  public boolean isGraphicsLine(PrintLineStore lines, int line)
+  {
+    return(graphics && lines.indexOf(line, DC1) >= 0);
+  }
+
+  // draw line with upper left corner at x, y
+  public void drawLine(Graphics g, PrintLineStore lines, int line, int x, int y)
+  {
+    int charCode, charPos;
+    int length = lines.length(line);
+
+    // graphics mode (line contains DC1)?
+    if(isGraphicsLine(lines, line)) {
+      charPos = 0;
+
+      for(int j = 0; j < length; j++) {
+        charCode = lines.charAt(line, j);
+        switch(charCode) {
+        case DC1: continue;  // ignore DC1
+        case 10:
+        case 13: break;  // line end
+        default:
+          // print 5 dot columns
+          for(int c = 0; c < 5; c++) {
+            if((charCode & (0x10 >> c)) != 0 && charPos < 80) {
+              g.drawImage(dot, x + (charPos * 7 + c) * dotHeight, y, null);
+            }
+          }
+          charPos++;
+        }
+      }
+    } else { // text mode
+      for(int j = 0; j < length && j < 80; j++) {
+        charCode = lines.charAt(line, j) & 0x7f;
+        if(charCode < numChars) {
+          int dx = x + j * (7 * dotHeight);
+          g.drawImage(atlas, dx, y, dx + 5 * dotHeight, y + 7 * dotHeight, charCode * 5 * dotHeight, 0, (charCode + 1) * 5 * dotHeight, 7 * dotHeight, null);
+        }
+      }
+    }
+  }
+
+  // render visible lines into strip of width x height, lowest line ends at yBottom
+  public BufferedImage render(PrintLineStore lines, int width, int height, int page, int x, int yBottom)
+  {
+    synchronized(lines) {
+      int numLines = lines.size();
+      int firstLine = 0;  // oldest line to render
+      int y = yBottom + page * yBottom;  // y-position of actual displayed page
+      int newRows = yBottom;
+
+      if(strip == null || strip.getWidth() != width || strip.getHeight() != height) {
+        strip = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        stripLines = -1;
+      }
+
+      int[] pixels = ((DataBufferInt)strip.getRaster().getDataBuffer()).getData();
+
+      if(page == 0 && stripPage == 0 && stripLines >= 0 && numLines >= stripLines) {
+        newRows = 0;
+        for(int i = stripLines; i < numLines && newRows < yBottom; i++)
+          newRows += isGraphicsLine(lines, i)? dotHeight : 10 * dotHeight;
+      }
+
+      if(newRows < yBottom) {
+        // scroll up printed lines
+        System.arraycopy(pixels, newRows * width, pixels, 0, (yBottom - newRows) * width);
+        Arrays.fill(pixels, (yBottom - newRows) * width, yBottom * width, paperColor.getRGB());
+        firstLine = stripLines;
+      } else {
+        Arrays.fill(pixels, paperColor.getRGB());
+      }
+
+      Graphics g = strip.getGraphics();
+
+      for(int i = numLines - 1; i >= firstLine; i--) {
+        if(isGraphicsLine(lines, i)) {
+          y -= dotHeight;  // advance one dot row
+          if(y > yBottom) continue;  // is print y-position below lowest visible dot row? If yes: try next line
+          if(y < 0) break;  // is print y-positon above highest visible dot row? If yes: we are done
+        } else {
+          y -= 10 * dotHeight;  // advance one character line (10 dot rows)
+          if(y > yBottom) continue;  // is print y-position below lowest visible dot row? If yes: try next line
+          if(y < -10 * dotHeight) break;  // is print y-position above highest visible dot row? If yes: we are done
+        }
+
+        drawLine(g, lines, i, x, y);
+      }
+
+      g.dispose();
+      stripLines = numLines;
+      stripPage = page;
+
+      return(strip);
+    }
+  }
+}
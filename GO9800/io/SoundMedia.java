@@ -31,10 +31,12 @@
  * 01.11.2016 Rel. 2.10 Added methods close() and getMaxLines()
  * 01.11.2016 Rel. 2.10 Added class parameter 'discardable' to ignore sounds on hosts with a limited number of mixer lines 
  * 25.10.2017 Rel. 2.10 Added method disposeAll() to close all loaded sound clips
+ * 17.10.2026 Rel. 2.60 No sound loading in headless mode
  */
 
 package io;
 
+import java.awt.GraphicsEnvironment;
 import java.io.*;
 //import java.util.Vector;
 
@@ -52,6 +54,10 @@ public class SoundMedia
   		return;
   	this.controller = controller;
   	
+  	// no sound output in headless mode
+  	if(GraphicsEnvironment.isHeadless())
+  		return;
+
   	// can sound be discarded if not enough lines are available?
   	if(controller.getMaxLines() != AudioSystem.NOT_SPECIFIED && controller.getMaxLines() < 16 && discardable)
   		return;
@@ -129,7 +135,7 @@ public class SoundMedia
       }
     }
     
-    return(soundClip.isRunning());
+    return(soundClip != null && soundClip.isRunning());
   }
 
   public Clip getClip()